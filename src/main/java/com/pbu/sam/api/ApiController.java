@@ -1,28 +1,39 @@
 package com.pbu.sam.api;
 
 import com.pbu.sam.common.AppLoggerService;
+import com.pbu.sam.common.AuditPolicy;
 import com.pbu.sam.common.NetworkService;
+import com.pbu.sam.common.ResourceVersions;
 import com.pbu.sam.common.Secure;
+import com.pbu.sam.configuration.AuditProperties;
 import com.pbu.sam.dtos.*;
 import com.pbu.sam.exceptions.*;
 import com.pbu.sam.services.*;
+import com.pbu.sam.utils.AuditAction;
+import com.pbu.sam.utils.CacheEntity;
 import com.pbu.sam.utils.Generators;
 import com.pbu.sam.utils.Literals;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 public class ApiController {
@@ -35,13 +46,24 @@ public class ApiController {
     private final PermissionSetService setService;
     private final PermissionService permissionService;
     private final SystemLogService logService;
+    private final ArchiveService archiveService;
+    private final LogPartitionService partitionService;
+    private final ColdArchiveService coldArchiveService;
+    private final ActivityService activityService;
+    private final AuthorizationService authorizationService;
+    private final CacheService cacheService;
+    private final ResourceVersions versions;
+    private final AuditProperties auditProperties;
 
     public ApiController(AppLoggerService logger,
                          WendiExceptionHandler errorHandler,
                          NetworkService networkService,
                          SystemUserService userService,
                          BranchService branchService,
-                         RoleService roleService, PermissionSetService setService, PermissionService permissionService, SystemLogService logService) {
+                         RoleService roleService, PermissionSetService setService, PermissionService permissionService, SystemLogService logService,
+                         ArchiveService archiveService, LogPartitionService partitionService, ColdArchiveService coldArchiveService, ActivityService activityService,
+                         AuthorizationService authorizationService, CacheService cacheService, ResourceVersions versions,
+                         AuditProperties auditProperties) {
         this.logger = logger;
         this.errorHandler = errorHandler;
         this.networkService = networkService;
@@ -51,6 +73,14 @@ public class ApiController {
         this.setService = setService;
         this.permissionService = permissionService;
         this.logService = logService;
+        this.archiveService = archiveService;
+        this.partitionService = partitionService;
+        this.coldArchiveService = coldArchiveService;
+        this.activityService = activityService;
+        this.authorizationService = authorizationService;
+        this.cacheService = cacheService;
+        this.versions = versions;
+        this.auditProperties = auditProperties;
     }
 
     //region Branches
@@ -90,11 +120,20 @@ public class ApiController {
 
         //get client ip address
         String ip = networkService.getIncomingIpAddress(request);
+
+        //..client already holds the current list, the read is still checked and recorded
+        String etag = versions.etag("branches", CacheEntity.BRANCH);
+        if(versions.notModified(etag, request)){
+            cacheService.recordUnchanged(AuditAction.BRANCHES_RETRIEVED, ip, loggedUserId);
+            future.complete(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
+            return future;
+        }
+
         CompletableFuture<List<BranchDto>> branches = branchService.getAll(ip, loggedUserId);
 
         // Wait for the CompletableFuture to complete and get the result
         List<BranchDto> records = branches.join();
-        future.complete(ResponseEntity.ok(records));
+        future.complete(ResponseEntity.ok().eTag(etag).body(records));
         return future;
     }
 
@@ -1141,11 +1180,20 @@ public class ApiController {
 
         //get client ip address
         String ip = networkService.getIncomingIpAddress(request);
+
+        //..client already holds the current list, the read is still checked and recorded
+        String etag = versions.etag("roles", CacheEntity.ROLE, CacheEntity.PERMISSION_SET, CacheEntity.PERMISSION);
+        if(versions.notModified(etag, request)){
+            cacheService.recordUnchanged(AuditAction.ROLES_RETRIEVED, ip, loggedUserId);
+            future.complete(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
+            return future;
+        }
+
         CompletableFuture<List<RoleDto>> roles = roleService.getAll(ip, loggedUserId);
 
         // Wait for the CompletableFuture to complete and get the result
         List<RoleDto> records = roles.join();
-        future.complete(ResponseEntity.ok(records));
+        future.complete(ResponseEntity.ok().eTag(etag).body(records));
         return future;
     }
 
@@ -1436,11 +1484,20 @@ public class ApiController {
 
         //get client ip address
         String ip = networkService.getIncomingIpAddress(request);
+
+        //..client already holds the current list, the read is still checked and recorded
+        String etag = versions.etag("permissionSets", CacheEntity.PERMISSION_SET, CacheEntity.PERMISSION);
+        if(versions.notModified(etag, request)){
+            cacheService.recordUnchanged(AuditAction.SETS_RETRIEVED, ip, loggedUserId);
+            future.complete(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
+            return future;
+        }
+
         CompletableFuture<List<PermissionSetDto>> sets = setService.getAll(ip, loggedUserId);
 
         // Wait for the CompletableFuture to complete and get the result
         List<PermissionSetDto> records = sets.join();
-        future.complete(ResponseEntity.ok(records));
+        future.complete(ResponseEntity.ok().eTag(etag).body(records));
         return future;
     }
 
@@ -1615,6 +1672,38 @@ public class ApiController {
         return future;
     }
 
+    @Async
+    @PutMapping("lockPermissionSets/{userId}/{isLocked}/setIds")
+    public CompletableFuture<ResponseEntity<?>>  lockPermissionSets(@PathVariable("userId") long userId, @PathVariable boolean isLocked, @RequestBody List<Long> setIds, HttpServletRequest request) {
+        //set client IP Address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+
+        //Validate request object
+        if(setIds == null || setIds.isEmpty() || setIds.contains(null)){
+            logger.info("Permission set lock validation error. No permission set IDs provided");
+            future.complete(errorHandler.validationExceptionHandler(new WendiRequestValidationException("Permission set IDs are required"), request));
+            return future;
+        }
+
+        int changed;
+        try {
+            logger.info(String.format("%s %s permission sets", isLocked ? "Locking" : "Unlocking", setIds.size()));
+            changed = setService.lockPermissionSets(setIds, isLocked, ip, userId);
+        } catch (Exception e) {
+            logger.info(String.format("Processing Error! %s", e.getMessage()));
+            ResponseEntity<WendiError> error =  errorHandler.exceptionHandler(
+                    new WendiException(e.getMessage()),
+                    request);
+            future.complete(error);
+            return future;
+        }
+
+        //return result
+        future.complete(new ResponseEntity<>(String.format("%s permission sets %s successfully", changed, isLocked ? "locked" : "unlocked"), HttpStatus.OK));
+        return future;
+    }
+
     @Async
     @DeleteMapping("/softDeletePermissionSet/{id}/{loggedUserId}")
     public CompletableFuture<ResponseEntity<?>> softDeletePermissionSet(@PathVariable Long id, @PathVariable Long loggedUserId, HttpServletRequest request) {
@@ -1747,11 +1836,20 @@ public class ApiController {
 
         //get client ip address
         String ip = networkService.getIncomingIpAddress(request);
+
+        //..client already holds the current list, the read is still checked and recorded
+        String etag = versions.etag("permissions", CacheEntity.PERMISSION, CacheEntity.PERMISSION_SET);
+        if(versions.notModified(etag, request)){
+            cacheService.recordUnchanged(AuditAction.PERMISSIONS_RETRIEVED, ip, loggedUserId);
+            future.complete(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
+            return future;
+        }
+
         CompletableFuture<List<PermissionDto>> roles = permissionService.getAll(ip, loggedUserId);
 
         // Wait for the CompletableFuture to complete and get the result
         List<PermissionDto> records = roles.join();
-        future.complete(ResponseEntity.ok(records));
+        future.complete(ResponseEntity.ok().eTag(etag).body(records));
         return future;
     }
 
@@ -1798,21 +1896,130 @@ public class ApiController {
 
     //endregion
 
+    //region Authorization
+
+    @Async
+    @GetMapping("/hasPermission/{id}/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> hasPermission(@PathVariable Long id, @PathVariable Long loggedUserId,
+            @RequestParam("permission") String permission, HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Checking permission '%s' of user with id %s. Accessed by user with id %s on %s", permission, id, loggedUserId, date));
+
+        //check if user exists
+        if (!userService.exists(id)) {
+            ResponseEntity<WendiError> error = errorHandler.resourceNotFoundExceptionHandler(
+                    new WendiResourceNotFoundException("User", "ID",id),
+                    request);
+            future.complete(error);
+            return future;
+        }
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<PermissionCheckDto> check = authorizationService.checkPermission(ip, loggedUserId, id, permission);
+
+        // Wait for the CompletableFuture to complete and get the result
+        PermissionCheckDto record = check.join();
+        future.complete(ResponseEntity.ok(record));
+        return future;
+    }
+
+    @Async
+    @GetMapping("/getEffectivePermissions/{id}/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> getEffectivePermissions(@PathVariable Long id, @PathVariable Long loggedUserId, HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Retrieving effective permissions of user with id %s. Accessed by user with id %s on %s", id, loggedUserId, date));
+
+        //check if user exists
+        if (!userService.exists(id)) {
+            ResponseEntity<WendiError> error = errorHandler.resourceNotFoundExceptionHandler(
+                    new WendiResourceNotFoundException("User", "ID",id),
+                    request);
+            future.complete(error);
+            return future;
+        }
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<EffectivePermissionsDto> permissions = authorizationService.getEffectivePermissions(ip, loggedUserId, id);
+
+        // Wait for the CompletableFuture to complete and get the result
+        EffectivePermissionsDto record = permissions.join();
+        future.complete(ResponseEntity.ok(record));
+        return future;
+    }
+
+    @Async
+    @PostMapping("/checkPermissions/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> checkPermissions(@RequestBody PermissionBatchDto batch, @PathVariable Long loggedUserId, HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Checking a batch of permissions. Accessed by user with id %s on %s", loggedUserId, date));
+
+        //Validate request object
+        String invalid = authorizationService.validateBatch(batch);
+        if(invalid != null){
+            logger.info(String.format("Permission batch validation error. %s", invalid));
+            future.complete(errorHandler.validationExceptionHandler(new WendiRequestValidationException(invalid), request));
+            return future;
+        }
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<PermissionDecisionsDto> decisions = authorizationService.checkPermissions(ip, loggedUserId, batch);
+
+        // Wait for the CompletableFuture to complete and get the result
+        PermissionDecisionsDto record = decisions.join();
+        future.complete(ResponseEntity.ok(record));
+        return future;
+    }
+
+    //endregion
+
+    //region Caches
+
+    @Async
+    @GetMapping("/getCacheStatistics/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> getCacheStatistics(@PathVariable Long loggedUserId, HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Retrieving cache statistics. Accessed by user with id %s on %s",loggedUserId, date));
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<List<CacheStatsDto>> statistics = cacheService.getStatistics(ip, loggedUserId);
+
+        // Wait for the CompletableFuture to complete and get the result
+        List<CacheStatsDto> records = statistics.join();
+        future.complete(ResponseEntity.ok(records));
+        return future;
+    }
+
+    //endregion
+
     //region System Logs
 
     @Async
     @GetMapping("/getLogs/{loggedUserId}")
-    public CompletableFuture<ResponseEntity<?>> getLogs(@PathVariable Long loggedUserId, HttpServletRequest request) {
+    public CompletableFuture<ResponseEntity<?>> getLogs(@PathVariable Long loggedUserId,
+            @RequestParam(value = "afterTime", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTime,
+            @RequestParam(value = "afterId", defaultValue = "0") long afterId,
+            @RequestParam(value = "size", defaultValue = "0") int size,
+            @RequestParam(value = "userId", defaultValue = "0") long userId,
+            @RequestParam(value = "action", defaultValue = "") String action,
+            HttpServletRequest request) {
         String date = Generators.currentDate();
         CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
-        logger.info(String.format("Retrieving a list of system logs. Accessed by user with id %s on %s",loggedUserId, date));
+        logger.info(String.format("Retrieving a page of system logs. Accessed by user with id %s on %s",loggedUserId, date));
 
         //get client ip address
         String ip = networkService.getIncomingIpAddress(request);
-        CompletableFuture<List<LogDto>> logs = logService.getLogs(ip, loggedUserId);
+        CompletableFuture<LogPageDto> logs = logService.getLogs(ip, loggedUserId, afterTime, afterId, size, userId, action);
 
         // Wait for the CompletableFuture to complete and get the result
-        List<LogDto> records = logs.join();
+        LogPageDto records = logs.join();
         future.complete(ResponseEntity.ok(records));
         return future;
     }
@@ -1822,21 +2029,433 @@ public class ApiController {
     public CompletableFuture<ResponseEntity<?>> getUserLogs(@PathVariable Long loggedUserId,
             @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime startDate,
             @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime endDate,
+            @RequestParam(value = "afterTime", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTime,
+            @RequestParam(value = "afterId", defaultValue = "0") long afterId,
+            @RequestParam(value = "size", defaultValue = "0") int size,
+            @RequestParam(value = "userId", defaultValue = "0") long userId,
+            @RequestParam(value = "action", defaultValue = "") String action,
+            HttpServletRequest request) {
+
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Retrieving a page of system logs. Accessed by user with id %s on %s",loggedUserId, date));
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<LogPageDto> logs = logService.getLogs(ip, loggedUserId, startDate, endDate, afterTime, afterId, size, userId, action);
+
+        // Wait for the CompletableFuture to complete and get the result
+        LogPageDto records = logs.join();
+        future.complete(ResponseEntity.ok(records));
+        return future;
+    }
+
+    @Async
+    @GetMapping("/getUserTrail/{id}/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> getUserTrail(@PathVariable Long id, @PathVariable Long loggedUserId,
+            @RequestParam(value = "startDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(value = "endDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(value = "afterTime", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTime,
+            @RequestParam(value = "afterId", defaultValue = "0") long afterId,
+            @RequestParam(value = "size", defaultValue = "0") int size,
+            @RequestParam(value = "action", defaultValue = "") String action,
+            HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Retrieving audit trail of user with id %s. Accessed by user with id %s on %s", id, loggedUserId, date));
+
+        //check if user exists
+        if (!userService.exists(id)) {
+            ResponseEntity<WendiError> error = errorHandler.resourceNotFoundExceptionHandler(
+                    new WendiResourceNotFoundException("User", "ID",id),
+                    request);
+            future.complete(error);
+            return future;
+        }
+
+        if(startDate != null && endDate != null && endDate.isBefore(startDate)){
+            future.complete(errorHandler.validationExceptionHandler(new WendiRequestValidationException("End date can not be before start date"), request));
+            return future;
+        }
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<LogPageDto> logs = logService.getUserTrail(ip, loggedUserId, id, startDate, endDate, afterTime, afterId, size, action);
+
+        // Wait for the CompletableFuture to complete and get the result
+        LogPageDto records = logs.join();
+        future.complete(ResponseEntity.ok(records));
+        return future;
+    }
+
+    @Async
+    @GetMapping("/getTargetLogs/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> getTargetLogs(@PathVariable Long loggedUserId,
+            @RequestParam("targetType") String targetType,
+            @RequestParam("targetId") String targetId,
+            @RequestParam(value = "startDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(value = "endDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(value = "afterTime", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTime,
+            @RequestParam(value = "afterId", defaultValue = "0") long afterId,
+            @RequestParam(value = "size", defaultValue = "0") int size,
+            @RequestParam(value = "action", defaultValue = "") String action,
+            HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Retrieving a page of system logs for %s record '%s'. Accessed by user with id %s on %s",targetType, targetId, loggedUserId, date));
+
+        //..target logs are looked up by catalog action only
+        if(!action.isEmpty() && AuditAction.fromName(action) == null){
+            future.complete(errorHandler.validationExceptionHandler(new WendiRequestValidationException(String.format("Unknown action '%s'", action)), request));
+            return future;
+        }
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<LogPageDto> logs = logService.getTargetLogs(ip, loggedUserId, targetType.toUpperCase(), targetId,
+                startDate, endDate, afterTime, afterId, size, action);
+
+        // Wait for the CompletableFuture to complete and get the result
+        LogPageDto records = logs.join();
+        future.complete(ResponseEntity.ok(records));
+        return future;
+    }
+
+    @Async
+    @GetMapping("/getAuditPolicy/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> getAuditPolicy(@PathVariable Long loggedUserId, HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Retrieving audit policy. Accessed by user with id %s on %s",loggedUserId, date));
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<AuditPolicyDto> policy = logService.getAuditPolicy(ip, loggedUserId);
+
+        // Wait for the CompletableFuture to complete and get the result
+        AuditPolicyDto record = policy.join();
+        future.complete(ResponseEntity.ok(record));
+        return future;
+    }
+
+    @PutMapping("/updateAuditPolicy/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> updateAuditPolicy(@RequestBody AuditPolicyDto policy, @PathVariable Long loggedUserId, HttpServletRequest request) {
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        String date = Generators.currentDate();
+        logger.info(String.format("Modifying audit policy. Accessed by user with id %s on %s",loggedUserId, date));
+
+        //Validate request object
+        String invalid = AuditPolicy.validate(policy);
+        if(invalid != null){
+            logger.info(String.format("Audit policy validation error. %s", invalid));
+            future.complete(errorHandler.validationExceptionHandler(new WendiRequestValidationException(invalid), request));
+            return future;
+        }
+
+        try{
+            //get client ip address
+            String ip = networkService.getIncomingIpAddress(request);
+            AuditPolicyDto record = logService.updateAuditPolicy(policy, ip, loggedUserId);
+
+            future.complete(new ResponseEntity<>(record, HttpStatus.OK));
+            return future;
+        } catch (Exception e) {
+            logger.info(String.format("Processing Error! %s", e.getMessage()));
+            ResponseEntity<WendiError> error =  errorHandler.exceptionHandler(
+                    new WendiException(e.getMessage()),
+                    request);
+            future.complete(error);
+            return future;
+        }
+    }
+
+    @GetMapping("/exportLogs/{loggedUserId}")
+    public WebAsyncTask<Void> exportLogs(@PathVariable Long loggedUserId,
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(value = "format", defaultValue = Literals.EXPORT_NDJSON) String format,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+            @RequestParam(value = "userId", defaultValue = "0") long userId,
+            @RequestParam(value = "action", defaultValue = "") String action,
+            HttpServletRequest request, HttpServletResponse response) throws WendiRequestValidationException {
+
+        String date = Generators.currentDate();
+        logger.info(String.format("Exporting system logs. Accessed by user with id %s on %s",loggedUserId, date));
+
+        //..validate request before the response is committed, errors can not be returned once streaming starts
+        if(!Literals.EXPORT_NDJSON.equalsIgnoreCase(format) && !Literals.EXPORT_CSV.equalsIgnoreCase(format)){
+            throw new WendiRequestValidationException(String.format("Unsupported export format '%s', use '%s' or '%s'", format, Literals.EXPORT_NDJSON, Literals.EXPORT_CSV));
+        }
+
+        if(endDate.isBefore(startDate)){
+            throw new WendiRequestValidationException("End date can not be before start date");
+        }
+
+        if (!userService.exists(loggedUserId)) {
+            throw new WendiResourceNotFoundException("User", "ID",loggedUserId);
+        }
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        boolean csv = Literals.EXPORT_CSV.equalsIgnoreCase(format);
+        String fileName = String.format("system_logs_%s_%s.%s%s", startDate.toLocalDate(), endDate.toLocalDate(),
+                csv ? Literals.EXPORT_CSV : Literals.EXPORT_NDJSON, gzip ? ".gz" : "");
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, String.format("attachment; filename=\"%s\"", fileName));
+        response.setContentType(gzip ? "application/gzip" : csv ? "text/csv;charset=UTF-8" : "application/x-ndjson");
+
+        //..rows are written to the response as they are read, nothing is held in memory
+        Callable<Void> export = () -> {
+            OutputStream out = response.getOutputStream();
+            if(gzip){
+                try (GZIPOutputStream zip = new GZIPOutputStream(out, 8192)) {
+                    logService.exportLogs(ip, loggedUserId, startDate, endDate, userId, action, format, zip);
+                }
+            } else {
+                logService.exportLogs(ip, loggedUserId, startDate, endDate, userId, action, format, out);
+            }
+            out.flush();
+            return null;
+        };
+
+        //..long date ranges outlive the default async request timeout, so only exports get their own
+        long timeout = auditProperties.getExportTimeoutMs();
+        return new WebAsyncTask<>(timeout > 0 ? timeout : -1, export);
+    }
+
+    @Async
+    @GetMapping("/getArchiveStatus/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> getArchiveStatus(@PathVariable Long loggedUserId, HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Retrieving system log archive status. Accessed by user with id %s on %s",loggedUserId, date));
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<ArchiveStatusDto> status = archiveService.getStatus(ip, loggedUserId);
+
+        // Wait for the CompletableFuture to complete and get the result
+        ArchiveStatusDto record = status.join();
+        future.complete(ResponseEntity.ok(record));
+        return future;
+    }
+
+    @Async
+    @GetMapping("/getPartitionStatus/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> getPartitionStatus(@PathVariable Long loggedUserId, HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Retrieving system log partition status. Accessed by user with id %s on %s",loggedUserId, date));
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<PartitionStatusDto> status = partitionService.getStatus(ip, loggedUserId);
+
+        // Wait for the CompletableFuture to complete and get the result
+        PartitionStatusDto record = status.join();
+        future.complete(ResponseEntity.ok(record));
+        return future;
+    }
+
+    @Async
+    @PostMapping("/exportColdArchive/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> exportColdArchive(@PathVariable Long loggedUserId,
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(value = "fromSystemLogs", defaultValue = "false") boolean fromSystemLogs,
+            @RequestParam(value = "purge", defaultValue = "false") boolean purge,
             HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Exporting system logs to cold archive. Accessed by user with id %s on %s",loggedUserId, date));
 
+        if(!endDate.isAfter(startDate)){
+            ResponseEntity<WendiError> error = errorHandler.validationExceptionHandler(
+                    new WendiRequestValidationException("End date must be after start date"),
+                    request);
+            future.complete(error);
+            return future;
+        }
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        ColdArchiveFileDto record;
+        try {
+            record = coldArchiveService.export(ip, loggedUserId, startDate, endDate, fromSystemLogs, purge).join();
+        } catch (Exception e) {
+            logger.info(String.format("Processing Error! %s", e.getMessage()));
+            ResponseEntity<WendiError> error =  errorHandler.exceptionHandler(
+                    new WendiException(e.getMessage()),
+                    request);
+            future.complete(error);
+            return future;
+        }
+
+        //nothing recorded in the range, no file written
+        if(record == null){
+            ResponseEntity<WendiError> error = errorHandler.resourceNotFoundExceptionHandler(
+                    new WendiResourceNotFoundException("System logs", "Period", String.format("%s - %s", startDate, endDate)),
+                    request);
+            future.complete(error);
+            return future;
+        }
+
+        future.complete(ResponseEntity.ok(record));
+        return future;
+    }
+
+    @Async
+    @GetMapping("/getColdArchiveLogs/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> getColdArchiveLogs(@PathVariable Long loggedUserId,
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(value = "afterTime", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTime,
+            @RequestParam(value = "afterId", defaultValue = "0") long afterId,
+            @RequestParam(value = "size", defaultValue = "0") int size,
+            @RequestParam(value = "userId", defaultValue = "0") long userId,
+            HttpServletRequest request) {
         String date = Generators.currentDate();
         CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
-        logger.info(String.format("Retrieving a list of system logs. Accessed by user with id %s on %s",loggedUserId, date));
+        logger.info(String.format("Retrieving a page of cold archive logs. Accessed by user with id %s on %s",loggedUserId, date));
 
         //get client ip address
         String ip = networkService.getIncomingIpAddress(request);
-        CompletableFuture<List<LogDto>> logs = logService.getLogs(ip, loggedUserId, startDate, endDate);
+        LogPageDto records;
+        try {
+            records = coldArchiveService.query(ip, loggedUserId, startDate, endDate, afterTime, afterId, size, userId).join();
+        } catch (Exception e) {
+            logger.info(String.format("Processing Error! %s", e.getMessage()));
+            ResponseEntity<WendiError> error =  errorHandler.exceptionHandler(
+                    new WendiException(e.getMessage()),
+                    request);
+            future.complete(error);
+            return future;
+        }
+
+        future.complete(ResponseEntity.ok(records));
+        return future;
+    }
+
+    @Async
+    @GetMapping("/getColdArchiveFiles/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> getColdArchiveFiles(@PathVariable Long loggedUserId, HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Retrieving cold archive files. Accessed by user with id %s on %s",loggedUserId, date));
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        List<ColdArchiveFileDto> records;
+        try {
+            records = coldArchiveService.getFiles(ip, loggedUserId).join();
+        } catch (Exception e) {
+            logger.info(String.format("Processing Error! %s", e.getMessage()));
+            ResponseEntity<WendiError> error =  errorHandler.exceptionHandler(
+                    new WendiException(e.getMessage()),
+                    request);
+            future.complete(error);
+            return future;
+        }
+
+        future.complete(ResponseEntity.ok(records));
+        return future;
+    }
+
+    @Async
+    @GetMapping("/getActivity/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> getActivity(@PathVariable Long loggedUserId,
+            @RequestParam(value = "dimension", defaultValue = Literals.ROLLUP_USER) String dimension,
+            @RequestParam(value = "granularity", defaultValue = Literals.ROLLUP_HOUR) String granularity,
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(value = "value", defaultValue = "") String value,
+            @RequestParam(value = "size", defaultValue = "0") int size,
+            HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Retrieving audit activity. Accessed by user with id %s on %s",loggedUserId, date));
+
+        String error = validateRollup(dimension, granularity);
+        if(error != null){
+            future.complete(errorHandler.validationExceptionHandler(new WendiRequestValidationException(error), request));
+            return future;
+        }
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<List<ActivityDto>> activity = activityService.getActivity(ip, loggedUserId, dimension.toUpperCase(),
+                granularity.toUpperCase(), startDate, endDate, value, size);
+
+        // Wait for the CompletableFuture to complete and get the result
+        List<ActivityDto> records = activity.join();
+        future.complete(ResponseEntity.ok(records));
+        return future;
+    }
+
+    @Async
+    @GetMapping("/getActivityTotals/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> getActivityTotals(@PathVariable Long loggedUserId,
+            @RequestParam(value = "dimension", defaultValue = Literals.ROLLUP_USER) String dimension,
+            @RequestParam(value = "granularity", defaultValue = Literals.ROLLUP_DAY) String granularity,
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(value = "size", defaultValue = "0") int size,
+            HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Retrieving audit activity totals. Accessed by user with id %s on %s",loggedUserId, date));
+
+        String error = validateRollup(dimension, granularity);
+        if(error != null){
+            future.complete(errorHandler.validationExceptionHandler(new WendiRequestValidationException(error), request));
+            return future;
+        }
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        CompletableFuture<List<ActivityDto>> activity = activityService.getActivityTotals(ip, loggedUserId, dimension.toUpperCase(),
+                granularity.toUpperCase(), startDate, endDate, size);
 
         // Wait for the CompletableFuture to complete and get the result
-        List<LogDto> records = logs.join();
+        List<ActivityDto> records = activity.join();
         future.complete(ResponseEntity.ok(records));
         return future;
     }
+
+    @Async
+    @PostMapping("/rebuildActivity/{loggedUserId}")
+    public CompletableFuture<ResponseEntity<?>> rebuildActivity(@PathVariable Long loggedUserId, HttpServletRequest request) {
+        String date = Generators.currentDate();
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        logger.info(String.format("Rebuilding audit activity rollups. Accessed by user with id %s on %s",loggedUserId, date));
+
+        //get client ip address
+        String ip = networkService.getIncomingIpAddress(request);
+        long rows;
+        try {
+            rows = activityService.rebuild(ip, loggedUserId);
+        } catch (Exception e) {
+            logger.info(String.format("Processing Error! %s", e.getMessage()));
+            ResponseEntity<WendiError> error =  errorHandler.exceptionHandler(
+                    new WendiException(e.getMessage()),
+                    request);
+            future.complete(error);
+            return future;
+        }
+
+        future.complete(new ResponseEntity<>(String.format("Audit activity rollups rebuilt with %s rows", rows), HttpStatus.OK));
+        return future;
+    }
+
+    private static String validateRollup(String dimension, String granularity) {
+        if(!Literals.ROLLUP_USER.equalsIgnoreCase(dimension) && !Literals.ROLLUP_ACTION.equalsIgnoreCase(dimension) && !Literals.ROLLUP_IP.equalsIgnoreCase(dimension)){
+            return String.format("Unsupported dimension '%s', use '%s', '%s' or '%s'", dimension, Literals.ROLLUP_USER, Literals.ROLLUP_ACTION, Literals.ROLLUP_IP);
+        }
+        if(!Literals.ROLLUP_HOUR.equalsIgnoreCase(granularity) && !Literals.ROLLUP_DAY.equalsIgnoreCase(granularity)){
+            return String.format("Unsupported granularity '%s', use '%s' or '%s'", granularity, Literals.ROLLUP_HOUR, Literals.ROLLUP_DAY);
+        }
+        return null;
+    }
     //endregion
 
 }
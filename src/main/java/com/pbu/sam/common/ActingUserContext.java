@@ -0,0 +1,72 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.dtos.ActingUserDto;
+import com.pbu.sam.exceptions.DbRecordNotFound;
+import com.pbu.sam.repositories.SystemUserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Class Name : ActingUserContext
+ * Created By : Nkambwe Mark
+ * Description: Class resolves the user performing a request once and shares it with every service the request calls.
+ * Users are read as an ID and username projection and kept in a request attribute, outside a web request
+ * (scheduled jobs) every call reads the database.
+ **/
+@Service
+public class ActingUserContext {
+    private static final String ATTRIBUTE = ActingUserContext.class.getName();
+
+    private final SystemUserRepository usersRepo;
+
+    public ActingUserContext(SystemUserRepository usersRepo) {
+        this.usersRepo = usersRepo;
+    }
+
+    /**
+     * Find the user performing the request
+     * @param userId logged in user ID
+     * @return acting user, null when there is no such user
+     **/
+    public ActingUserDto find(long userId) {
+        Map<Long, Optional<ActingUserDto>> users = requestUsers();
+        if(users == null){
+            return usersRepo.getActingUser(userId).orElse(null);
+        }
+        return users.computeIfAbsent(userId, usersRepo::getActingUser).orElse(null);
+    }
+
+    /**
+     * Get the user performing the request
+     * @param userId logged in user ID
+     * @return acting user
+     * @throws DbRecordNotFound when there is no such user
+     **/
+    public ActingUserDto require(long userId) {
+        ActingUserDto user = find(userId);
+        if(user == null){
+            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
+        }
+        return user;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Optional<ActingUserDto>> requestUsers() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if(attributes == null){
+            return null;
+        }
+
+        Object users = attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if(users == null){
+            users = new HashMap<Long, Optional<ActingUserDto>>();
+            attributes.setAttribute(ATTRIBUTE, users, RequestAttributes.SCOPE_REQUEST);
+        }
+        return (Map<Long, Optional<ActingUserDto>>) users;
+    }
+}
@@ -0,0 +1,341 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.configuration.AuditProperties;
+import com.pbu.sam.dtos.LogDto;
+import com.pbu.sam.exceptions.WendiException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Class Name : AuditJournal
+ * Created By : Nkambwe Mark
+ * Description: Class keeps an append-only journal of system log records on local disk.
+ * Records are appended to memory-mapped segment files before they are queued for the database,
+ * so a JVM crash cannot lose a record that was acknowledged to the caller.
+ * Segment layout is a sequence of [length][sequence][crc32][payload] entries, a zero length marks the end.
+ * A record whose transaction rolled back is cancelled by a later discard entry naming its sequence.
+ **/
+@Service
+@Slf4j
+public class AuditJournal {
+    private static final String SEGMENT_PREFIX = "audit-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String ID_FILE = "journal.id";
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte DISCARD = 0;
+    private static final int ENTRY_HEADER = 8 + 4;
+
+    private final AuditProperties properties;
+
+    //first sequence in segment -> segment file, the last entry is the active segment
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private final List<Path> pendingDeletes = new ArrayList<>();
+    private Path directory;
+    private String journalId;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long activeFirstSequence;
+    private long nextSequence = 1;
+
+    public AuditJournal(AuditProperties properties) {
+        this.properties = properties;
+    }
+
+    /**Journal entry read back from disk**/
+    public record Entry(long sequence, LogDto log) {}
+
+    /**Entry as stored in a segment, payload is a record or a discard**/
+    private record Stored(long sequence, byte[] payload) {
+        boolean isDiscard() {
+            return payload[0] == DISCARD;
+        }
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if(!isEnabled()){
+            return;
+        }
+
+        directory = Paths.get(properties.getJournalDir());
+        Files.createDirectories(directory);
+        journalId = readOrCreateId();
+
+        //..find existing segments and the highest sequence already issued
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.put(firstSequenceOf(file), file);
+            }
+        }
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            nextSequence = Math.max(nextSequence, segment.getKey());
+            List<Stored> entries = read(segment.getValue());
+            if(!entries.isEmpty()){
+                nextSequence = Math.max(nextSequence, entries.get(entries.size() - 1).sequence() + 1);
+            }
+        }
+
+        //..always append to a fresh segment, older ones are only replayed
+        roll(nextSequence);
+        log.info(String.format("Audit journal '%s' opened with %s segments, next sequence %s", journalId, segments.size(), nextSequence));
+    }
+
+    public boolean isEnabled() {
+        return properties.isJournalEnabled();
+    }
+
+    /**Name of the checkpoint row holding the last sequence committed to System_logs**/
+    public String getCheckpointName() {
+        return String.format("audit-journal:%s", journalId);
+    }
+
+    /**
+     * Append a system log record to the journal
+     * @param record log record to append
+     * @return sequence assigned to the record, 0 when journal is disabled
+     **/
+    public synchronized long append(LogDto record) {
+        if(!isEnabled()){
+            return 0;
+        }
+        return write(encode(record));
+    }
+
+    /**
+     * Cancel a record whose transaction rolled back so it is never replayed
+     * @param sequence sequence of the record to cancel
+     **/
+    public synchronized void discard(long sequence) {
+        if(!isEnabled()){
+            return;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(1 + Long.BYTES);
+        payload.put(DISCARD);
+        payload.putLong(sequence);
+        write(payload.array());
+    }
+
+    private long write(byte[] payload) {
+        int length = ENTRY_HEADER + payload.length;
+        long sequence = nextSequence;
+        try {
+            if(buffer.remaining() < Integer.BYTES + length){
+                roll(sequence);
+            }
+        } catch (IOException e) {
+            throw new WendiException(String.format("Audit journal segment could not be created: %s", e.getMessage()));
+        }
+        if(buffer.remaining() < Integer.BYTES + length){
+            throw new WendiException("Audit record is larger than journal segment size");
+        }
+
+        //..write body first and the length last, a torn write leaves a zero length behind
+        int start = buffer.position();
+        buffer.position(start + Integer.BYTES);
+        buffer.putLong(sequence);
+        buffer.putInt(checksum(payload));
+        buffer.put(payload);
+        buffer.putInt(start, length);
+        if(properties.isJournalForce()){
+            buffer.force();
+        }
+
+        nextSequence++;
+        return sequence;
+    }
+
+    /**
+     * Close the active segment so its records can be read back by {@link #recover(long)}
+     * @return last sequence issued
+     **/
+    public synchronized long seal() {
+        if(!isEnabled()){
+            return 0;
+        }
+
+        try {
+            if(buffer.position() > 0){
+                roll(nextSequence);
+            }
+        } catch (IOException e) {
+            throw new WendiException(String.format("Audit journal segment could not be created: %s", e.getMessage()));
+        }
+        return nextSequence - 1;
+    }
+
+    /**@return last sequence issued, 0 when journal is disabled or empty**/
+    public synchronized long lastSequence() {
+        return isEnabled() ? nextSequence - 1 : 0;
+    }
+
+    /**
+     * Read records from earlier runs, or sealed while the queue was full, that were not committed to the database
+     * @param committed last sequence known to be in System_logs
+     * @return records with a higher sequence in sequence order
+     **/
+    public synchronized List<Entry> recover(long committed) throws IOException {
+        List<Entry> pending = new ArrayList<>();
+        if(!isEnabled()){
+            return pending;
+        }
+
+        Set<Long> discarded = new HashSet<>();
+        for (Map.Entry<Long, Path> segment : segments.headMap(activeFirstSequence).entrySet()) {
+            for (Stored entry : read(segment.getValue())) {
+                if(entry.isDiscard()){
+                    discarded.add(ByteBuffer.wrap(entry.payload(), 1, Long.BYTES).getLong());
+                } else if(entry.sequence() > committed){
+                    pending.add(new Entry(entry.sequence(), decode(entry.payload())));
+                }
+            }
+        }
+
+        //..a discard always follows the record it cancels
+        pending.removeIf(entry -> discarded.contains(entry.sequence()));
+        return pending;
+    }
+
+    /**
+     * Remove segments whose records are all committed to the database
+     * @param committed last sequence known to be in System_logs
+     **/
+    public synchronized void release(long committed) {
+        if(!isEnabled()){
+            return;
+        }
+
+        //..a segment ends just before the next one starts, the active segment is never removed
+        List<Long> firsts = new ArrayList<>(segments.headMap(activeFirstSequence, true).keySet());
+        for (int i = 0; i < firsts.size() - 1; i++) {
+            long lastSequence = firsts.get(i + 1) - 1;
+            if(lastSequence > committed){
+                break;
+            }
+            pendingDeletes.add(segments.remove(firsts.get(i)));
+        }
+
+        //..mapped files can not be removed on some platforms until the mapping is collected
+        pendingDeletes.removeIf(this::delete);
+    }
+
+    private void roll(long firstSequence) throws IOException {
+        if(channel != null){
+            if(properties.isJournalForce()){
+                buffer.force();
+            }
+            channel.close();
+            buffer = null;
+        }
+
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, properties.getJournalSegmentSize());
+        activeFirstSequence = firstSequence;
+        segments.put(firstSequence, file);
+    }
+
+    private List<Stored> read(Path file) throws IOException {
+        List<Stored> entries = new ArrayList<>();
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (data.remaining() >= Integer.BYTES) {
+            int length = data.getInt();
+            if(length <= ENTRY_HEADER || length > data.remaining()){
+                //..zero length is the end of the segment, anything else is a torn tail
+                break;
+            }
+
+            long sequence = data.getLong();
+            int crc = data.getInt();
+            byte[] payload = new byte[length - ENTRY_HEADER];
+            data.get(payload);
+            if(crc != checksum(payload)){
+                log.error(String.format("Audit journal entry %s in '%s' failed checksum, stopping segment replay", sequence, file.getFileName()));
+                break;
+            }
+            entries.add(new Stored(sequence, payload));
+        }
+        return entries;
+    }
+
+    private boolean delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private String readOrCreateId() throws IOException {
+        Path idFile = directory.resolve(ID_FILE);
+        if(Files.exists(idFile)){
+            return Files.readString(idFile, StandardCharsets.UTF_8).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        Files.writeString(idFile, id, StandardCharsets.UTF_8);
+        return id;
+    }
+
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(LogDto record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(160);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(record.getUserId());
+            out.writeLong(record.getLogTime().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(record.getLogTime().getNano());
+            out.writeUTF(record.getIpAddress() != null ? record.getIpAddress() : "");
+            out.writeShort(record.getActionCode());
+            out.writeUTF(record.getTargetType() != null ? record.getTargetType() : "");
+            out.writeUTF(record.getTargetId() != null ? record.getTargetId() : "");
+            out.writeUTF(record.getAction() != null ? record.getAction() : "");
+        } catch (IOException e) {
+            throw new WendiException(String.format("Audit record could not be encoded: %s", e.getMessage()));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static LogDto decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = in.readByte();
+            if(version != FORMAT_VERSION){
+                throw new IOException(String.format("Unsupported audit journal format %s", version));
+            }
+            long userId = in.readLong();
+            LocalDateTime logTime = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            String ip = in.readUTF();
+            short actionCode = in.readShort();
+            String targetType = in.readUTF();
+            String targetId = in.readUTF();
+            String action = in.readUTF();
+            LogDto record = new LogDto(userId, action.isEmpty() ? null : action, logTime, ip);
+            record.setActionCode(actionCode);
+            record.setTargetType(targetType.isEmpty() ? null : targetType);
+            record.setTargetId(targetId.isEmpty() ? null : targetId);
+            return record;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.configuration.AuditPolicyProperties;
+import com.pbu.sam.dtos.AuditPolicyDto;
+import com.pbu.sam.dtos.AuditRuleDto;
+import com.pbu.sam.utils.AuditAction;
+import com.pbu.sam.utils.AuditMode;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Class Name : AuditPolicy
+ * Created By : Nkambwe Mark
+ * Description: Class decides whether a read action is written to System_logs.
+ * The policy starts from {@code sam.audit.policy.*} and can be replaced while the application runs, every decision
+ * reads one immutable snapshot so a replacement never mixes old and new rules. Write actions are always recorded.
+ **/
+@Service
+public class AuditPolicy {
+    private final AuditPolicyProperties properties;
+
+    //last time a user, action and target was recorded in FIRST_PER_WINDOW mode, oldest first
+    private final LinkedHashMap<WindowKey, Long> windows = new LinkedHashMap<>();
+    private volatile Snapshot snapshot;
+
+    public AuditPolicy(AuditPolicyProperties properties) {
+        this.properties = properties;
+
+        AuditPolicyDto policy = new AuditPolicyDto();
+        policy.setDefaultMode(properties.getDefaultMode());
+        policy.setSampleRate(properties.getSampleRate());
+        policy.setWindowSeconds(properties.getWindowSeconds());
+        properties.getRules().forEach((name, rule) -> policy.getRules().put(name,
+                new AuditRuleDto(rule.getMode(), rule.getSampleRate(), rule.getWindowSeconds())));
+
+        String error = validate(policy);
+        if(error != null){
+            throw new IllegalStateException(String.format("Invalid sam.audit.policy settings: %s", error));
+        }
+        this.snapshot = build(policy);
+    }
+
+    /**How reads matching a rule are recorded**/
+    private record Rule(AuditMode mode, double sampleRate, long windowMs) {}
+
+    /**Rules in force, never changed once published**/
+    private record Snapshot(Rule defaults, Map<AuditAction, Rule> actions, Map<AuditAction.Category, Rule> categories, long longestWindowMs) {
+        Rule ruleFor(AuditAction action) {
+            Rule rule = actions.get(action);
+            if(rule == null){
+                rule = categories.get(action.getCategory());
+            }
+            return rule != null ? rule : defaults;
+        }
+    }
+
+    private record WindowKey(long userId, short code, String targetId) {}
+
+    /**
+     * Decide whether an action is recorded
+     * @param userId logged in user ID
+     * @param action action performed by user
+     * @param targetId ID of the record the action is performed on, may be null
+     * @return true when the action is written to System_logs
+     **/
+    public boolean shouldRecord(long userId, AuditAction action, String targetId) {
+        if(action.getKind() != AuditAction.Kind.READ){
+            return true;
+        }
+
+        Rule rule = snapshot.ruleFor(action);
+        return switch (rule.mode()) {
+            case ALL -> true;
+            case NONE -> false;
+            case SAMPLE -> ThreadLocalRandom.current().nextDouble() < rule.sampleRate();
+            case FIRST_PER_WINDOW -> firstInWindow(new WindowKey(userId, action.getCode(), targetId), rule.windowMs());
+        };
+    }
+
+    private boolean firstInWindow(WindowKey key, long windowMs) {
+        long now = System.currentTimeMillis();
+        synchronized (windows) {
+            Long last = windows.get(key);
+            if(last != null && now - last < windowMs){
+                return false;
+            }
+
+            //..moved to the end so the map stays in the order windows were opened
+            windows.remove(key);
+            windows.put(key, now);
+            pruneWindows(now);
+            return true;
+        }
+    }
+
+    /**Drop closed windows from the oldest on, open ones too while more than the limit are tracked**/
+    private void pruneWindows(long now) {
+        long longest = snapshot.longestWindowMs();
+        Iterator<Long> oldest = windows.values().iterator();
+        while (oldest.hasNext()) {
+            if(now - oldest.next() < longest && windows.size() <= properties.getMaxTracked()){
+                return;
+            }
+            oldest.remove();
+        }
+    }
+
+    /**Policy in force**/
+    public AuditPolicyDto getPolicy() {
+        Snapshot current = snapshot;
+        AuditPolicyDto policy = new AuditPolicyDto();
+        policy.setDefaultMode(current.defaults().mode());
+        policy.setSampleRate(current.defaults().sampleRate());
+        policy.setWindowSeconds(current.defaults().windowMs() / 1000);
+        current.categories().forEach((category, rule) -> policy.getRules().put(category.name(), toDto(rule)));
+        current.actions().forEach((action, rule) -> policy.getRules().put(action.name(), toDto(rule)));
+        return policy;
+    }
+
+    /**
+     * Replace the policy in force, callers check it with {@link #validate(AuditPolicyDto)} first
+     * @param policy new policy
+     **/
+    public void replace(AuditPolicyDto policy) {
+        snapshot = build(policy);
+        synchronized (windows) {
+            windows.clear();
+        }
+    }
+
+    private static Snapshot build(AuditPolicyDto policy) {
+        Rule defaults = new Rule(policy.getDefaultMode(), policy.getSampleRate(), policy.getWindowSeconds() * 1000);
+        Map<AuditAction, Rule> actions = new EnumMap<>(AuditAction.class);
+        Map<AuditAction.Category, Rule> categories = new EnumMap<>(AuditAction.Category.class);
+        for (Map.Entry<String, AuditRuleDto> entry : rulesOf(policy).entrySet()) {
+            AuditRuleDto rule = entry.getValue();
+            addRule(entry.getKey(), new Rule(rule.getMode(),
+                    rule.getSampleRate() != null ? rule.getSampleRate() : defaults.sampleRate(),
+                    rule.getWindowSeconds() != null ? rule.getWindowSeconds() * 1000 : defaults.windowMs()), actions, categories);
+        }
+
+        return new Snapshot(defaults, actions, categories, longestWindow(defaults, actions, categories));
+    }
+
+    /**
+     * Check a policy before it is put in force
+     * @param policy policy to check
+     * @return error message, null when the policy is valid
+     **/
+    public static String validate(AuditPolicyDto policy) {
+        if(policy.getDefaultMode() == null){
+            return "Default mode is required";
+        }
+        if(policy.getSampleRate() < 0 || policy.getSampleRate() > 1){
+            return "Sample rate must be between 0 and 1";
+        }
+        if(policy.getWindowSeconds() <= 0){
+            return "Window must be at least one second";
+        }
+        if(policy.getRules() == null){
+            return null;
+        }
+
+        for (Map.Entry<String, AuditRuleDto> entry : policy.getRules().entrySet()) {
+            String name = entry.getKey();
+            AuditRuleDto rule = entry.getValue();
+            AuditAction action = findAction(name);
+            if(action == null && findCategory(name) == null){
+                return String.format("Rule '%s' does not name an action or action category", name);
+            }
+            if(action != null && action.getKind() != AuditAction.Kind.READ){
+                return String.format("Action '%s' changes records and is always recorded", name);
+            }
+            if(rule == null || rule.getMode() == null){
+                return String.format("Rule '%s' has no mode", name);
+            }
+            if(rule.getSampleRate() != null && (rule.getSampleRate() < 0 || rule.getSampleRate() > 1)){
+                return String.format("Sample rate of rule '%s' must be between 0 and 1", name);
+            }
+            if(rule.getWindowSeconds() != null && rule.getWindowSeconds() <= 0){
+                return String.format("Window of rule '%s' must be at least one second", name);
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, AuditRuleDto> rulesOf(AuditPolicyDto policy) {
+        return policy.getRules() != null ? policy.getRules() : Map.of();
+    }
+
+    private static void addRule(String name, Rule rule, Map<AuditAction, Rule> actions, Map<AuditAction.Category, Rule> categories) {
+        AuditAction action = findAction(name);
+        if(action != null){
+            actions.put(action, rule);
+        } else {
+            categories.put(findCategory(name), rule);
+        }
+    }
+
+    //..property map keys lose their underscores when bound, names are compared on letters and digits only
+    private static AuditAction findAction(String name) {
+        for (AuditAction action : AuditAction.values()) {
+            if(sameName(action.name(), name)){
+                return action;
+            }
+        }
+        return null;
+    }
+
+    private static AuditAction.Category findCategory(String name) {
+        for (AuditAction.Category category : AuditAction.Category.values()) {
+            if(sameName(category.name(), name)){
+                return category;
+            }
+        }
+        return null;
+    }
+
+    private static boolean sameName(String name, String key) {
+        return name.replace("_", "").equalsIgnoreCase(key.replaceAll("[^A-Za-z0-9]", ""));
+    }
+
+    private static long longestWindow(Rule defaults, Map<AuditAction, Rule> actions, Map<AuditAction.Category, Rule> categories) {
+        long longest = defaults.windowMs();
+        for (Rule rule : actions.values()) {
+            longest = Math.max(longest, rule.windowMs());
+        }
+        for (Rule rule : categories.values()) {
+            longest = Math.max(longest, rule.windowMs());
+        }
+        return longest;
+    }
+
+    private static AuditRuleDto toDto(Rule rule) {
+        return new AuditRuleDto(rule.mode(), rule.sampleRate(), rule.windowMs() / 1000);
+    }
+}
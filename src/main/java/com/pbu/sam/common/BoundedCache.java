@@ -0,0 +1,123 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.dtos.CacheStatsDto;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Class Name : BoundedCache
+ * Created By : Nkambwe Mark
+ * Description: Class keeps up to a fixed number of values in memory, least recently used first out, each value expiring
+ * a fixed time after it was loaded. Values are loaded outside the lock, a value loaded while the cache was invalidated
+ * is returned to its caller but not kept, so a load that read the old record never outlives the invalidation.
+ * Null values are never kept.
+ **/
+public class BoundedCache<K, V> {
+    private final String name;
+    private final int maxSize;
+    private final long ttlMs;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    //..bumped on every invalidation, loads started before it are not kept
+    private long generation;
+
+    private record Entry<V>(V value, long expiresAt) {}
+
+    public BoundedCache(String name, int maxSize, long ttlMs) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if(size() > BoundedCache.this.maxSize){
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get a value, loading and keeping it when it is not held
+     * @param key key of the value
+     * @param loader reads the value when it is not held, may return null
+     * @return value held or loaded, null when the loader found nothing
+     **/
+    public V get(K key, Function<K, V> loader) {
+        long started;
+        synchronized (this) {
+            V value = find(key);
+            if(value != null){
+                hits.increment();
+                return value;
+            }
+            misses.increment();
+            started = generation;
+        }
+
+        V value = loader.apply(key);
+        if(value != null){
+            synchronized (this) {
+                if(started == generation){
+                    entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMs));
+                }
+            }
+        }
+        return value;
+    }
+
+    /**Drop the value of a key**/
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    /**Drop every value matching a condition**/
+    public synchronized void invalidateIf(Predicate<V> condition) {
+        generation++;
+        entries.values().removeIf(entry -> condition.test(entry.value()));
+    }
+
+    /**Drop every value**/
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized CacheStatsDto getStatistics() {
+        //..expired values still held are not counted
+        long now = System.currentTimeMillis();
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if(iterator.next().expiresAt() <= now){
+                iterator.remove();
+                expirations.increment();
+            }
+        }
+        return new CacheStatsDto(name, entries.size(), maxSize, hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    private V find(K key) {
+        Entry<V> entry = entries.get(key);
+        if(entry == null){
+            return null;
+        }
+        if(entry.expiresAt() <= System.currentTimeMillis()){
+            entries.remove(key);
+            expirations.increment();
+            return null;
+        }
+        return entry.value();
+    }
+}
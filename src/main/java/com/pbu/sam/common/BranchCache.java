@@ -0,0 +1,118 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.configuration.CacheProperties;
+import com.pbu.sam.dtos.BranchDto;
+import com.pbu.sam.dtos.CacheStatsDto;
+import com.pbu.sam.entities.SystemBranch;
+import com.pbu.sam.repositories.BranchRepository;
+import com.pbu.sam.utils.CacheEntity;
+import org.modelmapper.ModelMapper;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class Name : BranchCache
+ * Created By : Nkambwe Mark
+ * Description: Class reads branches through an in-memory cache keyed by ID, SolID and branch name.
+ * Branches change rarely, a cached branch is served until {@code sam.cache.branch-ttl-seconds} passes or a change to it
+ * arrives through the {@link InvalidationBus}. Callers get their own copy of a cached branch.
+ * Lookups that find no branch are not cached.
+ **/
+@Service
+public class BranchCache {
+    private static final String ALL_BRANCHES = "ALL";
+
+    private final ModelMapper mapper;
+    private final BranchRepository branchRepo;
+    private final BoundedCache<Long, BranchDto> byId;
+    private final BoundedCache<String, BranchDto> bySolId;
+    private final BoundedCache<String, BranchDto> byName;
+    private final BoundedCache<String, List<BranchDto>> all;
+
+    public BranchCache(CacheProperties properties, ModelMapper mapper, BranchRepository branchRepo, InvalidationBus invalidationBus) {
+        this.mapper = mapper;
+        this.branchRepo = branchRepo;
+
+        long ttlMs = properties.getBranchTtlSeconds() * 1000;
+        this.byId = new BoundedCache<>("branches.id", properties.getBranchMaxSize(), ttlMs);
+        this.bySolId = new BoundedCache<>("branches.solId", properties.getBranchMaxSize(), ttlMs);
+        this.byName = new BoundedCache<>("branches.name", properties.getBranchMaxSize(), ttlMs);
+        this.all = new BoundedCache<>("branches.all", 1, ttlMs);
+
+        invalidationBus.subscribe(CacheEntity.BRANCH, (entity, id) -> evict(id));
+    }
+
+    /**Branch with an ID, null when there is none**/
+    public BranchDto findById(long id) {
+        return copy(byId.get(id, key -> map(branchRepo.findById(key).orElse(null))));
+    }
+
+    /**Branch with a SolID, null when there is none**/
+    public BranchDto findBySolId(String solId) {
+        return copy(bySolId.get(solId, key -> map(branchRepo.findBySolId(key))));
+    }
+
+    /**Branch with a name, null when there is none**/
+    public BranchDto findByName(String branchName) {
+        return copy(byName.get(branchName, key -> map(branchRepo.findByBranchName(key))));
+    }
+
+    /**Every branch**/
+    public List<BranchDto> findAll() {
+        List<BranchDto> branches = all.get(ALL_BRANCHES, key -> {
+            List<BranchDto> records = new ArrayList<>();
+            for (SystemBranch branch : branchRepo.findAll()) {
+                records.add(map(branch));
+            }
+            return List.copyOf(records);
+        });
+
+        //..the lookup by ID loads through its own cache, a list read before an invalidation never refills it
+        List<BranchDto> records = new ArrayList<>();
+        for (BranchDto branch : branches) {
+            records.add(copy(branch));
+        }
+        return records;
+    }
+
+    /**
+     * Drop cached copies of a branch
+     * @param id ID of the changed branch, null drops every branch
+     **/
+    public void evict(Long id) {
+        all.invalidateAll();
+        if(id == null){
+            byId.invalidateAll();
+            bySolId.invalidateAll();
+            byName.invalidateAll();
+            return;
+        }
+
+        //..the SolID and name may have changed, entries are found by the branch they hold
+        byId.invalidate(id);
+        bySolId.invalidateIf(branch -> branch.getId() == id);
+        byName.invalidateIf(branch -> branch.getId() == id);
+    }
+
+    public List<CacheStatsDto> getStatistics() {
+        return List.of(byId.getStatistics(), bySolId.getStatistics(), byName.getStatistics(), all.getStatistics());
+    }
+
+    private BranchDto map(SystemBranch branch) {
+        return branch != null ? mapper.map(branch, BranchDto.class) : null;
+    }
+
+    private static BranchDto copy(BranchDto branch) {
+        if(branch == null){
+            return null;
+        }
+
+        BranchDto record = new BranchDto(branch.getId(), branch.getSolid(), branch.getBranchName());
+        record.setActive(branch.isActive());
+        record.setDeleted(branch.isDeleted());
+        record.setCreatedOn(branch.getCreatedOn());
+        return record;
+    }
+}
@@ -0,0 +1,439 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.dtos.LogDto;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Class Name : ColdArchiveFile
+ * Created By : Nkambwe Mark
+ * Description: Class reads and writes cold archive files of system logs.
+ * Records are written in log time order into deflate compressed blocks stored column by column: ids, log times and
+ * archive times are delta encoded varints, user ids and action codes are varints and target types, target ids,
+ * free text actions and ip addresses are dictionary encoded. Actions are kept as catalog codes with their target and
+ * rendered when the rows are read, like System_logs.
+ * The occurrence count and the last log time of merged records follow the archive times as varints.
+ * A footer lists every block with its min/max log time and user id so readers only inflate blocks that can match.
+ * File layout is [magic][version][block]...[footer][footer offset][magic].
+ **/
+public class ColdArchiveFile {
+    private static final byte[] MAGIC = "SAMC".getBytes(StandardCharsets.US_ASCII);
+    private static final byte FORMAT_VERSION = 1;
+    private static final int TRAILER = Long.BYTES + 4;
+
+    private ColdArchiveFile() {}
+
+    /**One archived system log, archive time equals log time for records exported straight from System_logs**/
+    public record Row(long id, long userId, short actionCode, String targetType, String targetId, String action,
+                      LocalDateTime logTime, String ipAddress, LocalDateTime archiveTime, int occurrences, LocalDateTime lastLogTime) {
+        public LogDto toDto() {
+            return new LogDto(id, userId, null, actionCode, targetType, targetId, action, logTime, ipAddress, occurrences, lastLogTime);
+        }
+    }
+
+    /**Footer entry describing one block**/
+    public record Block(long offset, int length, int rows, long minTime, long maxTime, long minUser, long maxUser, int crc) {
+        boolean overlaps(long from, long to, long userId) {
+            return maxTime >= from && minTime <= to && (userId <= 0 || (userId >= minUser && userId <= maxUser));
+        }
+    }
+
+    /**Blocks of a file and the range of log times they hold**/
+    public record Summary(List<Block> blocks, long rows, LocalDateTime minTime, LocalDateTime maxTime) {}
+
+    //region writer
+
+    /**Writes rows in log time order, rows are buffered until a block is full**/
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final int blockRows;
+        private final List<Row> pending = new ArrayList<>();
+        private final List<Block> blocks = new ArrayList<>();
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private long rows;
+
+        public Writer(Path file, int blockRows) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            this.blockRows = blockRows;
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1).put(MAGIC).put(FORMAT_VERSION);
+            writeFully(header.flip());
+        }
+
+        public void write(Row row) throws IOException {
+            pending.add(row);
+            rows++;
+            if(pending.size() >= blockRows){
+                flushBlock();
+            }
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /**Write the last block and the footer and force the file to disk**/
+        public void finish() throws IOException {
+            flushBlock();
+
+            long footerOffset = channel.position();
+            ByteBuffer footer = ByteBuffer.allocate(Integer.BYTES + blocks.size() * (Long.BYTES * 5 + Integer.BYTES * 3) + TRAILER);
+            footer.putInt(blocks.size());
+            for (Block block : blocks) {
+                footer.putLong(block.offset()).putInt(block.length()).putInt(block.rows())
+                        .putLong(block.minTime()).putLong(block.maxTime())
+                        .putLong(block.minUser()).putLong(block.maxUser())
+                        .putInt(block.crc());
+            }
+            footer.putLong(footerOffset).put(MAGIC);
+            writeFully(footer.flip());
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            channel.close();
+        }
+
+        private void flushBlock() throws IOException {
+            if(pending.isEmpty()){
+                return;
+            }
+
+            byte[] compressed = deflate(encode(pending));
+            long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE, minUser = Long.MAX_VALUE, maxUser = Long.MIN_VALUE;
+            for (Row row : pending) {
+                long time = micros(row.logTime());
+                minTime = Math.min(minTime, time);
+                maxTime = Math.max(maxTime, time);
+                minUser = Math.min(minUser, row.userId());
+                maxUser = Math.max(maxUser, row.userId());
+            }
+
+            blocks.add(new Block(channel.position(), compressed.length, pending.size(), minTime, maxTime, minUser, maxUser, checksum(compressed)));
+            writeFully(ByteBuffer.wrap(compressed));
+            pending.clear();
+        }
+
+        private byte[] deflate(byte[] data) {
+            deflater.reset();
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    //endregion
+
+    //region reader
+
+    /**
+     * Read the block list of a cold archive file
+     * @param file archive file
+     * @return blocks and the range of log times in the file
+     **/
+    public static Summary summary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Block> blocks = readFooter(channel, file);
+            long rows = 0, minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+            for (Block block : blocks) {
+                rows += block.rows();
+                minTime = Math.min(minTime, block.minTime());
+                maxTime = Math.max(maxTime, block.maxTime());
+            }
+            return new Summary(blocks, rows,
+                    blocks.isEmpty() ? null : time(minTime),
+                    blocks.isEmpty() ? null : time(maxTime));
+        }
+    }
+
+    /**
+     * Read rows matching a log time range and user, blocks that can not match are not read
+     * @param file archive file
+     * @param from earliest log time to include
+     * @param to latest log time to include
+     * @param userId only include rows of this user, 0 for all users
+     * @param accept called for each matching row in log time order, return false to stop reading
+     * @return false when {@code accept} asked to stop
+     **/
+    public static boolean scan(Path file, LocalDateTime from, LocalDateTime to, long userId, Predicate<Row> accept) throws IOException {
+        long fromMicros = micros(from);
+        long toMicros = micros(to);
+        Inflater inflater = new Inflater();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Block> blocks = readFooter(channel, file);
+            for (Block block : blocks) {
+                if(!block.overlaps(fromMicros, toMicros, userId)){
+                    continue;
+                }
+
+                ByteBuffer compressed = ByteBuffer.allocate(block.length());
+                while (compressed.hasRemaining()) {
+                    if(channel.read(compressed, block.offset() + compressed.position()) < 0){
+                        throw new EOFException(String.format("Cold archive '%s' is truncated", file.getFileName()));
+                    }
+                }
+                if(checksum(compressed.array()) != block.crc()){
+                    throw new IOException(String.format("Cold archive '%s' block at %s failed checksum", file.getFileName(), block.offset()));
+                }
+
+                for (Row row : decode(inflate(inflater, compressed.array()), block.rows())) {
+                    long time = micros(row.logTime());
+                    if(time < fromMicros || time > toMicros || (userId > 0 && row.userId() != userId)){
+                        continue;
+                    }
+                    if(!accept.test(row)){
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static List<Block> readFooter(FileChannel channel, Path file) throws IOException {
+        long size = channel.size();
+        if(size < MAGIC.length + 1 + Integer.BYTES + TRAILER){
+            throw new IOException(String.format("'%s' is not a cold archive file", file.getFileName()));
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER);
+        channel.read(trailer, size - TRAILER);
+        trailer.flip();
+        long footerOffset = trailer.getLong();
+        byte[] magic = new byte[MAGIC.length];
+        trailer.get(magic);
+        byte version = readVersion(channel);
+        if(!Arrays.equals(magic, MAGIC) || version != FORMAT_VERSION){
+            throw new IOException(String.format("'%s' is not a version %s cold archive file", file.getFileName(), FORMAT_VERSION));
+        }
+
+        ByteBuffer footer = ByteBuffer.allocate((int) (size - TRAILER - footerOffset));
+        channel.read(footer, footerOffset);
+        footer.flip();
+        int count = footer.getInt();
+        List<Block> blocks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            blocks.add(new Block(footer.getLong(), footer.getInt(), footer.getInt(), footer.getLong(), footer.getLong(),
+                    footer.getLong(), footer.getLong(), footer.getInt()));
+        }
+        return blocks;
+    }
+
+    private static byte readVersion(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1);
+        channel.read(header, 0);
+        return header.get(MAGIC.length);
+    }
+
+    private static byte[] inflate(Inflater inflater, byte[] compressed) throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+        byte[] chunk = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int read = inflater.inflate(chunk);
+                if(read == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+                    throw new EOFException("Cold archive block ended early");
+                }
+                out.write(chunk, 0, read);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(String.format("Cold archive block could not be inflated: %s", e.getMessage()));
+        }
+        return out.toByteArray();
+    }
+
+    //endregion
+
+    //region column encoding
+
+    private static byte[] encode(List<Row> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows.size() * 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            long previousId = 0, previousTime = 0, previousArchive = 0;
+            for (Row row : rows) {
+                writeVarLong(out, zigzag(row.id() - previousId));
+                previousId = row.id();
+            }
+            for (Row row : rows) {
+                long time = micros(row.logTime());
+                writeVarLong(out, zigzag(time - previousTime));
+                previousTime = time;
+            }
+            for (Row row : rows) {
+                writeVarLong(out, zigzag(row.userId()));
+            }
+            for (Row row : rows) {
+                writeVarLong(out, row.actionCode());
+            }
+            writeDictionary(out, rows, Row::targetType);
+            writeDictionary(out, rows, Row::targetId);
+            writeDictionary(out, rows, Row::action);
+            writeDictionary(out, rows, Row::ipAddress);
+            for (Row row : rows) {
+                long time = micros(row.archiveTime() != null ? row.archiveTime() : row.logTime());
+                writeVarLong(out, zigzag(time - previousArchive));
+                previousArchive = time;
+            }
+            for (Row row : rows) {
+                writeVarLong(out, row.occurrences());
+            }
+            for (Row row : rows) {
+                //..last log time is stored as the span after the first occurrence, 0 for single events
+                writeVarLong(out, row.lastLogTime() != null ? micros(row.lastLogTime()) - micros(row.logTime()) : 0);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Row> decode(byte[] data, int count) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            long[] ids = new long[count], times = new long[count], users = new long[count], archives = new long[count];
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                ids[i] = previous += unzigzag(readVarLong(in));
+            }
+            previous = 0;
+            for (int i = 0; i < count; i++) {
+                times[i] = previous += unzigzag(readVarLong(in));
+            }
+            for (int i = 0; i < count; i++) {
+                users[i] = unzigzag(readVarLong(in));
+            }
+            short[] actionCodes = new short[count];
+            for (int i = 0; i < count; i++) {
+                actionCodes[i] = (short) readVarLong(in);
+            }
+            String[] targetTypes = readDictionary(in, count);
+            String[] targetIds = readDictionary(in, count);
+            String[] actions = readDictionary(in, count);
+            String[] ips = readDictionary(in, count);
+            previous = 0;
+            for (int i = 0; i < count; i++) {
+                archives[i] = previous += unzigzag(readVarLong(in));
+            }
+            int[] occurrences = new int[count];
+            long[] spans = new long[count];
+            for (int i = 0; i < count; i++) {
+                occurrences[i] = (int) readVarLong(in);
+            }
+            for (int i = 0; i < count; i++) {
+                spans[i] = readVarLong(in);
+            }
+
+            List<Row> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                rows.add(new Row(ids[i], users[i], actionCodes[i], emptyToNull(targetTypes[i]), emptyToNull(targetIds[i]), emptyToNull(actions[i]),
+                        time(times[i]), ips[i], time(archives[i]), occurrences[i], time(times[i] + spans[i])));
+            }
+            return rows;
+        }
+    }
+
+    private static void writeDictionary(DataOutputStream out, List<Row> rows, Function<Row, String> column) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int[] codes = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            String value = column.apply(rows.get(i));
+            codes[i] = dictionary.computeIfAbsent(value != null ? value : "", key -> dictionary.size());
+        }
+
+        writeVarLong(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            out.writeUTF(value);
+        }
+        for (int code : codes) {
+            writeVarLong(out, code);
+        }
+    }
+
+    private static String[] readDictionary(DataInputStream in, int count) throws IOException {
+        String[] dictionary = new String[(int) readVarLong(in)];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = in.readUTF();
+        }
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = dictionary[(int) readVarLong(in)];
+        }
+        return values;
+    }
+
+    //..dictionaries store empty columns as an empty string
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in cold archive block");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    //endregion
+
+    private static long micros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime time(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static int checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,94 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.configuration.InvalidationProperties;
+import com.pbu.sam.utils.CacheEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Class Name : DatabaseInvalidationBus
+ * Created By : Nkambwe Mark
+ * Description: Class delivers changes to the caches of every instance sharing the database.
+ * A change is written to Cache_invalidations in the transaction that makes it, so other instances see it exactly when
+ * it commits. Each instance reads the changes of the last {@code sam.invalidation.commit-lag-seconds} on every poll,
+ * which picks up changes that committed after rows with higher IDs, and delivers each row once.
+ **/
+@Service
+@Slf4j
+@ConditionalOnProperty(prefix = "sam.invalidation", name = "mode", havingValue = "DATABASE")
+public class DatabaseInvalidationBus extends LocalInvalidationBus {
+    private static final String INSERT_CHANGE = "INSERT INTO cache_invalidations (entity_type, entity_id, node_id, changed_on) VALUES (?, ?, ?, LOCALTIMESTAMP)";
+    private static final String SELECT_CHANGES = "SELECT row_id, entity_type, entity_id FROM cache_invalidations " +
+            "WHERE changed_on >= LOCALTIMESTAMP - make_interval(secs => ?) AND node_id <> ? ORDER BY row_id";
+    private static final String PURGE_CHANGES = "DELETE FROM cache_invalidations WHERE changed_on < LOCALTIMESTAMP - make_interval(mins => ?)";
+    private static final long PURGE_INTERVAL_MS = 60 * 1000;
+
+    private final InvalidationProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+
+    //..identifies this instance's own changes, they are delivered locally when they commit
+    private final String nodeId = UUID.randomUUID().toString();
+
+    //rows already delivered and when they were first read, only the poll thread uses it
+    private final Map<Long, Long> delivered = new HashMap<>();
+    private long lastPurge;
+
+    public DatabaseInvalidationBus(InvalidationProperties properties, JdbcTemplate jdbcTemplate) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void publish(CacheEntity entity, Long id) {
+        //..written in the caller's transaction, a rollback takes the change back with it
+        jdbcTemplate.update(INSERT_CHANGE, entity.name(), id, nodeId);
+        super.publish(entity, id);
+    }
+
+    @Scheduled(fixedDelayString = "${sam.invalidation.poll-interval-ms:1000}")
+    public void poll() {
+        try {
+            long now = System.currentTimeMillis();
+            jdbcTemplate.query(SELECT_CHANGES, rs -> {
+                long rowId = rs.getLong(1);
+                if(delivered.putIfAbsent(rowId, now) != null){
+                    return;
+                }
+
+                CacheEntity entity = findEntity(rs.getString(2));
+                if(entity != null){
+                    long id = rs.getLong(3);
+                    deliver(entity, rs.wasNull() ? null : id);
+                }
+            }, (double) properties.getCommitLagSeconds(), nodeId);
+
+            //..rows drop out of the query once they are older than the lag
+            long forgetAfter = properties.getCommitLagSeconds() * 2000;
+            delivered.values().removeIf(read -> now - read > forgetAfter);
+
+            if(now - lastPurge >= PURGE_INTERVAL_MS){
+                lastPurge = now;
+                jdbcTemplate.update(PURGE_CHANGES, (int) properties.getRetentionMinutes());
+            }
+        } catch (Exception e) {
+            //..changes are read again on the next poll while they are within the lag
+            log.error(String.format("Failed to read cache invalidations: %s", e.getMessage()));
+        }
+    }
+
+    private static CacheEntity findEntity(String name) {
+        for (CacheEntity entity : CacheEntity.values()) {
+            if(entity.name().equals(name)){
+                return entity;
+            }
+        }
+        return null;
+    }
+}
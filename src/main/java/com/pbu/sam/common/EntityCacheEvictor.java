@@ -0,0 +1,69 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.entities.SystemPermission;
+import com.pbu.sam.entities.SystemPermissionSet;
+import com.pbu.sam.entities.SystemRole;
+import com.pbu.sam.utils.CacheEntity;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Class Name : EntityCacheEvictor
+ * Created By : Nkambwe Mark
+ * Description: Class evicts roles, permission sets and permissions from the Hibernate second-level cache when a change
+ * arrives through the {@link InvalidationBus}. Hibernate keeps the cache current for changes it writes itself, this
+ * covers role_permission rows written over JDBC and changes committed by other instances.
+ **/
+@Service
+public class EntityCacheEvictor {
+    private static final String ROLE_PERMISSION_SETS = SystemRole.class.getName() + ".permissions";
+    private static final String SET_PERMISSIONS = SystemPermissionSet.class.getName() + ".permissions";
+
+    private final Cache cache;
+
+    public EntityCacheEvictor(EntityManagerFactory entityManagerFactory, InvalidationBus invalidationBus) {
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+
+        invalidationBus.subscribe(CacheEntity.ROLE, (entity, id) -> evictRole(id));
+        invalidationBus.subscribe(CacheEntity.PERMISSION_SET, (entity, id) -> evictSet(id));
+        invalidationBus.subscribe(CacheEntity.PERMISSION, (entity, id) -> evictPermission(id));
+    }
+
+    private void evictRole(Long id) {
+        if(id == null){
+            cache.evictEntityData(SystemRole.class);
+            cache.evictCollectionData(ROLE_PERMISSION_SETS);
+        } else {
+            cache.evictEntityData(SystemRole.class, id);
+            cache.evictCollectionData(ROLE_PERMISSION_SETS, id);
+        }
+        //..a renamed role answers a different name lookup
+        cache.evictDefaultQueryRegion();
+    }
+
+    private void evictSet(Long id) {
+        if(id == null){
+            cache.evictEntityData(SystemPermissionSet.class);
+            cache.evictCollectionData(SET_PERMISSIONS);
+        } else {
+            cache.evictEntityData(SystemPermissionSet.class, id);
+            cache.evictCollectionData(SET_PERMISSIONS, id);
+        }
+
+        //..locking a set locks its permissions, a purged set leaves the roles holding it
+        cache.evictEntityData(SystemPermission.class);
+        cache.evictCollectionData(ROLE_PERMISSION_SETS);
+        cache.evictDefaultQueryRegion();
+    }
+
+    private void evictPermission(Long id) {
+        if(id == null){
+            cache.evictEntityData(SystemPermission.class);
+        } else {
+            cache.evictEntityData(SystemPermission.class, id);
+        }
+        cache.evictDefaultQueryRegion();
+    }
+}
@@ -0,0 +1,32 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.utils.CacheEntity;
+
+/**
+ * Class Name : InvalidationBus
+ * Created By : Nkambwe Mark
+ * Description: Interface carries changes to reference data to the caches holding copies of it.
+ * A change published inside a transaction is delivered only once that transaction commits, and never when it rolls back.
+ **/
+public interface InvalidationBus {
+
+    /**
+     * Announce that a record changed
+     * @param entity type of the changed record
+     * @param id ID of the changed record, null when every record of the type may have changed
+     **/
+    void publish(CacheEntity entity, Long id);
+
+    /**
+     * Receive changes to records of a type
+     * @param entity type of record the listener caches
+     * @param listener called with each change, on the publishing thread or on the thread reading other instances' changes
+     **/
+    void subscribe(CacheEntity entity, Listener listener);
+
+    /**Evicts cached copies of a changed record**/
+    @FunctionalInterface
+    interface Listener {
+        void evict(CacheEntity entity, Long id);
+    }
+}
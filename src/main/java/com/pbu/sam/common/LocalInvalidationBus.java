@@ -0,0 +1,62 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.utils.CacheEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Class Name : LocalInvalidationBus
+ * Created By : Nkambwe Mark
+ * Description: Class delivers changes to the caches of this instance only, it fits a single instance deployment.
+ **/
+@Service
+@Slf4j
+@ConditionalOnProperty(prefix = "sam.invalidation", name = "mode", havingValue = "LOCAL", matchIfMissing = true)
+public class LocalInvalidationBus implements InvalidationBus {
+    private final Map<CacheEntity, List<Listener>> listeners = new EnumMap<>(CacheEntity.class);
+
+    public LocalInvalidationBus() {
+        for (CacheEntity entity : CacheEntity.values()) {
+            listeners.put(entity, new CopyOnWriteArrayList<>());
+        }
+    }
+
+    @Override
+    public void publish(CacheEntity entity, Long id) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            //..a cache reloaded before the commit would read the old record again
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deliver(entity, id);
+                }
+            });
+        } else {
+            deliver(entity, id);
+        }
+    }
+
+    @Override
+    public void subscribe(CacheEntity entity, Listener listener) {
+        listeners.get(entity).add(listener);
+    }
+
+    /**Hand a change to every listener of its type, a failing listener does not keep the change from the others**/
+    protected void deliver(CacheEntity entity, Long id) {
+        for (Listener listener : listeners.get(entity)) {
+            try {
+                listener.evict(entity, id);
+            } catch (Exception e) {
+                log.error(String.format("Failed to evict %s %s: %s", entity, id, e.getMessage()));
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.configuration.CacheProperties;
+import com.pbu.sam.dtos.CacheStatsDto;
+import com.pbu.sam.utils.CacheEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Class Name : NegativeLookupCache
+ * Created By : Nkambwe Mark
+ * Description: Class remembers user, role and permission set lookups that found no record, so clients repeating a
+ * lookup for a missing record are answered from memory until {@code sam.cache.missing-ttl-seconds} passes.
+ * Any change to a record type arriving through the {@link InvalidationBus}, creates included, drops every remembered
+ * miss of that type. Lookups that find a record are not cached here.
+ **/
+@Service
+public class NegativeLookupCache {
+
+    /**Lookups whose misses are remembered, each belongs to the record type whose changes drop it**/
+    public enum Lookup {
+        USER_ID(CacheEntity.USER, false),
+        USERNAME(CacheEntity.USER, true),
+        USER_PF_NO(CacheEntity.USER, true),
+        ROLE_ID(CacheEntity.ROLE, false),
+        ROLE_NAME(CacheEntity.ROLE, false),
+        SET_ID(CacheEntity.PERMISSION_SET, false),
+        SET_NAME(CacheEntity.PERMISSION_SET, false);
+
+        private final CacheEntity entity;
+
+        //..matches lookups made with IgnoreCase finders
+        private final boolean ignoreCase;
+
+        Lookup(CacheEntity entity, boolean ignoreCase) {
+            this.entity = entity;
+            this.ignoreCase = ignoreCase;
+        }
+    }
+
+    private record Key(Lookup lookup, String value) {}
+
+    private final Map<CacheEntity, BoundedCache<Key, Boolean>> misses = new EnumMap<>(CacheEntity.class);
+
+    public NegativeLookupCache(CacheProperties properties, InvalidationBus invalidationBus) {
+        long ttlMs = properties.getMissingTtlSeconds() * 1000;
+        misses.put(CacheEntity.USER, new BoundedCache<>("missing.users", properties.getMissingMaxSize(), ttlMs));
+        misses.put(CacheEntity.ROLE, new BoundedCache<>("missing.roles", properties.getMissingMaxSize(), ttlMs));
+        misses.put(CacheEntity.PERMISSION_SET, new BoundedCache<>("missing.permissionSets", properties.getMissingMaxSize(), ttlMs));
+
+        for (CacheEntity entity : misses.keySet()) {
+            invalidationBus.subscribe(entity, (type, id) -> misses.get(type).invalidateAll());
+        }
+    }
+
+    /**
+     * Look a record up unless the same lookup recently found nothing
+     * @param lookup lookup performed
+     * @param value ID, name or number looked up
+     * @param finder reads the record, may return null
+     * @return record found, null when there is none
+     **/
+    public <T> T find(Lookup lookup, Object value, Supplier<T> finder) {
+        if(value == null){
+            return finder.get();
+        }
+
+        String key = String.valueOf(value);
+        AtomicReference<T> found = new AtomicReference<>();
+        misses.get(lookup.entity).get(new Key(lookup, lookup.ignoreCase ? key.toUpperCase(Locale.ROOT) : key), k -> {
+            found.set(finder.get());
+            return found.get() == null ? Boolean.TRUE : null;
+        });
+        return found.get();
+    }
+
+    public List<CacheStatsDto> getStatistics() {
+        List<CacheStatsDto> statistics = new ArrayList<>();
+        misses.values().forEach(cache -> statistics.add(cache.getStatistics()));
+        return statistics;
+    }
+}
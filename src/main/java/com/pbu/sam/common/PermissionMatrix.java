@@ -0,0 +1,167 @@
+package com.pbu.sam.common;
+
+import java.util.*;
+
+/**
+ * Class Name : PermissionMatrix
+ * Created By : Nkambwe Mark
+ * Description: Class holds the role, permission set and permission graph compiled for permission checks.
+ * Every distinct permission name gets a dense index and each role holds the bit set of the permissions its
+ * permission sets grant, so a check is two map lookups and a bit test. A matrix is never changed once built.
+ **/
+public class PermissionMatrix {
+    private final String[] names;
+    private final Map<String, Integer> indexes;
+    private final Map<Long, BitSet> roles;
+    private final Map<Long, Long> userRoles;
+
+    private PermissionMatrix(String[] names, Map<String, Integer> indexes, Map<Long, BitSet> roles, Map<Long, Long> userRoles) {
+        this.names = names;
+        this.indexes = indexes;
+        this.roles = roles;
+        this.userRoles = userRoles;
+    }
+
+    /**Matrix granting nothing, used until the first compile**/
+    public static PermissionMatrix empty() {
+        return new Builder().build();
+    }
+
+    /**
+     * Check whether a user holds a permission
+     * @param userId user ID
+     * @param permission permission name, case is ignored
+     * @return true when a permission set of the user's role grants the permission
+     **/
+    public boolean hasPermission(long userId, String permission) {
+        Integer index = indexOf(permission);
+        if(index == null){
+            return false;
+        }
+        BitSet granted = grantsOf(userId);
+        return granted != null && granted.get(index);
+    }
+
+    /**
+     * Get the permissions a user holds through the permission sets of the user's role
+     * @param userId user ID
+     * @return permission names in index order, empty when the user has no active role
+     **/
+    public List<String> effectivePermissions(long userId) {
+        BitSet granted = grantsOf(userId);
+        if(granted == null){
+            return List.of();
+        }
+
+        List<String> permissions = new ArrayList<>(granted.cardinality());
+        for (int i = granted.nextSetBit(0); i >= 0; i = granted.nextSetBit(i + 1)) {
+            permissions.add(names[i]);
+        }
+        return permissions;
+    }
+
+    /**
+     * Decide many user and permission pairs against this matrix
+     * @param userIds users to check
+     * @param permissions permission names, case is ignored
+     * @return bit {@code u * permissions.size() + p} is set when user {@code u} holds permission {@code p}
+     **/
+    public BitSet decide(List<Long> userIds, List<String> permissions) {
+        //..resolve each permission once, not once per user
+        int[] columns = new int[permissions.size()];
+        for (int p = 0; p < columns.length; p++) {
+            Integer index = indexOf(permissions.get(p));
+            columns[p] = index != null ? index : -1;
+        }
+
+        BitSet decisions = new BitSet(userIds.size() * columns.length);
+        for (int u = 0; u < userIds.size(); u++) {
+            BitSet granted = userIds.get(u) != null ? grantsOf(userIds.get(u)) : null;
+            if(granted == null){
+                continue;
+            }
+            for (int p = 0; p < columns.length; p++) {
+                if(columns[p] >= 0 && granted.get(columns[p])){
+                    decisions.set(u * columns.length + p);
+                }
+            }
+        }
+        return decisions;
+    }
+
+    /**
+     * Get the role a user's permissions come from
+     * @param userId user ID
+     * @return role ID, 0 when the user has no active role
+     **/
+    public long roleOf(long userId) {
+        Long roleId = userRoles.get(userId);
+        return roleId != null ? roleId : 0;
+    }
+
+    /**
+     * Get the dense index of a permission
+     * @param permission permission name, case is ignored
+     * @return index, null for unknown permissions
+     **/
+    public Integer indexOf(String permission) {
+        return permission != null ? indexes.get(key(permission)) : null;
+    }
+
+    public int getPermissionCount() {
+        return names.length;
+    }
+
+    public int getRoleCount() {
+        return roles.size();
+    }
+
+    public int getUserCount() {
+        return userRoles.size();
+    }
+
+    private BitSet grantsOf(long userId) {
+        Long roleId = userRoles.get(userId);
+        return roleId != null ? roles.get(roleId) : null;
+    }
+
+    private static String key(String permission) {
+        return permission.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**Collects the graph row by row, permissions with the same name share one index**/
+    public static class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final Map<Long, Integer> permissions = new HashMap<>();
+        private final Map<Long, BitSet> roles = new HashMap<>();
+        private final Map<Long, Long> userRoles = new HashMap<>();
+
+        public Builder permission(long permissionId, String name) {
+            Integer index = indexes.computeIfAbsent(key(name), key -> {
+                names.add(name);
+                return names.size() - 1;
+            });
+            permissions.put(permissionId, index);
+            return this;
+        }
+
+        /**Grant a permission to a role, permissions must be added first**/
+        public Builder grant(long roleId, long permissionId) {
+            Integer index = permissions.get(permissionId);
+            if(index != null){
+                roles.computeIfAbsent(roleId, id -> new BitSet()).set(index);
+            }
+            return this;
+        }
+
+        public Builder user(long userId, long roleId) {
+            userRoles.put(userId, roleId);
+            return this;
+        }
+
+        public PermissionMatrix build() {
+            return new PermissionMatrix(names.toArray(String[]::new), Map.copyOf(indexes), Map.copyOf(roles), Map.copyOf(userRoles));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.utils.CacheEntity;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class Name : ResourceVersions
+ * Created By : Nkambwe Mark
+ * Description: Class counts changes to each type of reference data so list endpoints can answer conditional requests
+ * without reading the records. A counter moves on with every change arriving through the {@link InvalidationBus}.
+ * Entity tags carry a value drawn at start up, so tags handed out by an earlier run or another instance never match.
+ **/
+@Service
+public class ResourceVersions {
+    private final String epoch = Long.toHexString(UUID.randomUUID().getMostSignificantBits());
+    private final Map<CacheEntity, AtomicLong> versions = new EnumMap<>(CacheEntity.class);
+
+    public ResourceVersions(InvalidationBus invalidationBus) {
+        for (CacheEntity entity : CacheEntity.values()) {
+            versions.put(entity, new AtomicLong());
+            invalidationBus.subscribe(entity, (type, id) -> versions.get(type).incrementAndGet());
+        }
+    }
+
+    /**Number of changes to a type of record since start up**/
+    public long version(CacheEntity entity) {
+        return versions.get(entity).get();
+    }
+
+    /**
+     * Strong entity tag of a list, read before the list so a change made while it is read gives the next request a new tag
+     * @param list name of the list
+     * @param entities types of record the list shows
+     * @return quoted entity tag
+     **/
+    public String etag(String list, CacheEntity... entities) {
+        StringBuilder tag = new StringBuilder("\"").append(list).append('-').append(epoch);
+        for (CacheEntity entity : entities) {
+            tag.append('-').append(version(entity));
+        }
+        return tag.append('"').toString();
+    }
+
+    /**
+     * Check whether the client already holds the current list
+     * @param etag entity tag of the current list
+     * @param request request carrying the If-None-Match header
+     * @return true when the request can be answered with 304 Not Modified
+     **/
+    public boolean notModified(String etag, HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if(header == null){
+            return false;
+        }
+
+        //..If-None-Match compares tags weakly, W/ prefixes are ignored
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if(tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)){
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,146 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.configuration.UserKeyFilterProperties;
+import com.pbu.sam.utils.CacheEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+
+/**
+ * Class Name : UserKeyFilter
+ * Created By : Nkambwe Mark
+ * Description: Class keeps {@link BloomFilter}s of the usernames and PF numbers in System_Users so uniqueness checks
+ * for keys certainly not in use skip the query. Keys are compared ignoring case, the filters only ever answer
+ * "certainly not in use" or "check the table".
+ * Users created here are added before their transaction commits, users created or changed on other instances are added
+ * when the change arrives through the {@link InvalidationBus}. Until the first build every key is checked against the table.
+ **/
+@Service
+@Slf4j
+public class UserKeyFilter {
+    private static final String COUNT_USERS = "SELECT COUNT(*) FROM system_users";
+    private static final String SELECT_KEYS = "SELECT username, pf_no FROM system_users";
+    private static final String SELECT_USER_KEYS = "SELECT username, pf_no FROM system_users WHERE row_id = ?";
+
+    private final UserKeyFilterProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final Object rebuildLock = new Object();
+
+    private record Filters(BloomFilter usernames, BloomFilter pfNos) {}
+
+    //filters answering checks, null until the first build
+    private volatile Filters filters;
+
+    //filters being built, keys added meanwhile go to both so the swap loses none
+    private Filters building;
+
+    public UserKeyFilter(UserKeyFilterProperties properties, JdbcTemplate jdbcTemplate, InvalidationBus invalidationBus) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+
+        invalidationBus.subscribe(CacheEntity.USER, (entity, id) -> onUserChanged(id));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStart() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${sam.user-key-filter.rebuild-interval-ms:3600000}", initialDelayString = "${sam.user-key-filter.rebuild-interval-ms:3600000}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            //..keep answering from the filters in force
+            log.error(String.format("Failed to rebuild user key filters: %s", e.getMessage()));
+        }
+    }
+
+    /**Build the filters again from System_Users and put them in force**/
+    public void rebuild() {
+        if(!properties.isEnabled()){
+            return;
+        }
+
+        synchronized (rebuildLock) {
+            long started = System.currentTimeMillis();
+            Long users = jdbcTemplate.queryForObject(COUNT_USERS, Long.class);
+            long capacity = Math.max(properties.getMinCapacity(), (users != null ? users : 0) * 2);
+            Filters next = new Filters(new BloomFilter(capacity, properties.getFalsePositiveRate()),
+                    new BloomFilter(capacity, properties.getFalsePositiveRate()));
+
+            synchronized (this) {
+                building = next;
+            }
+            try {
+                jdbcTemplate.query(SELECT_KEYS, rs -> {
+                    add(next, rs.getString(1), rs.getString(2));
+                });
+                synchronized (this) {
+                    filters = next;
+                }
+            } finally {
+                synchronized (this) {
+                    building = null;
+                }
+            }
+            log.info(String.format("Built user key filters for %s users in %s ms", users, System.currentTimeMillis() - started));
+        }
+    }
+
+    /**@return false when no user certainly holds the username**/
+    public boolean mightHaveUsername(String username) {
+        Filters current = filters;
+        return current == null || username == null || current.usernames().mightContain(normalize(username));
+    }
+
+    /**@return false when no user certainly holds the PF number**/
+    public boolean mightHavePfNo(String pfNo) {
+        Filters current = filters;
+        return current == null || pfNo == null || current.pfNos().mightContain(normalize(pfNo));
+    }
+
+    /**Remember the keys of a user being saved**/
+    public synchronized void add(String username, String pfNo) {
+        if(filters != null){
+            add(filters, username, pfNo);
+        }
+        if(building != null){
+            add(building, username, pfNo);
+        }
+    }
+
+    private void onUserChanged(Long id) {
+        if(!properties.isEnabled()){
+            return;
+        }
+        if(id == null){
+            rebuild();
+            return;
+        }
+
+        //..the PF number may have changed, the old one stays in the filter until the next rebuild
+        jdbcTemplate.query(SELECT_USER_KEYS, rs -> {
+            add(rs.getString(1), rs.getString(2));
+        }, id);
+    }
+
+    private static void add(Filters target, String username, String pfNo) {
+        if(username != null){
+            target.usernames().add(normalize(username));
+        }
+        if(pfNo != null){
+            target.pfNos().add(normalize(pfNo));
+        }
+    }
+
+    //..matches the upper() comparison of the IgnoreCase queries
+    private static String normalize(String key) {
+        return key.toUpperCase(Locale.ROOT);
+    }
+}
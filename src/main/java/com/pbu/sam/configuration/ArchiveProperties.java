@@ -0,0 +1,46 @@
+package com.pbu.sam.configuration;
+
+import com.pbu.sam.utils.Literals;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Class Name : ArchiveProperties
+ * Created By : Nkambwe Mark
+ * Description: Class holds system log archival and cold archive file settings bound from {@code sam.archive.*}
+ **/
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "sam.archive")
+public class ArchiveProperties {
+
+    //run the scheduled archiver
+    private boolean enabled = true;
+
+    //system logs older than this number of days are moved to Archive_log
+    private int retentionDays = 90;
+
+    //number of system logs moved in one transaction
+    private int chunkSize = 1000;
+
+    //pause between chunks so inserts and queries are not starved
+    private long chunkPauseMs = 200;
+
+    //largest number of chunks moved in one run, 0 for no limit
+    private int maxChunksPerRun = 0;
+
+    //time between the end of one run and the start of the next
+    private long intervalMs = 15 * 60 * 1000;
+
+    //time after start up before the first run
+    private long initialDelayMs = 60 * 1000;
+
+    //directory holding cold archive files
+    private String coldDir = Literals.COLD_ARCHIVE_PATH;
+
+    //number of records in each compressed block of a cold archive file
+    private int coldBlockRows = 4096;
+}
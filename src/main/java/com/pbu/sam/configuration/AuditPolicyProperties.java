@@ -0,0 +1,53 @@
+package com.pbu.sam.configuration;
+
+import com.pbu.sam.utils.AuditMode;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class Name : AuditPolicyProperties
+ * Created By : Nkambwe Mark
+ * Description: Class holds the audit policy for read actions bound from {@code sam.audit.policy.*}
+ * Rules are keyed by an action catalog name, which matches the endpoint recording it, or by an action category.
+ * Write actions are always recorded whatever the policy says.
+ **/
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "sam.audit.policy")
+public class AuditPolicyProperties {
+
+    //mode used for reads no rule matches
+    private AuditMode defaultMode = AuditMode.ALL;
+
+    //share of reads recorded in SAMPLE mode, between 0 and 1
+    private double sampleRate = 0.1;
+
+    //length of the FIRST_PER_WINDOW window in seconds
+    private long windowSeconds = 3600;
+
+    //most user, action and target combinations remembered for FIRST_PER_WINDOW, the oldest windows are dropped first
+    private int maxTracked = 100000;
+
+    //rules by action name or category name, an action rule wins over its category rule
+    private Map<String, Rule> rules = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Rule {
+
+        //how matching reads are recorded
+        private AuditMode mode = AuditMode.ALL;
+
+        //share of reads recorded in SAMPLE mode, the policy sample rate when not set
+        private Double sampleRate;
+
+        //FIRST_PER_WINDOW window in seconds, the policy window when not set
+        private Long windowSeconds;
+    }
+}
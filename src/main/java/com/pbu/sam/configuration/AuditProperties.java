@@ -0,0 +1,75 @@
+package com.pbu.sam.configuration;
+
+import com.pbu.sam.utils.Literals;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Class Name : AuditProperties
+ * Created By : Nkambwe Mark
+ * Description: Class holds audit log write-behind settings bound from {@code sam.audit.*}
+ **/
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "sam.audit")
+public class AuditProperties {
+
+    //PostgreSQL binds at most 32767 parameters in one statement and each system log inserted binds 9
+    public static final int MAX_FLUSH_SIZE = 32767 / 9;
+
+    //maximum number of audit events waiting to be written
+    private int queueCapacity = 10000;
+
+    //maximum number of rows written in one multi-row insert, at most MAX_FLUSH_SIZE
+    private int flushSize = 500;
+
+    //longest time an audit event waits in the queue before it is written
+    private long flushIntervalMs = 1000;
+
+    //time between checks for queue space when there is no journal to fall back on
+    private long offerTimeoutMs = 50;
+
+    //time allowed for the queue to drain when the application stops
+    private long shutdownTimeoutMs = 30000;
+
+    //append every record to a local journal before it is acknowledged
+    private boolean journalEnabled = true;
+
+    //directory holding journal segment files
+    private String journalDir = Literals.AUDIT_JOURNAL_PATH;
+
+    //size in bytes of each memory-mapped journal segment
+    private int journalSegmentSize = 16 * 1024 * 1024;
+
+    //force each append to disk. Without it records survive a JVM crash but not an OS crash
+    private boolean journalForce = false;
+
+    //identical events of a user, action, target and ip address within this many seconds of the first are merged into one record, 0 writes every event
+    private long coalesceWindowSeconds = 60;
+
+    //merge hourly and daily event counts into Audit_rollups as records are written
+    private boolean rollupsEnabled = true;
+
+    //number of system logs returned per page when the caller does not ask for a size
+    private int pageSize = 100;
+
+    //largest page of system logs a caller may ask for
+    private int maxPageSize = 500;
+
+    //number of rows fetched from the database at a time while exporting system logs
+    private int exportFetchSize = 1000;
+
+    //longest an export may keep its request open in milliseconds, 0 or less waits until the export ends
+    private long exportTimeoutMs = 0;
+
+    public void setFlushSize(int flushSize) {
+        //..a larger batch could never be inserted and would hold up the writer for good
+        if(flushSize < 1 || flushSize > MAX_FLUSH_SIZE){
+            throw new IllegalArgumentException(String.format("sam.audit.flush-size must be between 1 and %s", MAX_FLUSH_SIZE));
+        }
+        this.flushSize = flushSize;
+    }
+}
@@ -0,0 +1,24 @@
+package com.pbu.sam.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Class Name : AuthorizationProperties
+ * Created By : Nkambwe Mark
+ * Description: Class holds compiled permission matrix settings bound from {@code sam.authorization.*}
+ **/
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "sam.authorization")
+public class AuthorizationProperties {
+
+    //time between recompiles of the permission matrix from the role, permission set and permission tables
+    private long refreshIntervalMs = 60 * 1000;
+
+    //largest number of user and permission pairs decided in one batch request
+    private int maxBatchChecks = 10000;
+}
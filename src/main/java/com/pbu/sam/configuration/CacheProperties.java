@@ -0,0 +1,30 @@
+package com.pbu.sam.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Class Name : CacheProperties
+ * Created By : Nkambwe Mark
+ * Description: Class holds in-memory reference data cache settings bound from {@code sam.cache.*}
+ **/
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "sam.cache")
+public class CacheProperties {
+
+    //largest number of branches held by each branch lookup, by ID, SolID and name
+    private int branchMaxSize = 1000;
+
+    //time a cached branch is served before it is read again, changes made through SAM evict it straight away
+    private long branchTtlSeconds = 600;
+
+    //largest number of lookups that found no record held for each of users, roles and permission sets
+    private int missingMaxSize = 10000;
+
+    //time a lookup that found no record is answered from memory, records created through SAM end it straight away
+    private long missingTtlSeconds = 30;
+}
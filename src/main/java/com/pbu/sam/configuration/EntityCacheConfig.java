@@ -0,0 +1,68 @@
+package com.pbu.sam.configuration;
+
+import com.pbu.sam.utils.Literals;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Class Name : EntityCacheConfig
+ * Created By : Nkambwe Mark
+ * Description: Class turns on the Hibernate second-level and query cache, held in memory by Ehcache through JCache.
+ * Every region is created here with its own size limit, Hibernate fails to start rather than create a region
+ * nobody sized. Update timestamps never expire, a query result must not outlive the record of the tables it read.
+ **/
+@Configuration
+@ConditionalOnProperty(prefix = "sam.entity-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class EntityCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(EntityCacheProperties properties) {
+        CachingProvider provider = Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), provider.getDefaultClassLoader());
+
+        for (Map.Entry<String, Long> region : properties.getRegionSizes().entrySet()) {
+            CacheConfigurationBuilder<Object, Object> builder = CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                    ResourcePoolsBuilder.heap(region.getValue()));
+            if(!region.getKey().equals(Literals.CACHE_UPDATE_TIMESTAMPS)){
+                builder = builder.withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(properties.getTtlSeconds())));
+            }
+
+            //..a region left by an earlier context in the same JVM is replaced
+            if(cacheManager.getCache(region.getKey()) != null){
+                cacheManager.destroyCache(region.getKey());
+            }
+            cacheManager.createCache(region.getKey(), Eh107Configuration.fromEhcacheCacheConfiguration(builder.build()));
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(CacheManager entityCacheManager) {
+        return settings -> {
+            settings.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            settings.put(AvailableSettings.USE_QUERY_CACHE, true);
+            settings.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            settings.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+            settings.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+
+            //..region statistics are reported by getCacheStatistics, per session metrics are not logged
+            settings.put(AvailableSettings.GENERATE_STATISTICS, true);
+            settings.put(AvailableSettings.LOG_SESSION_METRICS, false);
+        };
+    }
+}
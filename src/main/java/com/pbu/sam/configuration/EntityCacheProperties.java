@@ -0,0 +1,41 @@
+package com.pbu.sam.configuration;
+
+import com.pbu.sam.utils.Literals;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class Name : EntityCacheProperties
+ * Created By : Nkambwe Mark
+ * Description: Class holds Hibernate second-level cache settings bound from {@code sam.entity-cache.*}
+ **/
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "sam.entity-cache")
+public class EntityCacheProperties {
+
+    //keep roles, permission sets and permissions, their collections and name lookups in memory between requests
+    private boolean enabled = true;
+
+    //time a cached entry is served before it is read again, changes made through SAM evict it straight away
+    private long ttlSeconds = 3600;
+
+    //largest number of entries held by each cache region
+    private Map<String, Long> regionSizes = new LinkedHashMap<>();
+
+    public EntityCacheProperties() {
+        regionSizes.put(Literals.CACHE_ROLES, 500L);
+        regionSizes.put(Literals.CACHE_ROLE_PERMISSION_SETS, 500L);
+        regionSizes.put(Literals.CACHE_PERMISSION_SETS, 1000L);
+        regionSizes.put(Literals.CACHE_SET_PERMISSIONS, 1000L);
+        regionSizes.put(Literals.CACHE_PERMISSIONS, 5000L);
+        regionSizes.put(Literals.CACHE_QUERY_RESULTS, 1000L);
+        regionSizes.put(Literals.CACHE_UPDATE_TIMESTAMPS, 1000L);
+    }
+}
@@ -0,0 +1,30 @@
+package com.pbu.sam.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Class Name : InvalidationProperties
+ * Created By : Nkambwe Mark
+ * Description: Class holds cache invalidation bus settings bound from {@code sam.invalidation.*}
+ **/
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "sam.invalidation")
+public class InvalidationProperties {
+
+    //LOCAL delivers changes inside this instance only, DATABASE also delivers them to every instance sharing the database
+    private String mode = "LOCAL";
+
+    //time between reads of Cache_invalidations for changes made by other instances
+    private long pollIntervalMs = 1000;
+
+    //longest time a change may take to commit, changes are read again for this long so late commits are not missed
+    private long commitLagSeconds = 30;
+
+    //changes older than this many minutes are deleted from Cache_invalidations
+    private long retentionMinutes = 60;
+}
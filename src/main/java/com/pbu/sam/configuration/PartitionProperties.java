@@ -0,0 +1,30 @@
+package com.pbu.sam.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Class Name : PartitionProperties
+ * Created By : Nkambwe Mark
+ * Description: Class holds System_logs partition settings bound from {@code sam.partition.*}
+ **/
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "sam.partition")
+public class PartitionProperties {
+
+    //convert System_logs to a table range partitioned by month on log_time and maintain its partitions
+    private boolean enabled = false;
+
+    //number of months ahead of the current month that always have a partition
+    private int premakeMonths = 3;
+
+    //partitions ending more than this number of months ago are expired, 0 keeps every partition
+    private int retentionMonths = 0;
+
+    //drop expired partitions instead of detaching them. Detached partitions stay as plain tables
+    private boolean dropExpired = false;
+}
@@ -0,0 +1,30 @@
+package com.pbu.sam.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Class Name : UserKeyFilterProperties
+ * Created By : Nkambwe Mark
+ * Description: Class holds username and PF number prefilter settings bound from {@code sam.user-key-filter.*}
+ **/
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "sam.user-key-filter")
+public class UserKeyFilterProperties {
+
+    //answer username and PF number checks for keys certainly not in use without a query
+    private boolean enabled = true;
+
+    //share of unused keys the filter reports as possibly in use, these are checked against System_Users
+    private double falsePositiveRate = 0.01;
+
+    //smallest number of users a filter is sized for, filters are sized for twice the users held when built
+    private long minCapacity = 10000;
+
+    //time between rebuilds, a rebuild drops keys of purged users and grows the filters with the table
+    private long rebuildIntervalMs = 60 * 60 * 1000;
+}
@@ -0,0 +1,28 @@
+package com.pbu.sam.dtos;
+
+public class ActingUserDto {
+    private long id;
+    public long getId() {
+        return id;
+    }
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    private String username;
+    public String getUsername() {
+        return username;
+    }
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    /*Default Constructor*/
+    public ActingUserDto() {}
+
+    /*Projection Constructor used by SystemUserRepository.getActingUser*/
+    public ActingUserDto(long id, String username) {
+        this.id = id;
+        this.username = username;
+    }
+}
@@ -0,0 +1,59 @@
+package com.pbu.sam.dtos;
+
+import java.time.LocalDateTime;
+
+/**
+ * Class Name : ActivityDto
+ * Created By : Nkambwe Mark
+ * Description: Class holds the number of audit events for one user, action or ip address in a period
+ **/
+public class ActivityDto {
+    private String dimension;
+    public String getDimension() {
+        return dimension;
+    }
+    public void setDimension(String dimension) {
+        this.dimension = dimension;
+    }
+
+    private String value;
+    public String getValue() {
+        return value;
+    }
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    //start of the hour or day, null for totals over a range
+    private LocalDateTime bucketStart;
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    private long count;
+    public long getCount() {
+        return count;
+    }
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /*Default Constructor*/
+    public ActivityDto() {}
+
+    public ActivityDto(String dimension, String value, LocalDateTime bucketStart, long count) {
+        this.dimension = dimension;
+        this.value = value;
+        this.bucketStart = bucketStart;
+        this.count = count;
+    }
+
+    public ActivityDto(String dimension, String value, long count) {
+        this.dimension = dimension;
+        this.value = value;
+        this.count = count;
+    }
+}
@@ -0,0 +1,122 @@
+package com.pbu.sam.dtos;
+
+import java.time.LocalDateTime;
+
+/**
+ * Class Name : ArchiveStatusDto
+ * Created By : Nkambwe Mark
+ * Description: Class holds progress of the system log archiver
+ **/
+public class ArchiveStatusDto {
+    private boolean enabled;
+    public boolean getEnabled() {
+        return enabled;
+    }
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    private boolean running;
+    public boolean getRunning() {
+        return running;
+    }
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    //system logs older than this time are moved by the current or last run
+    private LocalDateTime cutoff;
+    public LocalDateTime getCutoff() {
+        return cutoff;
+    }
+    public void setCutoff(LocalDateTime cutoff) {
+        this.cutoff = cutoff;
+    }
+
+    private LocalDateTime lastRunStarted;
+    public LocalDateTime getLastRunStarted() {
+        return lastRunStarted;
+    }
+    public void setLastRunStarted(LocalDateTime lastRunStarted) {
+        this.lastRunStarted = lastRunStarted;
+    }
+
+    private LocalDateTime lastRunFinished;
+    public LocalDateTime getLastRunFinished() {
+        return lastRunFinished;
+    }
+    public void setLastRunFinished(LocalDateTime lastRunFinished) {
+        this.lastRunFinished = lastRunFinished;
+    }
+
+    //system logs moved by the current or last run
+    private long runMoved;
+    public long getRunMoved() {
+        return runMoved;
+    }
+    public void setRunMoved(long runMoved) {
+        this.runMoved = runMoved;
+    }
+
+    private long runChunks;
+    public long getRunChunks() {
+        return runChunks;
+    }
+    public void setRunChunks(long runChunks) {
+        this.runChunks = runChunks;
+    }
+
+    //system logs moved since the application started
+    private long totalMoved;
+    public long getTotalMoved() {
+        return totalMoved;
+    }
+    public void setTotalMoved(long totalMoved) {
+        this.totalMoved = totalMoved;
+    }
+
+    //average time taken by one chunk in the current or last run
+    private long averageChunkMs;
+    public long getAverageChunkMs() {
+        return averageChunkMs;
+    }
+    public void setAverageChunkMs(long averageChunkMs) {
+        this.averageChunkMs = averageChunkMs;
+    }
+
+    //log time of the newest system log in the last chunk moved
+    private LocalDateTime lastLogTime;
+    public LocalDateTime getLastLogTime() {
+        return lastLogTime;
+    }
+    public void setLastLogTime(LocalDateTime lastLogTime) {
+        this.lastLogTime = lastLogTime;
+    }
+
+    private LocalDateTime oldestArchived;
+    public LocalDateTime getOldestArchived() {
+        return oldestArchived;
+    }
+    public void setOldestArchived(LocalDateTime oldestArchived) {
+        this.oldestArchived = oldestArchived;
+    }
+
+    private LocalDateTime newestArchived;
+    public LocalDateTime getNewestArchived() {
+        return newestArchived;
+    }
+    public void setNewestArchived(LocalDateTime newestArchived) {
+        this.newestArchived = newestArchived;
+    }
+
+    private String lastError;
+    public String getLastError() {
+        return lastError;
+    }
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    /*Default Constructor*/
+    public ArchiveStatusDto() {}
+}
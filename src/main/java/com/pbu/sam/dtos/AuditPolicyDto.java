@@ -0,0 +1,43 @@
+package com.pbu.sam.dtos;
+
+import com.pbu.sam.utils.AuditMode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class AuditPolicyDto {
+    private AuditMode defaultMode;
+    public AuditMode getDefaultMode() {
+        return defaultMode;
+    }
+    public void setDefaultMode(AuditMode defaultMode) {
+        this.defaultMode = defaultMode;
+    }
+
+    private double sampleRate;
+    public double getSampleRate() {
+        return sampleRate;
+    }
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    private long windowSeconds;
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+    public void setWindowSeconds(long windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    private Map<String, AuditRuleDto> rules = new LinkedHashMap<>();
+    public Map<String, AuditRuleDto> getRules() {
+        return rules;
+    }
+    public void setRules(Map<String, AuditRuleDto> rules) {
+        this.rules = rules;
+    }
+
+    /*Default Constructor*/
+    public AuditPolicyDto() {}
+}
@@ -0,0 +1,38 @@
+package com.pbu.sam.dtos;
+
+import com.pbu.sam.utils.AuditMode;
+
+public class AuditRuleDto {
+    private AuditMode mode;
+    public AuditMode getMode() {
+        return mode;
+    }
+    public void setMode(AuditMode mode) {
+        this.mode = mode;
+    }
+
+    private Double sampleRate;
+    public Double getSampleRate() {
+        return sampleRate;
+    }
+    public void setSampleRate(Double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    private Long windowSeconds;
+    public Long getWindowSeconds() {
+        return windowSeconds;
+    }
+    public void setWindowSeconds(Long windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    /*Default Constructor*/
+    public AuditRuleDto() {}
+
+    public AuditRuleDto(AuditMode mode, Double sampleRate, Long windowSeconds) {
+        this.mode = mode;
+        this.sampleRate = sampleRate;
+        this.windowSeconds = windowSeconds;
+    }
+}
@@ -0,0 +1,85 @@
+package com.pbu.sam.dtos;
+
+/**
+ * Class Name : CacheStatsDto
+ * Created By : Nkambwe Mark
+ * Description: Class holds the size and hit counts of an in-memory cache
+ **/
+public class CacheStatsDto {
+    private String name;
+    public String getName() {
+        return name;
+    }
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    private long size;
+    public long getSize() {
+        return size;
+    }
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    private long maxSize;
+    public long getMaxSize() {
+        return maxSize;
+    }
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    private long hits;
+    public long getHits() {
+        return hits;
+    }
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    private long misses;
+    public long getMisses() {
+        return misses;
+    }
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    //values dropped to make room for newer ones, -1 when the cache does not report it
+    private long evictions;
+    public long getEvictions() {
+        return evictions;
+    }
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+
+    //values dropped because they outlived their time to live, -1 when the cache does not report it
+    private long expirations;
+    public long getExpirations() {
+        return expirations;
+    }
+    public void setExpirations(long expirations) {
+        this.expirations = expirations;
+    }
+
+    //share of lookups answered from memory
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /*Default Constructor*/
+    public CacheStatsDto() {}
+
+    public CacheStatsDto(String name, long size, long maxSize, long hits, long misses, long evictions, long expirations) {
+        this.name = name;
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+    }
+}
@@ -0,0 +1,72 @@
+package com.pbu.sam.dtos;
+
+import java.time.LocalDateTime;
+
+/**
+ * Class Name : ColdArchiveFileDto
+ * Created By : Nkambwe Mark
+ * Description: Class describes one cold archive file of system logs
+ **/
+public class ColdArchiveFileDto {
+    private String fileName;
+    public String getFileName() {
+        return fileName;
+    }
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    private long records;
+    public long getRecords() {
+        return records;
+    }
+    public void setRecords(long records) {
+        this.records = records;
+    }
+
+    private int blocks;
+    public int getBlocks() {
+        return blocks;
+    }
+    public void setBlocks(int blocks) {
+        this.blocks = blocks;
+    }
+
+    private long sizeBytes;
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    //earliest log time held in the file
+    private LocalDateTime minLogTime;
+    public LocalDateTime getMinLogTime() {
+        return minLogTime;
+    }
+    public void setMinLogTime(LocalDateTime minLogTime) {
+        this.minLogTime = minLogTime;
+    }
+
+    //latest log time held in the file
+    private LocalDateTime maxLogTime;
+    public LocalDateTime getMaxLogTime() {
+        return maxLogTime;
+    }
+    public void setMaxLogTime(LocalDateTime maxLogTime) {
+        this.maxLogTime = maxLogTime;
+    }
+
+    //records removed from the database after the file was written
+    private long purged;
+    public long getPurged() {
+        return purged;
+    }
+    public void setPurged(long purged) {
+        this.purged = purged;
+    }
+
+    /*Default Constructor*/
+    public ColdArchiveFileDto() {}
+}
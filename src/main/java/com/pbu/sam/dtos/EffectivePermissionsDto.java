@@ -0,0 +1,44 @@
+package com.pbu.sam.dtos;
+
+import java.util.List;
+
+/**
+ * Class Name : EffectivePermissionsDto
+ * Created By : Nkambwe Mark
+ * Description: Class holds every permission a user holds through the permission sets of the user's role
+ **/
+public class EffectivePermissionsDto {
+    private long userId;
+    public long getUserId() {
+        return userId;
+    }
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    //role the permissions come from, 0 when the user has no active role
+    private long roleId;
+    public long getRoleId() {
+        return roleId;
+    }
+    public void setRoleId(long roleId) {
+        this.roleId = roleId;
+    }
+
+    private List<String> permissions;
+    public List<String> getPermissions() {
+        return permissions;
+    }
+    public void setPermissions(List<String> permissions) {
+        this.permissions = permissions;
+    }
+
+    /*Default Constructor*/
+    public EffectivePermissionsDto() {}
+
+    public EffectivePermissionsDto(long userId, long roleId, List<String> permissions) {
+        this.userId = userId;
+        this.roleId = roleId;
+        this.permissions = permissions;
+    }
+}
@@ -1,5 +1,7 @@
 package com.pbu.sam.dtos;
 
+import com.pbu.sam.utils.AuditAction;
+
 import java.time.LocalDateTime;
 
 public class LogDto {
@@ -27,6 +29,30 @@ public class LogDto {
         this.action = action;
     }
 
+    private short actionCode;
+    public short getActionCode() {
+        return actionCode;
+    }
+    public void setActionCode(short actionCode) {
+        this.actionCode = actionCode;
+    }
+
+    private String targetType;
+    public String getTargetType() {
+        return targetType;
+    }
+    public void setTargetType(String targetType) {
+        this.targetType = targetType;
+    }
+
+    private String targetId;
+    public String getTargetId() {
+        return targetId;
+    }
+    public void setTargetId(String targetId) {
+        this.targetId = targetId;
+    }
+
     private LocalDateTime logTime;
     public LocalDateTime getLogTime() {
         return logTime;
@@ -35,6 +61,22 @@ public class LogDto {
         this.logTime = logTime;
     }
 
+    private int occurrences = 1;
+    public int getOccurrences() {
+        return occurrences;
+    }
+    public void setOccurrences(int occurrences) {
+        this.occurrences = occurrences;
+    }
+
+    private LocalDateTime lastLogTime;
+    public LocalDateTime getLastLogTime() {
+        return lastLogTime;
+    }
+    public void setLastLogTime(LocalDateTime lastLogTime) {
+        this.lastLogTime = lastLogTime;
+    }
+
     private String ipAddress;
     public String getIpAddress() {
         return ipAddress;
@@ -60,4 +102,26 @@ public class LogDto {
         this.logTime = logTime;
         this.ipAddress = ipAddress;
     }
+
+    public LogDto(long userId, AuditAction action, Object targetId, LocalDateTime logTime, String ipAddress) {
+        this.userId = userId;
+        this.actionCode = action.getCode();
+        this.targetType = action.getTargetType();
+        this.targetId = targetId != null ? String.valueOf(targetId) : null;
+        this.logTime = logTime;
+        this.ipAddress = ipAddress;
+    }
+
+    /*Projection Constructor used by log queries, action text is rendered from the action catalog*/
+    public LogDto(long id, long userId, String username, short actionCode, String targetType, String targetId,
+                  String action, LocalDateTime logTime, String ipAddress, int occurrences, LocalDateTime lastLogTime) {
+        this(userId, AuditAction.render(actionCode, targetId, action), logTime, ipAddress);
+        this.id = id;
+        this.username = username;
+        this.actionCode = actionCode;
+        this.targetType = targetType;
+        this.targetId = targetId;
+        this.occurrences = occurrences;
+        this.lastLogTime = lastLogTime != null ? lastLogTime : logTime;
+    }
 }
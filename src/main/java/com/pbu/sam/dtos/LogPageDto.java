@@ -0,0 +1,58 @@
+package com.pbu.sam.dtos;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Class Name : LogPageDto
+ * Created By : Nkambwe Mark
+ * Description: Class holds one page of system logs and the cursor to the next page
+ **/
+public class LogPageDto {
+    private List<LogDto> records;
+    public List<LogDto> getRecords() {
+        return records;
+    }
+    public void setRecords(List<LogDto> records) {
+        this.records = records;
+    }
+
+    //log time of the last record, pass as afterTime to get the next page
+    private LocalDateTime nextLogTime;
+    public LocalDateTime getNextLogTime() {
+        return nextLogTime;
+    }
+    public void setNextLogTime(LocalDateTime nextLogTime) {
+        this.nextLogTime = nextLogTime;
+    }
+
+    //row id of the last record, pass as afterId to get the next page
+    private long nextId;
+    public long getNextId() {
+        return nextId;
+    }
+    public void setNextId(long nextId) {
+        this.nextId = nextId;
+    }
+
+    private boolean hasMore;
+    public boolean getHasMore() {
+        return hasMore;
+    }
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    /*Default Constructor*/
+    public LogPageDto() {}
+
+    public LogPageDto(List<LogDto> records, boolean hasMore) {
+        this.records = records;
+        this.hasMore = hasMore;
+        if(!records.isEmpty()){
+            LogDto last = records.get(records.size() - 1);
+            this.nextLogTime = last.getLogTime();
+            this.nextId = last.getId();
+        }
+    }
+}
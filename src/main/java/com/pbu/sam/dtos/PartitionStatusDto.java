@@ -0,0 +1,88 @@
+package com.pbu.sam.dtos;
+
+import java.time.LocalDateTime;
+
+/**
+ * Class Name : PartitionStatusDto
+ * Created By : Nkambwe Mark
+ * Description: Class holds the outcome of System_logs partition maintenance
+ **/
+public class PartitionStatusDto {
+    private boolean enabled;
+    public boolean getEnabled() {
+        return enabled;
+    }
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    private boolean partitioned;
+    public boolean getPartitioned() {
+        return partitioned;
+    }
+    public void setPartitioned(boolean partitioned) {
+        this.partitioned = partitioned;
+    }
+
+    private LocalDateTime lastRunStarted;
+    public LocalDateTime getLastRunStarted() {
+        return lastRunStarted;
+    }
+    public void setLastRunStarted(LocalDateTime lastRunStarted) {
+        this.lastRunStarted = lastRunStarted;
+    }
+
+    private LocalDateTime lastRunFinished;
+    public LocalDateTime getLastRunFinished() {
+        return lastRunFinished;
+    }
+    public void setLastRunFinished(LocalDateTime lastRunFinished) {
+        this.lastRunFinished = lastRunFinished;
+    }
+
+    //finish time of the last run that completed without an error
+    private LocalDateTime lastSucceeded;
+    public LocalDateTime getLastSucceeded() {
+        return lastSucceeded;
+    }
+    public void setLastSucceeded(LocalDateTime lastSucceeded) {
+        this.lastSucceeded = lastSucceeded;
+    }
+
+    //runs in a row that ended with an error, 0 after a run completes
+    private int failedRuns;
+    public int getFailedRuns() {
+        return failedRuns;
+    }
+    public void setFailedRuns(int failedRuns) {
+        this.failedRuns = failedRuns;
+    }
+
+    private String lastError;
+    public String getLastError() {
+        return lastError;
+    }
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    //end of the last monthly partition, later log times land in the default partition
+    private LocalDateTime coveredUntil;
+    public LocalDateTime getCoveredUntil() {
+        return coveredUntil;
+    }
+    public void setCoveredUntil(LocalDateTime coveredUntil) {
+        this.coveredUntil = coveredUntil;
+    }
+
+    private long defaultPartitionRows;
+    public long getDefaultPartitionRows() {
+        return defaultPartitionRows;
+    }
+    public void setDefaultPartitionRows(long defaultPartitionRows) {
+        this.defaultPartitionRows = defaultPartitionRows;
+    }
+
+    /*Default Constructor*/
+    public PartitionStatusDto() {}
+}
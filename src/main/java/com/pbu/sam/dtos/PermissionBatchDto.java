@@ -0,0 +1,30 @@
+package com.pbu.sam.dtos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class Name : PermissionBatchDto
+ * Created By : Nkambwe Mark
+ * Description: Class holds the users and permissions of a batch authorization request, every user is checked for every permission
+ **/
+public class PermissionBatchDto {
+    private List<Long> userIds = new ArrayList<>();
+    public List<Long> getUserIds() {
+        return userIds;
+    }
+    public void setUserIds(List<Long> userIds) {
+        this.userIds = userIds;
+    }
+
+    private List<String> permissions = new ArrayList<>();
+    public List<String> getPermissions() {
+        return permissions;
+    }
+    public void setPermissions(List<String> permissions) {
+        this.permissions = permissions;
+    }
+
+    /*Default Constructor*/
+    public PermissionBatchDto() {}
+}
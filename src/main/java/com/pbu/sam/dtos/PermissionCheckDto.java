@@ -0,0 +1,41 @@
+package com.pbu.sam.dtos;
+
+/**
+ * Class Name : PermissionCheckDto
+ * Created By : Nkambwe Mark
+ * Description: Class holds the answer to whether a user holds a permission
+ **/
+public class PermissionCheckDto {
+    private long userId;
+    public long getUserId() {
+        return userId;
+    }
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    private String permission;
+    public String getPermission() {
+        return permission;
+    }
+    public void setPermission(String permission) {
+        this.permission = permission;
+    }
+
+    private boolean granted;
+    public boolean isGranted() {
+        return granted;
+    }
+    public void setGranted(boolean granted) {
+        this.granted = granted;
+    }
+
+    /*Default Constructor*/
+    public PermissionCheckDto() {}
+
+    public PermissionCheckDto(long userId, String permission, boolean granted) {
+        this.userId = userId;
+        this.permission = permission;
+        this.granted = granted;
+    }
+}
@@ -0,0 +1,48 @@
+package com.pbu.sam.dtos;
+
+import java.util.List;
+
+/**
+ * Class Name : PermissionDecisionsDto
+ * Created By : Nkambwe Mark
+ * Description: Class holds the decisions of a batch authorization request.
+ * Row {@code u} of granted answers user {@code userIds[u]}, column {@code p} permission {@code permissions[p]}.
+ * The bitmap holds the same answers, bit {@code u * permissions.length + p} counted from the lowest bit of the first byte.
+ **/
+public class PermissionDecisionsDto {
+    private List<Long> userIds;
+    public List<Long> getUserIds() {
+        return userIds;
+    }
+    public void setUserIds(List<Long> userIds) {
+        this.userIds = userIds;
+    }
+
+    private List<String> permissions;
+    public List<String> getPermissions() {
+        return permissions;
+    }
+    public void setPermissions(List<String> permissions) {
+        this.permissions = permissions;
+    }
+
+    private boolean[][] granted;
+    public boolean[][] getGranted() {
+        return granted;
+    }
+    public void setGranted(boolean[][] granted) {
+        this.granted = granted;
+    }
+
+    //base64 encoded decisions, trailing bytes of denied pairs are left out
+    private String bitmap;
+    public String getBitmap() {
+        return bitmap;
+    }
+    public void setBitmap(String bitmap) {
+        this.bitmap = bitmap;
+    }
+
+    /*Default Constructor*/
+    public PermissionDecisionsDto() {}
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 
@@ -11,18 +12,50 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @RequiredArgsConstructor
+@Table(name="Archive_log", indexes = {
+        @Index(name = "ix_archive_log_time", columnList = "log_time"),
+        @Index(name = "ix_archive_log_user_time", columnList = "user_id, log_time")
+})
 public class ArchiveLog {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id", nullable = false)
     private Long id;
 
-    @Column(name = "action_performed", length = 100, nullable = false)
+    //row id the record had in System_logs
+    @Column(name = "log_id")
+    private Long logId;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    //code of the action in the action catalog, 0 for free text actions
+    @ColumnDefault("0")
+    @Column(name = "action_code", nullable = false)
+    private short actionCode;
+
+    @Column(name = "target_type", length = 20)
+    private String targetType;
+
+    @Column(name = "target_id", length = 80)
+    private String targetId;
+
+    //free text action, only set for actions outside the action catalog
+    @Column(name = "action_performed", length = 100)
     private String action;
 
     @Column(name = "log_time", nullable = false)
     private LocalDateTime logTime;
 
+    //number of identical events merged into this record by the audit writer
+    @ColumnDefault("1")
+    @Column(name = "occurrences", nullable = false)
+    private int occurrences = 1;
+
+    //time of the last merged event, empty when the record holds a single event
+    @Column(name = "last_log_time")
+    private LocalDateTime lastLogTime;
+
     @Column(name = "ip_address", length = 40, nullable = false)
     private String ipAddress;
 
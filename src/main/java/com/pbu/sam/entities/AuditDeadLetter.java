@@ -0,0 +1,76 @@
+package com.pbu.sam.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.hibernate.Hibernate;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Entity
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Table(name="Audit_dead_letters")
+public class AuditDeadLetter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "row_id", nullable = false)
+    private long id;
+
+    //journal sequence of the system log, 0 when the journal is disabled
+    @Column(name = "journal_sequence", nullable = false)
+    private long journalSequence;
+
+    //..columns are unbounded so a system log System_logs rejects is always kept here
+    @Column(name = "action_code", nullable = false)
+    private short actionCode;
+
+    @Column(name = "target_type", columnDefinition = "text")
+    private String targetType;
+
+    @Column(name = "target_id", columnDefinition = "text")
+    private String targetId;
+
+    @Column(name = "action_performed", columnDefinition = "text")
+    private String action;
+
+    @Column(name = "log_time", nullable = false)
+    private LocalDateTime logTime;
+
+    @Column(name = "ip_address", columnDefinition = "text")
+    private String ipAddress;
+
+    //user who performed the action, not a foreign key so logs of missing users are kept
+    @Column(name = "user_id")
+    private Long userId;
+
+    //reason System_logs rejected the record
+    @Column(name = "error_message", columnDefinition = "text")
+    private String errorMessage;
+
+    @Column(name = "failed_on", nullable = false)
+    private LocalDateTime failedOn;
+
+    @Override
+    public String toString() {
+        return logTime != null ?
+                String.format("%s::%s::%s", journalSequence, actionCode, logTime)
+                :super.toString();
+    }
+
+    @Override
+    public boolean equals(Object otherLetter) {
+        if (this == otherLetter) return true;
+        if (otherLetter == null || Hibernate.getClass(this) != Hibernate.getClass(otherLetter)) return false;
+        AuditDeadLetter thisLetter = (AuditDeadLetter) otherLetter;
+        return getId() != 0 && Objects.equals(getId(), thisLetter.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode()^3;
+    }
+}
@@ -0,0 +1,61 @@
+package com.pbu.sam.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.hibernate.Hibernate;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Entity
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Table(name="Audit_rollups", uniqueConstraints = @UniqueConstraint(name = "uk_audit_rollups_bucket",
+        columnNames = {"dimension", "granularity", "bucket_start", "dimension_value"}))
+public class AuditRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "row_id", nullable = false)
+    private long id;
+
+    //USER, ACTION or IP
+    @Column(name = "dimension", length = 10, nullable = false)
+    private String dimension;
+
+    //HOUR or DAY
+    @Column(name = "granularity", length = 5, nullable = false)
+    private String granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    //user id, action or ip address counted
+    @Column(name = "dimension_value", length = 100, nullable = false)
+    private String value;
+
+    @Column(name = "event_count", nullable = false)
+    private long count;
+
+    @Override
+    public String toString() {
+        return dimension != null && value != null ?
+                String.format("%s::%s::%s::%s", dimension, value, bucketStart, count)
+                :super.toString();
+    }
+
+    @Override
+    public boolean equals(Object otherRollup) {
+        if (this == otherRollup) return true;
+        if (otherRollup == null || Hibernate.getClass(this) != Hibernate.getClass(otherRollup)) return false;
+        AuditRollup thisRollup = (AuditRollup) otherRollup;
+        return getId() != 0 && Objects.equals(getId(), thisRollup.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode()^3;
+    }
+}
@@ -0,0 +1,57 @@
+package com.pbu.sam.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.hibernate.Hibernate;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Entity
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Table(name="Cache_invalidations", indexes = @Index(name = "idx_cache_invalidations_changed_on", columnList = "changed_on"))
+public class CacheInvalidation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "row_id", nullable = false)
+    private long id;
+
+    //BRANCH, ROLE, PERMISSION_SET or USER
+    @Column(name = "entity_type", length = 20, nullable = false)
+    private String entityType;
+
+    //changed record, null when every record of the type is evicted
+    @Column(name = "entity_id")
+    private Long entityId;
+
+    //instance that made the change
+    @Column(name = "node_id", length = 40, nullable = false)
+    private String nodeId;
+
+    @Column(name = "changed_on", nullable = false)
+    private LocalDateTime changedOn;
+
+    @Override
+    public String toString() {
+        return entityType != null ?
+                String.format("%s::%s::%s", entityType, entityId, nodeId)
+                :super.toString();
+    }
+
+    @Override
+    public boolean equals(Object otherInvalidation) {
+        if (this == otherInvalidation) return true;
+        if (otherInvalidation == null || Hibernate.getClass(this) != Hibernate.getClass(otherInvalidation)) return false;
+        CacheInvalidation thisInvalidation = (CacheInvalidation) otherInvalidation;
+        return getId() != 0 && Objects.equals(getId(), thisInvalidation.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode()^3;
+    }
+}
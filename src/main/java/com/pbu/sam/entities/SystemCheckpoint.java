@@ -0,0 +1,47 @@
+package com.pbu.sam.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.hibernate.Hibernate;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Entity
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Table(name="System_checkpoints")
+public class SystemCheckpoint {
+    @Id
+    @Column(name = "checkpoint_name", length = 80, nullable = false)
+    private String name;
+
+    @Column(name = "last_position", nullable = false)
+    private long lastPosition;
+
+    @Column(name = "modified_on", nullable = false)
+    private LocalDateTime modifiedOn;
+
+    @Override
+    public String toString() {
+        return name != null &&!name.isEmpty() ?
+                String.format("%s::%s", name, lastPosition)
+                :super.toString();
+    }
+
+    @Override
+    public boolean equals(Object otherCheckpoint) {
+        if (this == otherCheckpoint) return true;
+        if (otherCheckpoint == null || Hibernate.getClass(this) != Hibernate.getClass(otherCheckpoint)) return false;
+        SystemCheckpoint thisCheckpoint = (SystemCheckpoint) otherCheckpoint;
+        return getName() != null && Objects.equals(getName(), thisCheckpoint.getName());
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode()^3;
+    }
+}
@@ -1,9 +1,11 @@
 package com.pbu.sam.entities;
 
+import com.pbu.sam.utils.AuditAction;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.Hibernate;
 
 import java.time.LocalDateTime;
@@ -13,30 +15,55 @@ import java.util.Objects;
 @Getter
 @Setter
 @RequiredArgsConstructor
-@Table(name="System_logs")
+@Table(name="System_logs", indexes = {
+        @Index(name = "ix_system_logs_time_id", columnList = "log_time, row_id"),
+        @Index(name = "ix_system_logs_user_time", columnList = "user_id, log_time, row_id"),
+        @Index(name = "ix_system_logs_target", columnList = "target_type, target_id, log_time, row_id")
+})
 public class SystemLog {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "row_id", nullable = false)
     private long id;
 
-    @Column(name = "action_performed", length = 100, nullable = false)
+    //code of the action in the action catalog, 0 for free text actions
+    @ColumnDefault("0")
+    @Column(name = "action_code", nullable = false)
+    private short actionCode;
+
+    @Column(name = "target_type", length = 20)
+    private String targetType;
+
+    @Column(name = "target_id", length = 80)
+    private String targetId;
+
+    //free text action, only set for actions outside the action catalog
+    @Column(name = "action_performed", length = 100)
     private String action;
 
     @Column(name = "log_time", nullable = false)
     private LocalDateTime logTime;
 
+    //number of identical events merged into this record by the audit writer
+    @ColumnDefault("1")
+    @Column(name = "occurrences", nullable = false)
+    private int occurrences = 1;
+
+    //time of the last merged event, empty when the record holds a single event
+    @Column(name = "last_log_time")
+    private LocalDateTime lastLogTime;
+
     @Column(name = "ip_address", length = 40, nullable = false)
     private String ipAddress;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "row_id")
     private SystemUser user;
 
     @Override
     public String toString() {
-        return logTime != null && action != null &&!action.isEmpty() ?
-                String.format("%s::%s", logTime, action)
+        return logTime != null ?
+                String.format("%s::%s", logTime, AuditAction.render(actionCode, targetId, action))
                 :super.toString();
     }
 
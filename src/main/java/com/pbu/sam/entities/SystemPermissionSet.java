@@ -1,10 +1,13 @@
 package com.pbu.sam.entities;
 
+import com.pbu.sam.utils.Literals;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -16,6 +19,8 @@ import java.util.Set;
 @Setter
 @RequiredArgsConstructor
 @Table(name="Permission_set")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Literals.CACHE_PERMISSION_SETS)
 public class SystemPermissionSet {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -37,6 +42,7 @@ public class SystemPermissionSet {
 
     //Relationship link between SystemPermissions and SystemRoles
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Literals.CACHE_SET_PERMISSIONS)
     @JoinTable(
             name = "set_permission",
             joinColumns = @JoinColumn(name = "set_id"),
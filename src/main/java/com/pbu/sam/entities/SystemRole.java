@@ -1,11 +1,14 @@
 package com.pbu.sam.entities;
 
 
+import com.pbu.sam.utils.Literals;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
@@ -21,6 +24,8 @@ import java.util.Set;
 @Setter
 @RequiredArgsConstructor
 @Table(name="System_Roles")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Literals.CACHE_ROLES)
 public class SystemRole {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -42,6 +47,7 @@ public class SystemRole {
     private List<SystemUser> users;
 
     @ManyToMany(fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Literals.CACHE_ROLE_PERMISSION_SETS)
     @JoinTable(
             name = "role_permission",
             joinColumns = @JoinColumn(name = "role_id"),
@@ -63,8 +63,9 @@ public class SystemUser {
     @JoinColumn(name = "branch_id", referencedColumnName = "row_id")
     private SystemBranch branch;
 
-    //Relationship link between SystemUser and SystemLog
-    @OneToMany(mappedBy = "user", fetch = FetchType.EAGER)
+    //Relationship link between SystemUser and SystemLog, never fetched with the user.
+    //Read a user's logs with SystemLogRepository.getUserPage
+    @OneToMany(mappedBy = "user", fetch = FetchType.LAZY)
     private List<SystemLog> logs = new ArrayList<>();
 
     @Override
@@ -0,0 +1,16 @@
+package com.pbu.sam.repositories;
+
+import com.pbu.sam.entities.ArchiveLog;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+
+public interface ArchiveLogRepository extends JpaRepository<ArchiveLog, Long> {
+
+    @Query("SELECT MIN(al.logTime) FROM ArchiveLog al")
+    LocalDateTime getOldestLogTime();
+
+    @Query("SELECT MAX(al.logTime) FROM ArchiveLog al")
+    LocalDateTime getNewestLogTime();
+}
@@ -0,0 +1,52 @@
+package com.pbu.sam.repositories;
+
+import com.pbu.sam.dtos.ActivityDto;
+import com.pbu.sam.entities.AuditRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface AuditRollupRepository extends JpaRepository<AuditRollup, Long> {
+
+    /**
+     * Get event counts per hour or day
+     * @param dimension USER, ACTION or IP
+     * @param granularity HOUR or DAY
+     * @param startDate earliest bucket to include
+     * @param endDate latest bucket to include
+     * @param value only include this user id, action or ip address, use an empty string for all values
+     * @param page largest number of rows returned
+     * @return counts ordered by bucket, uses unique key uk_audit_rollups_bucket
+     **/
+    @Query("SELECT new com.pbu.sam.dtos.ActivityDto(r.dimension, r.value, r.bucketStart, r.count) FROM AuditRollup r " +
+            "WHERE r.dimension = :dimension AND r.granularity = :granularity AND r.bucketStart >= :startDate AND r.bucketStart <= :endDate " +
+            "AND (:value = '' OR r.value = :value) ORDER BY r.bucketStart, r.value")
+    List<ActivityDto> getActivity(@Param("dimension") String dimension,
+                                  @Param("granularity") String granularity,
+                                  @Param("startDate") LocalDateTime startDate,
+                                  @Param("endDate") LocalDateTime endDate,
+                                  @Param("value") String value,
+                                  Pageable page);
+
+    /**
+     * Get event counts per user, action or ip address over a range, busiest first
+     * @param dimension USER, ACTION or IP
+     * @param granularity HOUR or DAY, day buckets read fewer rows for long ranges
+     * @param startDate earliest bucket to include
+     * @param endDate latest bucket to include
+     * @param page largest number of rows returned
+     * @return totals ordered by count
+     **/
+    @Query("SELECT new com.pbu.sam.dtos.ActivityDto(r.dimension, r.value, SUM(r.count)) FROM AuditRollup r " +
+            "WHERE r.dimension = :dimension AND r.granularity = :granularity AND r.bucketStart >= :startDate AND r.bucketStart <= :endDate " +
+            "GROUP BY r.dimension, r.value ORDER BY SUM(r.count) DESC, r.value")
+    List<ActivityDto> getActivityTotals(@Param("dimension") String dimension,
+                                        @Param("granularity") String granularity,
+                                        @Param("startDate") LocalDateTime startDate,
+                                        @Param("endDate") LocalDateTime endDate,
+                                        Pageable page);
+}
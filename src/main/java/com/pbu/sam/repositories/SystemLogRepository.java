@@ -1,7 +1,9 @@
 package com.pbu.sam.repositories;
 
+import com.pbu.sam.dtos.LogDto;
 import com.pbu.sam.entities.SystemLog;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,5 +16,88 @@ public interface SystemLogRepository extends JpaRepository<SystemLog, Long> {
     @Transactional
     @Query("SELECT sl FROM SystemLog sl WHERE sl.logTime >= :startDate AND sl.logTime <= :endDate")
     List<SystemLog> getLogs(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * Get one page of system logs ordered by log time and row id, repeated events merged by the audit writer are
+     * returned once at the time of their first occurrence
+     * @param afterTime log time of the last record on the previous page
+     * @param afterId row id of the last record on the previous page, use -1 to include records at {@code afterTime}
+     * @param endDate latest log time to include
+     * @param userId only include logs of this user, use 0 for all users
+     * @param code only include actions with this action catalog code, use -1 for all actions
+     * @param action only include free text actions matching this LIKE pattern escaped with a backslash, use an empty string for all actions
+     * @param page page size, only the first page is read
+     * @return system logs after the cursor, uses index ix_system_logs_time_id
+     * remarks. the plain lower bound on log time lets PostgreSQL prune monthly partitions the cursor has passed
+     **/
+    @Query("SELECT new com.pbu.sam.dtos.LogDto(sl.id, COALESCE(u.id, 0), u.username, sl.actionCode, sl.targetType, sl.targetId, " +
+            "sl.action, sl.logTime, sl.ipAddress, sl.occurrences, sl.lastLogTime) " +
+            "FROM SystemLog sl LEFT JOIN sl.user u " +
+            "WHERE sl.logTime >= :afterTime AND sl.logTime <= :endDate " +
+            "AND (sl.logTime > :afterTime OR (sl.logTime = :afterTime AND sl.id > :afterId)) " +
+            "AND (:userId = 0 OR sl.user.id = :userId) " +
+            "AND (:code < 0 OR sl.actionCode = :code) AND (:action = '' OR sl.action LIKE :action ESCAPE '\\') " +
+            "ORDER BY sl.logTime, sl.id")
+    List<LogDto> getLogPage(@Param("afterTime") LocalDateTime afterTime,
+                            @Param("afterId") long afterId,
+                            @Param("endDate") LocalDateTime endDate,
+                            @Param("userId") long userId,
+                            @Param("code") int code,
+                            @Param("action") String action,
+                            Pageable page);
+
+    /**
+     * Get one page of the audit trail of one user ordered by log time and row id
+     * @param userId user whose actions are returned
+     * @param afterTime log time of the last record on the previous page
+     * @param afterId row id of the last record on the previous page, use -1 to include records at {@code afterTime}
+     * @param endDate latest log time to include
+     * @param code only include actions with this action catalog code, use -1 for all actions
+     * @param action only include free text actions matching this LIKE pattern escaped with a backslash, use an empty string for all actions
+     * @param page page size, only the first page is read
+     * @return system logs after the cursor without username, uses index ix_system_logs_user_time
+     * remarks. user id is read from the foreign key column, the user record is never joined or loaded
+     **/
+    @Query("SELECT new com.pbu.sam.dtos.LogDto(sl.id, sl.user.id, CAST(NULL AS String), sl.actionCode, sl.targetType, sl.targetId, " +
+            "sl.action, sl.logTime, sl.ipAddress, sl.occurrences, sl.lastLogTime) " +
+            "FROM SystemLog sl " +
+            "WHERE sl.user.id = :userId AND sl.logTime >= :afterTime AND sl.logTime <= :endDate " +
+            "AND (sl.logTime > :afterTime OR (sl.logTime = :afterTime AND sl.id > :afterId)) " +
+            "AND (:code < 0 OR sl.actionCode = :code) AND (:action = '' OR sl.action LIKE :action ESCAPE '\\') " +
+            "ORDER BY sl.logTime, sl.id")
+    List<LogDto> getUserPage(@Param("userId") long userId,
+                             @Param("afterTime") LocalDateTime afterTime,
+                             @Param("afterId") long afterId,
+                             @Param("endDate") LocalDateTime endDate,
+                             @Param("code") int code,
+                             @Param("action") String action,
+                             Pageable page);
+
+    /**
+     * Get one page of system logs of actions performed on one record, ordered by log time and row id
+     * @param targetType type of record, one of the action catalog target types
+     * @param targetId ID of the record
+     * @param afterTime log time of the last record on the previous page
+     * @param afterId row id of the last record on the previous page, use -1 to include records at {@code afterTime}
+     * @param endDate latest log time to include
+     * @param code only include actions with this action catalog code, use -1 for all actions
+     * @param page page size, only the first page is read
+     * @return system logs after the cursor, uses index ix_system_logs_target
+     **/
+    @Query("SELECT new com.pbu.sam.dtos.LogDto(sl.id, COALESCE(u.id, 0), u.username, sl.actionCode, sl.targetType, sl.targetId, " +
+            "sl.action, sl.logTime, sl.ipAddress, sl.occurrences, sl.lastLogTime) " +
+            "FROM SystemLog sl LEFT JOIN sl.user u " +
+            "WHERE sl.targetType = :targetType AND sl.targetId = :targetId " +
+            "AND sl.logTime >= :afterTime AND sl.logTime <= :endDate " +
+            "AND (sl.logTime > :afterTime OR (sl.logTime = :afterTime AND sl.id > :afterId)) " +
+            "AND (:code < 0 OR sl.actionCode = :code) " +
+            "ORDER BY sl.logTime, sl.id")
+    List<LogDto> getTargetPage(@Param("targetType") String targetType,
+                               @Param("targetId") String targetId,
+                               @Param("afterTime") LocalDateTime afterTime,
+                               @Param("afterId") long afterId,
+                               @Param("endDate") LocalDateTime endDate,
+                               @Param("code") int code,
+                               Pageable page);
 }
 
@@ -2,12 +2,16 @@ package com.pbu.sam.repositories;
 
 import com.pbu.sam.dtos.PermissionDto;
 import com.pbu.sam.entities.SystemPermission;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -16,6 +20,7 @@ public interface SystemPermissionRepository extends JpaRepository<SystemPermissi
 
     Optional<SystemPermission> findById(long id);
 
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<SystemPermission> findByName(String name);
 
     /**Method updates permission description**/
@@ -31,4 +36,30 @@ public interface SystemPermissionRepository extends JpaRepository<SystemPermissi
      **/
     Set<SystemPermission> findAllByIdIn(List<Long> permissionIds);
 
+    /**Method locks permissions in one statement, returns the number of permissions changed**/
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE SystemPermission p SET p.isLocked = true WHERE p.id IN :permissionIds")
+    int lockByIdIn(@Param("permissionIds") Collection<Long> permissionIds);
+
+    /**Method unlocks permissions in one statement, permissions still held by a locked permission set stay locked**/
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE SystemPermission p SET p.isLocked = false WHERE p.id IN :permissionIds " +
+            "AND p.id NOT IN (SELECT lp.id FROM SystemPermissionSet l JOIN l.permissions lp WHERE l.isLocked = true)")
+    int unlockByIdIn(@Param("permissionIds") Collection<Long> permissionIds);
+
+    /**Method locks every permission held by the permission sets in one statement**/
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE SystemPermission p SET p.isLocked = true WHERE p.id IN (SELECT sp.id FROM SystemPermissionSet s JOIN s.permissions sp WHERE s.id IN :setIds)")
+    int lockBySetIdIn(@Param("setIds") Collection<Long> setIds);
+
+    /**Method unlocks every permission held by the permission sets in one statement, permissions still held by a locked set stay locked**/
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE SystemPermission p SET p.isLocked = false WHERE p.id IN (SELECT sp.id FROM SystemPermissionSet s JOIN s.permissions sp WHERE s.id IN :setIds) " +
+            "AND p.id NOT IN (SELECT lp.id FROM SystemPermissionSet l JOIN l.permissions lp WHERE l.isLocked = true)")
+    int unlockBySetIdIn(@Param("setIds") Collection<Long> setIds);
+
 }
@@ -2,13 +2,17 @@ package com.pbu.sam.repositories;
 
 import com.pbu.sam.dtos.PermissionSetDto;
 import com.pbu.sam.entities.SystemPermissionSet;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -18,6 +22,7 @@ public interface SystemPermissionSetRepository extends JpaRepository<SystemPermi
     Optional<SystemPermissionSet> findById(Long id);
 
     @EntityGraph(attributePaths = "permissions")
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<SystemPermissionSet> findBySetName(String name);
 
     boolean existsById(long id);
@@ -31,9 +36,11 @@ public interface SystemPermissionSetRepository extends JpaRepository<SystemPermi
     @Query("SELECT DISTINCT ps FROM SystemPermissionSet ps LEFT JOIN FETCH ps.permissions")
     List<SystemPermissionSet> findAllWithSystemPermissions();
 
-    @Modifying
-    @Query("UPDATE SystemPermissionSet s SET s.isLocked =true WHERE s.id = :setId")
-    void lockPermissionSet(@Param("setId")long setId);
+    /**Method locks or unlocks permission sets in one statement, returns the number of sets changed**/
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE SystemPermissionSet s SET s.isLocked = :locked WHERE s.id IN :setIds")
+    int updateIsLockedByIdIn(@Param("setIds") Collection<Long> setIds, @Param("locked") boolean locked);
 
     @Transactional
     @Modifying
@@ -45,9 +52,7 @@ public interface SystemPermissionSetRepository extends JpaRepository<SystemPermi
     @Query("SELECT CASE WHEN s.isDeleted = true THEN true ELSE false END FROM SystemPermissionSet s WHERE s.id = :setId")
     boolean isDeleted(@Param("setId") long setId);
 
-    @Transactional
-    @Modifying
-    @Query("SELECT CASE WHEN s.isLocked = true THEN true ELSE false END FROM SystemPermissionSet s WHERE s.id = :setId")
-    void isLocked(@Param("setId") long setId);
+    @Query("SELECT s.isLocked FROM SystemPermissionSet s WHERE s.id = :setId")
+    boolean isLocked(@Param("setId") long setId);
 
 }
@@ -1,9 +1,12 @@
 package com.pbu.sam.repositories;
 
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import com.pbu.sam.entities.SystemRole;
@@ -15,6 +18,7 @@ public interface SystemRoleRepository extends JpaRepository<SystemRole, Long> {
      * @param name System role name to look for
      * @return true if role exists false otherwise
      **/
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<SystemRole> findByName(String name);
 
     /***Check whether system role exists by ID
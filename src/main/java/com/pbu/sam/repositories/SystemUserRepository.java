@@ -1,5 +1,6 @@
 package com.pbu.sam.repositories;
 
+import com.pbu.sam.dtos.ActingUserDto;
 import com.pbu.sam.entities.SystemUser;
 import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -8,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Optional;
 
 public interface SystemUserRepository extends JpaRepository<SystemUser, Long> {
 
@@ -22,6 +24,17 @@ public interface SystemUserRepository extends JpaRepository<SystemUser, Long> {
     @Query("SELECT CASE WHEN u.createdBy = :creator THEN true ELSE false END FROM SystemUser u WHERE u.id = :userId")
     boolean isCreator(@Param("userId") long userId, @Param("creator") String creator);
 
+    @Query("SELECT u.username FROM SystemUser u WHERE u.id = :userId")
+    Optional<String> getUsername(@Param("userId") long userId);
+
+    /**
+     * Get the user performing a request without loading the user record
+     * @param userId user ID
+     * @return user ID and username, empty when there is no such user
+     **/
+    @Query("SELECT new com.pbu.sam.dtos.ActingUserDto(u.id, u.username) FROM SystemUser u WHERE u.id = :userId")
+    Optional<ActingUserDto> getActingUser(@Param("userId") long userId);
+
     SystemUser findByUsernameIgnoreCase(String username);
     SystemUser findByPfNoIgnoreCase(String pfNo);
 
@@ -0,0 +1,47 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.dtos.ActivityDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface ActivityService {
+
+    /**
+     * Get audit event counts per hour or day from the rollups
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @param dimension USER, ACTION or IP
+     * @param granularity HOUR or DAY
+     * @param startDate earliest bucket to include
+     * @param endDate latest bucket to include
+     * @param value only include this user id, action or ip address, empty for all values
+     * @param size largest number of rows returned, capped at {@code sam.audit.max-page-size}
+     * @return counts ordered by bucket
+     **/
+    CompletableFuture<List<ActivityDto>> getActivity(String ip, long userId, String dimension, String granularity,
+                                                     LocalDateTime startDate, LocalDateTime endDate, String value, int size);
+
+    /**
+     * Get audit event totals per user, action or ip address over a range, busiest first
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @param dimension USER, ACTION or IP
+     * @param granularity HOUR or DAY buckets to add up
+     * @param startDate earliest bucket to include
+     * @param endDate latest bucket to include
+     * @param size largest number of rows returned, capped at {@code sam.audit.max-page-size}
+     * @return totals ordered by count
+     **/
+    CompletableFuture<List<ActivityDto>> getActivityTotals(String ip, long userId, String dimension, String granularity,
+                                                           LocalDateTime startDate, LocalDateTime endDate, int size);
+
+    /**
+     * Recount the rollups from System_logs and Archive_log, used once to cover records written before rollups existed
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @return number of rollup rows written
+     **/
+    long rebuild(String ip, long userId);
+}
@@ -0,0 +1,121 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.configuration.AuditProperties;
+import com.pbu.sam.dtos.ActingUserDto;
+import com.pbu.sam.dtos.ActivityDto;
+import com.pbu.sam.repositories.AuditRollupRepository;
+import com.pbu.sam.utils.AuditAction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Class Name : ActivityServiceImp
+ * Created By : Nkambwe Mark
+ * Description: Class answers activity reports from Audit_rollups instead of scanning System_logs.
+ * Rollups are kept up to date by the audit writer, see {@link AuditServiceImp}. A rebuild recounts the records in
+ * System_logs and Archive_log, reads the audit policy left out of System_logs are only counted by the writer.
+ **/
+@Service
+@Slf4j
+public class ActivityServiceImp implements ActivityService {
+    private static final String LOCK_ROLLUPS = "LOCK TABLE audit_rollups IN EXCLUSIVE MODE";
+    private static final String DELETE_ROLLUPS = "DELETE FROM audit_rollups";
+    //..catalog actions are counted by name like the audit writer does, free text actions by their text.
+    //..merged records count every occurrence in the bucket of their first occurrence
+    private static final String REBUILD_ROLLUPS = "INSERT INTO audit_rollups (dimension, granularity, bucket_start, dimension_value, event_count) " +
+            "SELECT d.dimension, g.granularity, date_trunc(g.unit, l.log_time), " +
+            "CASE d.dimension WHEN 'USER' THEN COALESCE(l.user_id, 0)::text " +
+            "WHEN 'ACTION' THEN COALESCE(c.action_name, LEFT(l.action_performed, 100)) ELSE l.ip_address END, SUM(l.occurrences) " +
+            "FROM (SELECT user_id, action_code, action_performed, log_time, ip_address, occurrences FROM system_logs " +
+            "UNION ALL SELECT user_id, action_code, action_performed, log_time, ip_address, occurrences FROM archive_log) l " +
+            "LEFT JOIN (VALUES " + catalogValues() + ") c(action_code, action_name) ON c.action_code = l.action_code " +
+            "CROSS JOIN (VALUES ('USER'), ('ACTION'), ('IP')) d(dimension) " +
+            "CROSS JOIN (VALUES ('HOUR', 'hour'), ('DAY', 'day')) g(granularity, unit) " +
+            "GROUP BY 1, 2, 3, 4";
+
+    private final AuditRollupRepository rollupRepo;
+    private final ActingUserContext actingUser;
+    private final AuditService auditService;
+    private final AuditProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public ActivityServiceImp(AuditRollupRepository rollupRepo, ActingUserContext actingUser, AuditService auditService,
+                              AuditProperties properties, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.rollupRepo = rollupRepo;
+        this.actingUser = actingUser;
+        this.auditService = auditService;
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<List<ActivityDto>> getActivity(String ip, long userId, String dimension, String granularity,
+                                                            LocalDateTime startDate, LocalDateTime endDate, String value, int size) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.ACTIVITY_RETRIEVED, String.format("%s/%s", dimension, granularity), ip);
+
+        return CompletableFuture.completedFuture(rollupRepo.getActivity(dimension, granularity, startDate, endDate,
+                value != null ? value : "", PageRequest.of(0, pageSize(size))));
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<List<ActivityDto>> getActivityTotals(String ip, long userId, String dimension, String granularity,
+                                                                  LocalDateTime startDate, LocalDateTime endDate, int size) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.ACTIVITY_TOTALS_RETRIEVED, String.format("%s/%s", dimension, granularity), ip);
+
+        return CompletableFuture.completedFuture(rollupRepo.getActivityTotals(dimension, granularity, startDate, endDate,
+                PageRequest.of(0, pageSize(size))));
+    }
+
+    @Override
+    public long rebuild(String ip, long userId) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.ACTIVITY_REBUILT, ip);
+
+        //..the lock holds back the audit writer, batches it has not committed are counted by it after the rebuild
+        Integer rows = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(LOCK_ROLLUPS);
+            jdbcTemplate.update(DELETE_ROLLUPS);
+            return jdbcTemplate.update(REBUILD_ROLLUPS);
+        });
+
+        log.info(String.format("Rebuilt audit activity rollups, %s rows", rows));
+        return rows != null ? rows : 0;
+    }
+
+    /**Code and name of every catalog action as SQL values rows**/
+    private static String catalogValues() {
+        StringJoiner rows = new StringJoiner(", ");
+        for (AuditAction action : AuditAction.values()) {
+            if(action != AuditAction.CUSTOM){
+                rows.add(String.format("(%s, '%s')", action.getCode(), action.name()));
+            }
+        }
+        return rows.toString();
+    }
+
+    private int pageSize(int size) {
+        return size > 0 ? Math.min(size, properties.getMaxPageSize()) : properties.getPageSize();
+    }
+}
@@ -0,0 +1,22 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.dtos.ArchiveStatusDto;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface ArchiveService {
+
+    /**
+     * Move system logs older than the retention period to Archive_log
+     * @return number of system logs moved, 0 when another run is in progress
+     **/
+    long archive();
+
+    /**
+     * Get progress of the system log archiver
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @return current or last run metrics
+     **/
+    CompletableFuture<ArchiveStatusDto> getStatus(String ip, long userId);
+}
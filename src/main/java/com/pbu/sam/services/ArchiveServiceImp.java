@@ -0,0 +1,182 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.configuration.ArchiveProperties;
+import com.pbu.sam.dtos.ActingUserDto;
+import com.pbu.sam.dtos.ArchiveStatusDto;
+import com.pbu.sam.repositories.ArchiveLogRepository;
+import com.pbu.sam.utils.AuditAction;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class Name : ArchiveServiceImp
+ * Created By : Nkambwe Mark
+ * Description: Class moves old system logs from System_logs to Archive_log.
+ * Rows are moved oldest first in chunks of {@code sam.archive.chunk-size}, each chunk is deleted and inserted
+ * by one statement in its own transaction so a crash never loses or duplicates a record, the next run simply
+ * continues with the oldest rows left behind. A run ends once a chunk finds nothing left to move.
+ **/
+@Service
+@Slf4j
+public class ArchiveServiceImp implements ArchiveService {
+    private static final LocalDateTime MIN_LOG_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final String MOVE_CHUNK = "WITH moved AS (" +
+            "DELETE FROM system_logs WHERE row_id IN (" +
+            "SELECT row_id FROM system_logs WHERE log_time >= ? AND log_time < ? ORDER BY log_time, row_id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING row_id, user_id, action_code, target_type, target_id, action_performed, log_time, ip_address, occurrences, last_log_time), " +
+            "archived AS (INSERT INTO archive_log (log_id, user_id, action_code, target_type, target_id, action_performed, log_time, ip_address, " +
+            "occurrences, last_log_time, archive_time) " +
+            "SELECT row_id, user_id, action_code, target_type, target_id, action_performed, log_time, ip_address, occurrences, last_log_time, ? FROM moved RETURNING log_id, log_time) " +
+            "SELECT COUNT(*), MAX(log_time) FROM archived";
+
+    private final ArchiveProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ArchiveLogRepository archiveRepo;
+    private final ActingUserContext actingUser;
+    private final AuditService auditService;
+
+    //..run metrics, written by the archiver thread and read by status requests
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong totalMoved = new AtomicLong();
+    private final AtomicLong runMoved = new AtomicLong();
+    private final AtomicLong runChunks = new AtomicLong();
+    private final AtomicLong runChunkMs = new AtomicLong();
+    private volatile LocalDateTime cutoff;
+    private volatile LocalDateTime lastLogTime;
+    private volatile LocalDateTime lastRunStarted;
+    private volatile LocalDateTime lastRunFinished;
+    private volatile String lastError;
+    private volatile boolean stopping;
+
+    public ArchiveServiceImp(ArchiveProperties properties, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                             ArchiveLogRepository archiveRepo, ActingUserContext actingUser, AuditService auditService) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.archiveRepo = archiveRepo;
+        this.actingUser = actingUser;
+        this.auditService = auditService;
+    }
+
+    @Scheduled(fixedDelayString = "${sam.archive.interval-ms:900000}", initialDelayString = "${sam.archive.initial-delay-ms:60000}")
+    public void scheduledArchive() {
+        if(properties.isEnabled()){
+            archive();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        //..current chunk is allowed to commit, the rest are left for the next start
+        stopping = true;
+    }
+
+    @Override
+    public long archive() {
+        if(!running.compareAndSet(false, true)){
+            return 0;
+        }
+
+        cutoff = LocalDateTime.now().minusDays(properties.getRetentionDays());
+        lastRunStarted = LocalDateTime.now();
+        lastError = null;
+        runMoved.set(0);
+        runChunks.set(0);
+        runChunkMs.set(0);
+        try {
+            //..rows are taken oldest first, the lower bound skips index entries of rows already moved in this run
+            LocalDateTime from = MIN_LOG_TIME;
+            int maxChunks = properties.getMaxChunksPerRun();
+            while (!stopping && (maxChunks <= 0 || runChunks.get() < maxChunks)) {
+                long started = System.currentTimeMillis();
+                Chunk chunk = moveChunk(from);
+                if(chunk.moved() == 0){
+                    break;
+                }
+
+                runChunkMs.addAndGet(System.currentTimeMillis() - started);
+                runChunks.incrementAndGet();
+                runMoved.addAndGet(chunk.moved());
+                totalMoved.addAndGet(chunk.moved());
+                from = chunk.lastLogTime();
+                lastLogTime = chunk.lastLogTime();
+
+                //..a short chunk does not mean the end, rows locked by the audit writer are skipped and left for a later chunk or run
+                if(!pause()){
+                    break;
+                }
+            }
+
+            if(runMoved.get() > 0){
+                log.info(String.format("Archived %s system logs older than %s in %s chunks", runMoved.get(), cutoff, runChunks.get()));
+            }
+            return runMoved.get();
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            log.error(String.format("System log archive stopped after %s records: %s", runMoved.get(), e.getMessage()));
+            return runMoved.get();
+        } finally {
+            lastRunFinished = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    /**Result of one chunk, lastLogTime is null when nothing was moved**/
+    private record Chunk(long moved, LocalDateTime lastLogTime) {}
+
+    private Chunk moveChunk(LocalDateTime from) {
+        return transactionTemplate.execute(status -> jdbcTemplate.queryForObject(MOVE_CHUNK, (rs, row) -> new Chunk(
+                rs.getLong(1),
+                rs.getTimestamp(2) != null ? rs.getTimestamp(2).toLocalDateTime() : null),
+                Timestamp.valueOf(from), Timestamp.valueOf(cutoff), properties.getChunkSize(), Timestamp.valueOf(LocalDateTime.now())));
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<ArchiveStatusDto> getStatus(String ip, long userId) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.ARCHIVE_STATUS_RETRIEVED, ip);
+
+        ArchiveStatusDto status = new ArchiveStatusDto();
+        status.setEnabled(properties.isEnabled());
+        status.setRunning(running.get());
+        status.setCutoff(cutoff);
+        status.setLastRunStarted(lastRunStarted);
+        status.setLastRunFinished(lastRunFinished);
+        status.setRunMoved(runMoved.get());
+        status.setRunChunks(runChunks.get());
+        status.setTotalMoved(totalMoved.get());
+        status.setAverageChunkMs(runChunks.get() > 0 ? runChunkMs.get() / runChunks.get() : 0);
+        status.setLastError(lastError);
+
+        status.setLastLogTime(lastLogTime);
+        status.setOldestArchived(archiveRepo.getOldestLogTime());
+        status.setNewestArchived(archiveRepo.getNewestLogTime());
+        return CompletableFuture.completedFuture(status);
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(properties.getChunkPauseMs());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
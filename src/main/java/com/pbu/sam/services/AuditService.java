@@ -0,0 +1,32 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.dtos.LogDto;
+import com.pbu.sam.utils.AuditAction;
+
+public interface AuditService {
+    /**
+     * Queue a system log record for writing
+     * @param log log record to write. Log time must already be set
+     * remarks >> Record is written by a background writer in batches with other queued records
+     **/
+    void record(LogDto log);
+
+    /**
+     * Queue a system log record for a catalog action with no target performed now
+     * @param userId logged in user ID
+     * @param action action performed by user
+     * @param ip logged in user IP Address
+     * remarks >> read actions are only queued when the audit policy asks for them
+     **/
+    void record(long userId, AuditAction action, String ip);
+
+    /**
+     * Queue a system log record for a catalog action performed now
+     * @param userId logged in user ID
+     * @param action action performed by user
+     * @param targetId ID of the record the action is performed on, stored with the action target type
+     * @param ip logged in user IP Address
+     * remarks >> read actions are only queued when the audit policy asks for them
+     **/
+    void record(long userId, AuditAction action, Object targetId, String ip);
+}
@@ -0,0 +1,781 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.common.AuditJournal;
+import com.pbu.sam.common.AuditPolicy;
+import com.pbu.sam.configuration.AuditProperties;
+import com.pbu.sam.dtos.LogDto;
+import com.pbu.sam.utils.AuditAction;
+import com.pbu.sam.utils.Literals;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class Name : AuditServiceImp
+ * Created By : Nkambwe Mark
+ * Description: Class writes system logs behind the request thread.
+ * Records are appended to the local {@link AuditJournal}, held in a bounded queue and a single writer
+ * thread inserts them into System_logs with multi-row inserts of up to {@code sam.audit.flush-size} rows.
+ * The journal checkpoint is moved in the same transaction as each insert, records from a crashed run are
+ * replayed from the journal when the writer starts. Callers never wait for queue space, records journaled while
+ * the queue is full are read back from the journal once the writer has emptied the queue.
+ * Hourly and daily event counts per user, action and ip address are merged into Audit_rollups in the same transaction,
+ * reads the {@link AuditPolicy} leaves out of System_logs are counted too. Merged events count in the bucket of their
+ * record's first occurrence, the same bucket a rollup rebuild puts them in.
+ * Identical reads of a user, action, target and ip address within {@code sam.audit.coalesce-window-seconds} of the first
+ * are merged into one record holding the occurrence count and the last log time, changes are always written in full. The writer remembers the records it
+ * wrote while their window is open and adds later events to them in the flush transaction instead of inserting.
+ * Actions are stored as {@link AuditAction} codes with the target record, free text is only kept for custom actions.
+ * Catalog reads are only queued when the {@link AuditPolicy} in force asks for them.
+ * Changes recorded inside a transaction are journaled and queued before it commits and written once it has committed,
+ * a change that rolls back is discarded in the journal and leaves no record.
+ * A batch the database rejects for any reason but a lost connection or a timeout is written again one record at a time,
+ * records still rejected are moved to Audit_dead_letters so the writer never stalls on them.
+ **/
+@Service
+@Slf4j
+public class AuditServiceImp implements AuditService, SmartLifecycle {
+    private static final String INSERT_PREFIX = "INSERT INTO system_logs (action_code, target_type, target_id, action_performed, log_time, " +
+            "ip_address, user_id, occurrences, last_log_time) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_RETURNING = " RETURNING row_id, log_time, user_id, action_code, target_id, action_performed, ip_address";
+    //..flush size is limited to AuditProperties.MAX_FLUSH_SIZE so a batch stays within the bind parameter limit
+    private static final int INSERT_COLUMNS = 9;
+    private static final String MERGE_OCCURRENCES = "UPDATE system_logs SET occurrences = occurrences + ?, " +
+            "last_log_time = GREATEST(COALESCE(last_log_time, log_time), ?) WHERE row_id = ? AND log_time = ?";
+    private static final String SELECT_CHECKPOINT = "SELECT last_position FROM system_checkpoints WHERE checkpoint_name = ?";
+    private static final String UPSERT_CHECKPOINT = "INSERT INTO system_checkpoints (checkpoint_name, last_position, modified_on) VALUES (?, ?, ?) " +
+            "ON CONFLICT (checkpoint_name) DO UPDATE SET last_position = EXCLUDED.last_position, modified_on = EXCLUDED.modified_on";
+    private static final String UPSERT_ROLLUP = "INSERT INTO audit_rollups (dimension, granularity, bucket_start, dimension_value, event_count) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (dimension, granularity, bucket_start, dimension_value) DO UPDATE SET event_count = audit_rollups.event_count + EXCLUDED.event_count";
+    private static final String INSERT_DEAD_LETTER = "INSERT INTO audit_dead_letters (journal_sequence, action_code, target_type, target_id, " +
+            "action_performed, log_time, ip_address, user_id, error_message, failed_on) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int ROLLUP_VALUE_LENGTH = 100;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final AuditProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditJournal journal;
+    private final AuditPolicy policy;
+    private final BlockingQueue<AuditEvent> queue;
+    //records written while their coalescing window is open
+    private final Map<CoalesceKey, OpenRecord> openRecords = new ConcurrentHashMap<>();
+    private volatile long nextPrune;
+    private final Object appendLock = new Object();
+    //changes journaled before their transaction completed, by sequence, until the checkpoint moves past them
+    private final ConcurrentNavigableMap<Long, AuditEvent> unresolved = new ConcurrentSkipListMap<>();
+    //activity counts of reads the policy left out of System_logs, written with the next batch
+    private final Map<RollupKey, Long> unrecorded = new ConcurrentHashMap<>();
+    //set when the queue was full, records are then only journaled until the writer has read them back
+    private volatile boolean behind;
+    private Thread writer;
+    private volatile boolean running;
+
+    public AuditServiceImp(AuditProperties properties, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                           AuditJournal journal, AuditPolicy policy) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.journal = journal;
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+
+        //..records written after a caller's commit must not join its finished transaction
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Queued system log with its journal sequence, sequence is 0 when journal is disabled.
+     * A change recorded inside a transaction is journaled and queued before the transaction commits,
+     * the writer holds it until the transaction completes and skips it when the transaction rolled back.
+     **/
+    private static final class AuditEvent {
+        private final long sequence;
+        private final LogDto log;
+        private final CountDownLatch completed;
+        private volatile boolean discarded;
+
+        AuditEvent(long sequence, LogDto log, boolean pending) {
+            this.sequence = sequence;
+            this.log = log;
+            this.completed = new CountDownLatch(pending ? 1 : 0);
+        }
+
+        long sequence() {
+            return sequence;
+        }
+
+        LogDto log() {
+            return log;
+        }
+
+        boolean isDiscarded() {
+            return discarded;
+        }
+
+        void complete(boolean committed) {
+            discarded = !committed;
+            completed.countDown();
+        }
+
+        boolean awaitCompletion(long timeoutMs) throws InterruptedException {
+            return completed.await(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**Rollup row a batch adds to, ordered so concurrent writers lock rows in the same order**/
+    private record RollupKey(String dimension, String granularity, LocalDateTime bucketStart, String value) implements Comparable<RollupKey> {
+        private static final Comparator<RollupKey> ORDER = Comparator.comparing(RollupKey::dimension)
+                .thenComparing(RollupKey::granularity)
+                .thenComparing(RollupKey::bucketStart)
+                .thenComparing(RollupKey::value);
+
+        @Override
+        public int compareTo(RollupKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    /**Events that are merged into one record**/
+    private record CoalesceKey(long userId, short actionCode, String targetId, String action, String ipAddress) {
+        static CoalesceKey of(LogDto record) {
+            return new CoalesceKey(record.getUserId(), record.getActionCode(), record.getTargetId(),
+                    record.getActionCode() == AuditAction.CUSTOM.getCode() ? record.getAction() : null, record.getIpAddress());
+        }
+    }
+
+    /**Inserted record as returned by the database, matched back to the events it holds**/
+    private record InsertedKey(CoalesceKey key, LocalDateTime logTime) {}
+
+    /**Record written to System_logs, log time is its first occurrence and part of the partition key**/
+    private record OpenRecord(long rowId, LocalDateTime logTime) {}
+
+    /**Events of a batch merged into one record, written as a new record when {@code open} is null**/
+    private static class Coalesced {
+        private final CoalesceKey key;
+        private final LogDto first;
+        private OpenRecord open;
+        private int occurrences = 1;
+        private LocalDateTime lastLogTime;
+
+        Coalesced(CoalesceKey key, LogDto first, OpenRecord open) {
+            this.key = key;
+            this.first = first;
+            this.open = open;
+            this.lastLogTime = first.getLogTime();
+        }
+
+        LocalDateTime windowStart() {
+            return open != null ? open.logTime() : first.getLogTime();
+        }
+    }
+
+    //region lifecycle
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::run, "audit-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        //..stop accepting new wait cycles and let the writer empty the queue
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(properties.getShutdownTimeoutMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if(!queue.isEmpty() || behind){
+            log.error(String.format("Audit writer stopped with %s system logs not written%s", queue.size(),
+                    journal.isEnabled() ? ", they will be replayed from the journal on next start" : ""));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        //..start before and stop after the web server so no request outlives the writer
+        return 0;
+    }
+
+    //endregion
+
+    @Override
+    public void record(long userId, AuditAction action, String ip) {
+        record(userId, action, null, ip);
+    }
+
+    @Override
+    public void record(long userId, AuditAction action, Object targetId, String ip) {
+        LogDto record = new LogDto(userId, action, targetId, LocalDateTime.now(), ip);
+        if(policy.shouldRecord(userId, action, record.getTargetId())){
+            record(record);
+        } else if(properties.isRollupsEnabled()){
+            //..activity counts every read, the policy only decides what reaches System_logs
+            countEvents(unrecorded, record, record.getLogTime(), 1);
+        }
+    }
+
+    @Override
+    public void record(LogDto record) {
+        AuditAction action = AuditAction.fromCode(record.getActionCode());
+        if((action == null || action.getKind() != AuditAction.Kind.READ) && TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private AuditEvent event;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    //..journaled before the commit so a crash after it can not lose the change record
+                    event = enqueue(record, true);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if(event != null){
+                        complete(event, status == STATUS_COMMITTED);
+                    }
+                }
+            });
+        } else {
+            enqueue(record, false);
+        }
+    }
+
+    /**Release a change record to the writer once its transaction committed, a rolled back one is discarded in the journal too**/
+    private void complete(AuditEvent event, boolean committed) {
+        if(!committed && event.sequence() > 0){
+            journal.discard(event.sequence());
+        }
+        event.complete(committed);
+    }
+
+    private AuditEvent enqueue(LogDto record, boolean pending) {
+        AuditEvent event;
+        synchronized (appendLock) {
+            event = new AuditEvent(journal.append(record), record, pending);
+            if(journal.isEnabled()){
+                if(pending){
+                    unresolved.put(event.sequence(), event);
+                }
+                //..record is safe on disk, once the queue is full later records are read back from the journal
+                //..until the writer catches up so they are still written in sequence order
+                if(behind || !queue.offer(event)){
+                    behind = true;
+                }
+                return event;
+            }
+        }
+
+        //..without a journal the queue holds the only copy, wait for space outside the append lock
+        try {
+            while (!queue.offer(event, properties.getOfferTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                if(!running){
+                    log.error(String.format("Audit writer is stopped, system log dropped: user %s, action %s, target %s",
+                            record.getUserId(), record.getActionCode(), record.getTargetId()));
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error(String.format("Interrupted while queueing, system log dropped: user %s, action %s, target %s",
+                    record.getUserId(), record.getActionCode(), record.getTargetId()));
+        }
+        return event;
+    }
+
+    private void run() {
+        replay();
+        drain();
+    }
+
+    /**Write records left in the journal by an earlier run before any new record**/
+    private void replay() {
+        if(!journal.isEnabled()){
+            return;
+        }
+
+        while (running) {
+            try {
+                long committed = readCheckpoint();
+                List<AuditJournal.Entry> pending = journal.recover(committed);
+                int flushSize = properties.getFlushSize();
+                for (int i = 0; i < pending.size(); i += flushSize) {
+                    List<AuditEvent> batch = new ArrayList<>();
+                    for (AuditJournal.Entry entry : pending.subList(i, Math.min(i + flushSize, pending.size()))) {
+                        //..changes of this run may still be waiting for their transaction
+                        AuditEvent open = unresolved.get(entry.sequence());
+                        batch.add(open != null ? open : new AuditEvent(entry.sequence(), entry.log(), false));
+                    }
+                    if(!awaitCompletion(batch) || !tryWrite(batch)){
+                        throw new IllegalStateException(String.format("%s system logs could not be written", batch.size()));
+                    }
+                }
+                journal.release(pending.isEmpty() ? committed : pending.get(pending.size() - 1).sequence());
+
+                if(!pending.isEmpty()){
+                    log.info(String.format("Replayed %s system logs from audit journal", pending.size()));
+                }
+                return;
+            } catch (Exception e) {
+                log.error(String.format("Audit journal replay failed, retrying: %s", e.getMessage()));
+                pause();
+            }
+        }
+    }
+
+    private void drain() {
+        int flushSize = properties.getFlushSize();
+        List<AuditEvent> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch, flushSize);
+            } catch (InterruptedException e) {
+                //..woken up for shutdown, remaining records are collected on the next pass
+                queue.drainTo(batch, flushSize - batch.size());
+            }
+
+            if(batch.isEmpty()){
+                if(behind && running){
+                    catchUp();
+                } else if(!unrecorded.isEmpty()){
+                    //..no records to carry them, counts of reads left out of System_logs are written alone
+                    tryWrite(batch);
+                }
+                continue;
+            }
+
+            while (!awaitCompletion(batch) || !tryWrite(batch)) {
+                if(!running){
+                    //..give up on this batch only once the application is stopping
+                    log.error(String.format("Failed to write %s system logs on shutdown", batch.size()));
+                    break;
+                }
+                pause();
+            }
+            batch.clear();
+        }
+    }
+
+    /**Write the records that only reached the journal while the queue was full, then return to the queue**/
+    private void catchUp() {
+        long sealed;
+        synchronized (appendLock) {
+            sealed = journal.seal();
+        }
+        replay();
+        synchronized (appendLock) {
+            //..records appended meanwhile are left for the next pass
+            if(journal.lastSequence() == sealed){
+                behind = false;
+            }
+        }
+    }
+
+    /**Wait for the first record then keep collecting until the batch is full or the flush interval elapses**/
+    private void collect(List<AuditEvent> batch, int flushSize) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + properties.getFlushIntervalMs();
+        while (batch.size() < flushSize) {
+            long wait = deadline - System.currentTimeMillis();
+            if(wait <= 0){
+                return;
+            }
+
+            AuditEvent head = queue.poll(wait, TimeUnit.MILLISECONDS);
+            if(head == null){
+                return;
+            }
+            batch.add(head);
+            queue.drainTo(batch, flushSize - batch.size());
+        }
+    }
+
+    /**@return false when the application is stopping before every change in the batch completed its transaction**/
+    private boolean awaitCompletion(List<AuditEvent> batch) {
+        for (AuditEvent event : batch) {
+            while (true) {
+                try {
+                    if(event.awaitCompletion(RETRY_DELAY_MS)){
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    //..shutdown requested, running flag is checked below
+                }
+                if(!running){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write a batch, a batch the database rejects is written one record at a time
+     * @param batch records to write, records written one at a time are removed so a retry does not write them again
+     * @return false when a transient failure stopped the batch, the records left are written by a retry
+     **/
+    private boolean tryWrite(List<AuditEvent> batch) {
+        try {
+            write(batch);
+            return true;
+        } catch (Exception e) {
+            log.error(String.format("Failed to write %s system logs: %s", batch.size(), e.getMessage()));
+            if(isTransient(e)){
+                return false;
+            }
+        }
+
+        Iterator<AuditEvent> events = batch.iterator();
+        while (events.hasNext()) {
+            AuditEvent event = events.next();
+            while (!tryWriteOne(event)) {
+                if(!running){
+                    return false;
+                }
+                pause();
+            }
+            events.remove();
+        }
+        return true;
+    }
+
+    /**@return false when a transient failure kept the record from being written or set aside**/
+    private boolean tryWriteOne(AuditEvent event) {
+        try {
+            write(List.of(event));
+            return true;
+        } catch (Exception e) {
+            if(isTransient(e)){
+                return false;
+            }
+            return setAside(event, e);
+        }
+    }
+
+    /**Move a record System_logs rejects to Audit_dead_letters and move the journal checkpoint past it**/
+    private boolean setAside(AuditEvent event, Exception cause) {
+        LogDto record = event.log();
+        log.error(String.format("System log rejected, moved to audit dead letters: sequence %s, user %s, action %s, target %s, time %s: %s",
+                event.sequence(), record.getUserId(), record.getActionCode(), record.getTargetId(), record.getLogTime(), cause.getMessage()));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(INSERT_DEAD_LETTER, event.sequence(), record.getActionCode(), record.getTargetType(), record.getTargetId(),
+                        record.getAction(), Timestamp.valueOf(record.getLogTime()), record.getIpAddress(),
+                        record.getUserId() > 0 ? record.getUserId() : null, cause.getMessage(), Timestamp.valueOf(LocalDateTime.now()));
+                if(event.sequence() > 0){
+                    jdbcTemplate.update(UPSERT_CHECKPOINT, journal.getCheckpointName(), event.sequence(), Timestamp.valueOf(LocalDateTime.now()));
+                }
+            });
+        } catch (Exception e) {
+            if(isTransient(e)){
+                return false;
+            }
+            //..nothing more can be done with the record, it is kept in the log line above
+            log.error(String.format("Failed to set aside system log %s, dropped: %s", event.sequence(), e.getMessage()));
+            return true;
+        }
+
+        if(event.sequence() > 0){
+            unresolved.headMap(event.sequence(), true).clear();
+            journal.release(event.sequence());
+        }
+        return true;
+    }
+
+    //..lost connections and timeouts clear up, anything else the database rejects is rejected again
+    private static boolean isTransient(Exception e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException || e instanceof TransactionException;
+    }
+
+    private void write(List<AuditEvent> batch) {
+        long lastSequence = 0;
+        for (AuditEvent event : batch) {
+            lastSequence = Math.max(lastSequence, event.sequence());
+        }
+        //..rolled back changes are not written, the checkpoint still moves past them
+        List<AuditEvent> committed = new ArrayList<>(batch.size());
+        for (AuditEvent event : batch) {
+            if(!event.isDiscarded()){
+                committed.add(event);
+            }
+        }
+        List<Coalesced> records = coalesce(committed);
+        Map<RollupKey, Long> unrecordedCounts = takeCounts(unrecorded);
+
+        //..rows, rollups and journal checkpoint commit together
+        long checkpoint = lastSequence;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                mergeOccurrences(records);
+                insertRecords(records);
+                if(properties.isRollupsEnabled()){
+                    mergeRollups(records, unrecordedCounts);
+                }
+                if(checkpoint > 0){
+                    jdbcTemplate.update(UPSERT_CHECKPOINT, journal.getCheckpointName(), checkpoint, Timestamp.valueOf(LocalDateTime.now()));
+                }
+            });
+        } catch (RuntimeException e) {
+            //..counts of reads left out of System_logs are kept for the next transaction
+            unrecordedCounts.forEach((key, count) -> unrecorded.merge(key, count, Long::sum));
+            throw e;
+        }
+
+        //..only committed records take later events
+        if(properties.getCoalesceWindowSeconds() > 0){
+            for (Coalesced record : records) {
+                if(record.key != null && record.open != null){
+                    openRecords.put(record.key, record.open);
+                }
+            }
+            pruneOpenRecords();
+        }
+        if(checkpoint > 0){
+            unresolved.headMap(checkpoint, true).clear();
+            journal.release(checkpoint);
+        }
+    }
+
+    /**Merge identical reads of a batch, reads still in the window of a record already written are added to it**/
+    private List<Coalesced> coalesce(List<AuditEvent> batch) {
+        List<Coalesced> records = new ArrayList<>(batch.size());
+        long window = properties.getCoalesceWindowSeconds();
+        if(window <= 0){
+            for (AuditEvent event : batch) {
+                records.add(new Coalesced(null, event.log(), null));
+            }
+            return records;
+        }
+
+        Map<CoalesceKey, Coalesced> current = new HashMap<>();
+        for (AuditEvent event : batch) {
+            LogDto record = event.log();
+            AuditAction action = AuditAction.fromCode(record.getActionCode());
+            if(action == null || action.getKind() != AuditAction.Kind.READ){
+                //..changes are never merged and a written change is never rewritten
+                records.add(new Coalesced(null, record, null));
+                continue;
+            }
+
+            CoalesceKey key = CoalesceKey.of(record);
+            Coalesced merged = current.get(key);
+            if(merged == null){
+                OpenRecord open = openRecords.get(key);
+                merged = new Coalesced(key, record, open != null && inWindow(open.logTime(), record.getLogTime(), window) ? open : null);
+                current.put(key, merged);
+                records.add(merged);
+                continue;
+            }
+
+            if(!inWindow(merged.windowStart(), record.getLogTime(), window)){
+                //..window closed within the batch, the event starts a new record
+                merged = new Coalesced(key, record, null);
+                current.put(key, merged);
+                records.add(merged);
+                continue;
+            }
+            merged.occurrences++;
+            if(record.getLogTime().isAfter(merged.lastLogTime)){
+                merged.lastLogTime = record.getLogTime();
+            }
+        }
+        return records;
+    }
+
+    private static boolean inWindow(LocalDateTime start, LocalDateTime time, long windowSeconds) {
+        return time.isBefore(start.plusSeconds(windowSeconds));
+    }
+
+    /**Add events to open records, records moved or deleted meanwhile are written as new records**/
+    private void mergeOccurrences(List<Coalesced> records) {
+        List<Coalesced> merging = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (Coalesced record : records) {
+            if(record.open != null){
+                merging.add(record);
+                rows.add(new Object[]{record.occurrences, Timestamp.valueOf(record.lastLogTime), record.open.rowId(), Timestamp.valueOf(record.open.logTime())});
+            }
+        }
+        if(rows.isEmpty()){
+            return;
+        }
+
+        int[] updated = jdbcTemplate.batchUpdate(MERGE_OCCURRENCES, rows);
+        for (int i = 0; i < updated.length; i++) {
+            if(updated[i] == 0){
+                merging.get(i).open = null;
+            }
+        }
+    }
+
+    /**Insert new records with one multi-row insert and remember the row ids of records that take later reads**/
+    private void insertRecords(List<Coalesced> records) {
+        List<Coalesced> inserting = new ArrayList<>();
+        for (Coalesced record : records) {
+            if(record.open == null){
+                inserting.add(record);
+            }
+        }
+        if(inserting.isEmpty()){
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        Object[] args = new Object[inserting.size() * INSERT_COLUMNS];
+        int i = 0;
+        for (Coalesced merged : inserting) {
+            LogDto record = merged.first;
+            if(i > 0){
+                sql.append(", ");
+            }
+            sql.append(INSERT_ROW);
+            args[i++] = record.getActionCode();
+            args[i++] = record.getTargetType();
+            args[i++] = record.getTargetId();
+            args[i++] = record.getActionCode() == AuditAction.CUSTOM.getCode() ? record.getAction() : null;
+            args[i++] = Timestamp.valueOf(storedTime(record.getLogTime()));
+            args[i++] = record.getIpAddress();
+            args[i++] = record.getUserId() > 0 ? record.getUserId() : null;
+            args[i++] = merged.occurrences;
+            args[i++] = merged.occurrences > 1 ? Timestamp.valueOf(merged.lastLogTime) : null;
+        }
+        sql.append(INSERT_RETURNING);
+
+        //..returned rows come in no promised order, they are matched on their values
+        Map<InsertedKey, Coalesced> pending = new HashMap<>();
+        for (Coalesced merged : inserting) {
+            if(merged.key != null){
+                pending.put(new InsertedKey(merged.key, storedTime(merged.first.getLogTime())), merged);
+            }
+        }
+        jdbcTemplate.query(sql.toString(), rs -> {
+            short actionCode = rs.getShort(4);
+            CoalesceKey key = new CoalesceKey(rs.getLong(3), actionCode, rs.getString(5),
+                    actionCode == AuditAction.CUSTOM.getCode() ? rs.getString(6) : null, rs.getString(7));
+            LocalDateTime logTime = rs.getTimestamp(2).toLocalDateTime();
+            Coalesced merged = pending.remove(new InsertedKey(key, logTime));
+            if(merged != null){
+                merged.open = new OpenRecord(rs.getLong(1), logTime);
+            }
+        }, args);
+    }
+
+    //..log times are stored to the microsecond, events are matched to their rows on the stored value
+    private static LocalDateTime storedTime(LocalDateTime time) {
+        return time.truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**Forget records whose window has closed, runs at most once a second**/
+    private void pruneOpenRecords() {
+        long now = System.currentTimeMillis();
+        if(now < nextPrune){
+            return;
+        }
+        nextPrune = now + RETRY_DELAY_MS;
+
+        LocalDateTime closed = LocalDateTime.now().minusSeconds(properties.getCoalesceWindowSeconds());
+        openRecords.values().removeIf(open -> open.logTime().isBefore(closed));
+    }
+
+    /**
+     * Add the events of a batch to Audit_rollups with one upsert per bucket
+     * @param records records of the batch, merged events are counted in the bucket of the record's first occurrence like a rebuild does
+     * @param unrecordedCounts counts of reads the policy left out of System_logs
+     **/
+    private void mergeRollups(List<Coalesced> records, Map<RollupKey, Long> unrecordedCounts) {
+        Map<RollupKey, Long> counts = new TreeMap<>(unrecordedCounts);
+        for (Coalesced record : records) {
+            countEvents(counts, record.first, record.windowStart(), record.occurrences);
+        }
+        if(counts.isEmpty()){
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        for (Map.Entry<RollupKey, Long> count : counts.entrySet()) {
+            RollupKey key = count.getKey();
+            rows.add(new Object[]{key.dimension(), key.granularity(), Timestamp.valueOf(key.bucketStart()), key.value(), count.getValue()});
+        }
+        jdbcTemplate.batchUpdate(UPSERT_ROLLUP, rows);
+    }
+
+    private static void countEvents(Map<RollupKey, Long> counts, LogDto record, LocalDateTime time, long events) {
+        LocalDateTime hour = time.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime day = time.truncatedTo(ChronoUnit.DAYS);
+        String user = String.valueOf(record.getUserId());
+        String action = rollupAction(record);
+        String ip = StringUtils.defaultString(record.getIpAddress());
+
+        counts.merge(new RollupKey(Literals.ROLLUP_USER, Literals.ROLLUP_HOUR, hour, user), events, Long::sum);
+        counts.merge(new RollupKey(Literals.ROLLUP_USER, Literals.ROLLUP_DAY, day, user), events, Long::sum);
+        counts.merge(new RollupKey(Literals.ROLLUP_ACTION, Literals.ROLLUP_HOUR, hour, action), events, Long::sum);
+        counts.merge(new RollupKey(Literals.ROLLUP_ACTION, Literals.ROLLUP_DAY, day, action), events, Long::sum);
+        counts.merge(new RollupKey(Literals.ROLLUP_IP, Literals.ROLLUP_HOUR, hour, ip), events, Long::sum);
+        counts.merge(new RollupKey(Literals.ROLLUP_IP, Literals.ROLLUP_DAY, day, ip), events, Long::sum);
+    }
+
+    /**Remove and return the counts gathered so far, counts added meanwhile stay for the next call**/
+    private static Map<RollupKey, Long> takeCounts(Map<RollupKey, Long> counts) {
+        Map<RollupKey, Long> taken = new HashMap<>();
+        for (RollupKey key : counts.keySet()) {
+            Long count = counts.remove(key);
+            if(count != null){
+                taken.put(key, count);
+            }
+        }
+        return taken;
+    }
+
+    /**Catalog actions are counted by name, free text actions by their text**/
+    private static String rollupAction(LogDto record) {
+        AuditAction action = AuditAction.fromCode(record.getActionCode());
+        return action != null && action != AuditAction.CUSTOM ? action.name()
+                : StringUtils.left(StringUtils.defaultString(record.getAction()), ROLLUP_VALUE_LENGTH);
+    }
+
+    private long readCheckpoint() {
+        Long position = jdbcTemplate.query(SELECT_CHECKPOINT, rs -> rs.next() ? rs.getLong(1) : 0L, journal.getCheckpointName());
+        return position != null ? position : 0L;
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(RETRY_DELAY_MS);
+        } catch (InterruptedException e) {
+            //..shutdown requested, running flag is checked by the caller
+        }
+    }
+}
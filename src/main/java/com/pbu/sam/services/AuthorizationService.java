@@ -0,0 +1,67 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.dtos.EffectivePermissionsDto;
+import com.pbu.sam.dtos.PermissionBatchDto;
+import com.pbu.sam.dtos.PermissionCheckDto;
+import com.pbu.sam.dtos.PermissionDecisionsDto;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface AuthorizationService {
+
+    /**
+     * Check whether a user holds a permission, answered from the compiled permission matrix
+     * @param userId user ID
+     * @param permission permission name, case is ignored
+     * @return true when a permission set of the user's role grants the permission
+     * remarks >> deleted and inactive users, deleted roles and deleted permission sets grant nothing
+     **/
+    boolean hasPermission(long userId, String permission);
+
+    /**
+     * Get every permission a user holds, answered from the compiled permission matrix
+     * @param userId user ID
+     * @return permission names, empty when the user has no active role
+     **/
+    List<String> effectivePermissions(long userId);
+
+    /**
+     * Check whether a user holds a permission
+     * @param ip logged in user IP Address
+     * @param loggedUserId logged in user ID
+     * @param userId user whose permission is checked
+     * @param permission permission name, case is ignored
+     * @return check result
+     **/
+    CompletableFuture<PermissionCheckDto> checkPermission(String ip, long loggedUserId, long userId, String permission);
+
+    /**
+     * Get every permission a user holds
+     * @param ip logged in user IP Address
+     * @param loggedUserId logged in user ID
+     * @param userId user whose permissions are returned
+     * @return user role and permission names
+     **/
+    CompletableFuture<EffectivePermissionsDto> getEffectivePermissions(String ip, long loggedUserId, long userId);
+
+    /**
+     * Check a batch authorization request before it is decided
+     * @param batch users and permissions to check
+     * @return error message, null when the request is valid
+     **/
+    String validateBatch(PermissionBatchDto batch);
+
+    /**
+     * Decide every user and permission pair of a batch against one permission matrix
+     * @param ip logged in user IP Address
+     * @param loggedUserId logged in user ID
+     * @param batch users and permissions to check, already validated
+     * @return decisions as a boolean matrix and a bitmap
+     * remarks >> unknown users and permissions are denied
+     **/
+    CompletableFuture<PermissionDecisionsDto> checkPermissions(String ip, long loggedUserId, PermissionBatchDto batch);
+
+    /**Compile the permission matrix from the role, permission set and permission tables and put it in force**/
+    void compile();
+}
@@ -0,0 +1,214 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.common.InvalidationBus;
+import com.pbu.sam.common.PermissionMatrix;
+import com.pbu.sam.configuration.AuthorizationProperties;
+import com.pbu.sam.dtos.*;
+import com.pbu.sam.utils.AuditAction;
+import com.pbu.sam.utils.CacheEntity;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class Name : AuthorizationServiceImp
+ * Created By : Nkambwe Mark
+ * Description: Class answers permission checks from a {@link PermissionMatrix} compiled from the role, permission set
+ * and permission tables. The matrix is read in one repeatable read transaction so it matches a single state of the
+ * tables, and it is compiled again every {@code sam.authorization.refresh-interval-ms}.
+ * The matrix is never changed once published, readers take the reference without locking and keep the matrix they hold
+ * while a new one is built. Changes to roles, permission sets, permissions and users reach it through the
+ * {@link InvalidationBus} once they commit and ask for a compile, a new matrix replaces the old one in a single write
+ * and compiles are serialized so an older state never replaces a newer one.
+ **/
+@Service
+@Slf4j
+public class AuthorizationServiceImp implements AuthorizationService {
+    private static final String SELECT_PERMISSIONS = "SELECT row_id, permission_name FROM system_permissions ORDER BY row_id";
+    private static final String SELECT_GRANTS = "SELECT rp.role_id, sp.permission_id FROM role_permission rp " +
+            "JOIN system_roles r ON r.row_id = rp.role_id JOIN permission_set s ON s.id = rp.permission_id " +
+            "JOIN set_permission sp ON sp.set_id = s.id WHERE NOT r.is_deleted AND NOT s.is_deleted";
+    private static final String SELECT_USERS = "SELECT row_id, role_id FROM system_users WHERE role_id IS NOT NULL AND is_active AND NOT is_deleted";
+
+    private final AuthorizationProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    private final ActingUserContext actingUser;
+    private final AuditService auditService;
+    private volatile PermissionMatrix matrix = PermissionMatrix.empty();
+
+    //refreshes arriving while a compile is waiting to start share that compile
+    private final AtomicBoolean compilePending = new AtomicBoolean();
+    private final ExecutorService compiler = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "permission-matrix-compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AuthorizationServiceImp(AuthorizationProperties properties, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                   ActingUserContext actingUser, AuditService auditService, InvalidationBus invalidationBus) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.actingUser = actingUser;
+        this.auditService = auditService;
+
+        //..permissions, grants and users are read from the same snapshot
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+
+        //..changes arrive after they commit, on this instance or any other
+        for (CacheEntity entity : List.of(CacheEntity.ROLE, CacheEntity.PERMISSION_SET, CacheEntity.PERMISSION, CacheEntity.USER)) {
+            invalidationBus.subscribe(entity, (type, id) -> scheduleCompile());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStart() {
+        compile();
+    }
+
+    @Scheduled(fixedDelayString = "${sam.authorization.refresh-interval-ms:60000}", initialDelayString = "${sam.authorization.refresh-interval-ms:60000}")
+    public void scheduledCompile() {
+        try {
+            compile();
+        } catch (Exception e) {
+            //..keep answering from the last matrix
+            log.error(String.format("Failed to compile permission matrix: %s", e.getMessage()));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        compiler.shutdownNow();
+    }
+
+    @Override
+    public synchronized void compile() {
+        long started = System.currentTimeMillis();
+        PermissionMatrix compiled = snapshotTemplate.execute(status -> {
+            PermissionMatrix.Builder builder = new PermissionMatrix.Builder();
+            jdbcTemplate.query(SELECT_PERMISSIONS, rs -> {
+                builder.permission(rs.getLong(1), rs.getString(2));
+            });
+            jdbcTemplate.query(SELECT_GRANTS, rs -> {
+                builder.grant(rs.getLong(1), rs.getLong(2));
+            });
+            jdbcTemplate.query(SELECT_USERS, rs -> {
+                builder.user(rs.getLong(1), rs.getLong(2));
+            });
+            return builder.build();
+        });
+
+        if(compiled != null){
+            matrix = compiled;
+            log.info(String.format("Compiled permission matrix of %s permissions, %s roles and %s users in %s ms", compiled.getPermissionCount(),
+                    compiled.getRoleCount(), compiled.getUserCount(), System.currentTimeMillis() - started));
+        }
+    }
+
+    private void scheduleCompile() {
+        if(!compilePending.compareAndSet(false, true)){
+            return;
+        }
+
+        compiler.execute(() -> {
+            //..cleared before reading so a change committed during the compile asks for another one
+            compilePending.set(false);
+            try {
+                compile();
+            } catch (Exception e) {
+                log.error(String.format("Failed to compile permission matrix: %s", e.getMessage()));
+            }
+        });
+    }
+
+    @Override
+    public boolean hasPermission(long userId, String permission) {
+        return matrix.hasPermission(userId, permission);
+    }
+
+    @Override
+    public List<String> effectivePermissions(long userId) {
+        return matrix.effectivePermissions(userId);
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<PermissionCheckDto> checkPermission(String ip, long loggedUserId, long userId, String permission) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(loggedUserId);
+
+        auditService.record(loggedIn.getId(), AuditAction.PERMISSION_CHECKED, userId, ip);
+
+        return CompletableFuture.completedFuture(new PermissionCheckDto(userId, permission, matrix.hasPermission(userId, permission)));
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<EffectivePermissionsDto> getEffectivePermissions(String ip, long loggedUserId, long userId) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(loggedUserId);
+
+        auditService.record(loggedIn.getId(), AuditAction.EFFECTIVE_PERMISSIONS_RETRIEVED, userId, ip);
+
+        //..role and permissions come from the same matrix
+        PermissionMatrix current = matrix;
+        return CompletableFuture.completedFuture(new EffectivePermissionsDto(userId, current.roleOf(userId), current.effectivePermissions(userId)));
+    }
+
+    @Override
+    public String validateBatch(PermissionBatchDto batch) {
+        if(batch.getUserIds() == null || batch.getUserIds().isEmpty()){
+            return "At least one user ID is required";
+        }
+        if(batch.getPermissions() == null || batch.getPermissions().isEmpty()){
+            return "At least one permission is required";
+        }
+        if((long) batch.getUserIds().size() * batch.getPermissions().size() > properties.getMaxBatchChecks()){
+            return String.format("A batch may check at most %s user and permission pairs", properties.getMaxBatchChecks());
+        }
+        return null;
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<PermissionDecisionsDto> checkPermissions(String ip, long loggedUserId, PermissionBatchDto batch) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(loggedUserId);
+
+        auditService.record(loggedIn.getId(), AuditAction.PERMISSIONS_CHECKED, ip);
+
+        List<Long> userIds = batch.getUserIds();
+        List<String> permissions = batch.getPermissions();
+        BitSet decisions = matrix.decide(userIds, permissions);
+        boolean[][] granted = new boolean[userIds.size()][permissions.size()];
+        for (int i = decisions.nextSetBit(0); i >= 0; i = decisions.nextSetBit(i + 1)) {
+            granted[i / permissions.size()][i % permissions.size()] = true;
+        }
+
+        PermissionDecisionsDto record = new PermissionDecisionsDto();
+        record.setUserIds(userIds);
+        record.setPermissions(permissions);
+        record.setGranted(granted);
+        record.setBitmap(Base64.getEncoder().encodeToString(decisions.toByteArray()));
+        return CompletableFuture.completedFuture(record);
+    }
+}
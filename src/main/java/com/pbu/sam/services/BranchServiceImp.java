@@ -1,64 +1,56 @@
 package com.pbu.sam.services;
 
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.common.BranchCache;
+import com.pbu.sam.common.InvalidationBus;
+import com.pbu.sam.dtos.ActingUserDto;
 import com.pbu.sam.dtos.BranchDto;
 import com.pbu.sam.entities.SystemBranch;
-import com.pbu.sam.entities.SystemLog;
-import com.pbu.sam.entities.SystemUser;
-import com.pbu.sam.exceptions.DbRecordNotFound;
 import com.pbu.sam.repositories.BranchRepository;
-import com.pbu.sam.repositories.SystemLogRepository;
-import com.pbu.sam.repositories.SystemUserRepository;
+import com.pbu.sam.utils.AuditAction;
+import com.pbu.sam.utils.CacheEntity;
 import jakarta.transaction.Transactional;
 import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 @Service
 public class BranchServiceImp implements BranchService{
-    private final List<BranchDto> records = new ArrayList<>();
     private final ModelMapper mapper;
     private final BranchRepository branchRepo;
-    private final SystemUserRepository usersRepo;
-    private final SystemLogRepository logRepo;
+    private final ActingUserContext actingUser;
+    private final AuditService auditService;
+    private final InvalidationBus invalidationBus;
+    private final BranchCache branchCache;
 
-    public BranchServiceImp(ModelMapper mapper, BranchRepository branchRepo, SystemUserRepository usersRepo, SystemLogRepository logRepo) {
+    public BranchServiceImp(ModelMapper mapper, BranchRepository branchRepo, ActingUserContext actingUser, AuditService auditService,
+                            InvalidationBus invalidationBus, BranchCache branchCache) {
         this.mapper = mapper;
         this.branchRepo = branchRepo;
-        this.usersRepo = usersRepo;
-        this.logRepo = logRepo;
+        this.actingUser = actingUser;
+        this.auditService = auditService;
+        this.invalidationBus = invalidationBus;
+        this.branchCache = branchCache;
     }
 
     @Override
     public BranchDto findById(long id){
-        SystemBranch branch = branchRepo.findById(id).orElse(null);
-        if(branch != null){
-            return this.mapper.map(branch, BranchDto.class);
-        }
-        return null;
+        return branchCache.findById(id);
     }
 
     @Transactional
     @Override
     public CompletableFuture<BranchDto>  findBySolId(String solId, String ip, long userId) {
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Retrieve branch record with solId %s", solId));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
-
-        SystemBranch branch = branchRepo.findBySolId(solId);
-        if(branch != null){
-            BranchDto record = this.mapper.map(branch, BranchDto.class);
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        //..every attempt is recorded, lookups that find no branch included
+        auditService.record(loggedIn.getId(), AuditAction.BRANCH_RETRIEVED_BY_SOLID, solId, ip);
+
+        BranchDto record = branchCache.findBySolId(solId);
+        if(record != null){
             return CompletableFuture.completedFuture(record);
         }
         return null;
@@ -69,86 +61,63 @@ public class BranchServiceImp implements BranchService{
     public CompletableFuture<List<BranchDto>> getAll(String ip, long userId) {
 
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-        SystemLog log = new SystemLog();
-        log.setAction("Retrieved list of branches");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
-
-        List<SystemBranch> branches = branchRepo.findAll();
-        if(!branches.isEmpty()){
-            for (SystemBranch record : branches) {
-                records.add(this.mapper.map(record, BranchDto.class));
-            }
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
+        auditService.record(loggedIn.getId(), AuditAction.BRANCHES_RETRIEVED, ip);
 
-        return CompletableFuture.completedFuture(records);
+        return CompletableFuture.completedFuture(branchCache.findAll());
     }
 
     public boolean  checkIfExistsById(long id){
-        return  branchRepo.existsById(id);
+        return  branchCache.findById(id) != null;
     }
 
     @Override
     public boolean checkIfExistsBySolId(String solId) {
-        return  branchRepo.existsBySolId(solId);
+        return  branchCache.findBySolId(solId) != null;
     }
 
     @Override
     public boolean checkSolIdDuplication(long branchId, String solId) {
-        return branchRepo.existsBySolIdAndIdNot(solId, branchId);
+        BranchDto branch = branchCache.findBySolId(solId);
+        return branch != null && branch.getId() != branchId;
     }
 
     @Override
     public boolean checkIfExistsByName(String branchName) {
-        return  branchRepo.existsByBranchName(branchName);
+        return  branchCache.findByName(branchName) != null;
     }
 
     @Override
     public boolean checkNameDuplication(long branchId, String branchName) {
-        return branchRepo.existsByBranchNameAndIdNot(branchName, branchId);
+        BranchDto branch = branchCache.findByName(branchName);
+        return branch != null && branch.getId() != branchId;
     }
 
     @Transactional
     @Override
     public void activateBranch(long id, boolean status, String ip, long userId) {
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Activate branch record with ID %s",id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        ActingUserDto loggedIn = actingUser.require(userId);
+        auditService.record(loggedIn.getId(), AuditAction.BRANCH_ACTIVATED, id, ip);
         branchRepo.updateIsActiveById(id, status);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.BRANCH, id);
     }
 
     @Transactional
     @Override
     public CompletableFuture<BranchDto> create(BranchDto branch, String ip, long userId) throws InterruptedException {
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-        SystemLog log = new SystemLog();
-        log.setAction("Add new branch record");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //map record
         SystemBranch record = this.mapper.map(branch, SystemBranch.class);
         branchRepo.save(record);
+        auditService.record(loggedIn.getId(), AuditAction.BRANCH_CREATED, record.getId(), ip);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.BRANCH, record.getId());
 
         //set branch id
         branch.setId(record.getId());
@@ -159,53 +128,38 @@ public class BranchServiceImp implements BranchService{
     @Override
     public void updateBranch(BranchDto branch, String ip, long userId) {
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Update branch record with ID %s",branch.getId()));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        ActingUserDto loggedIn = actingUser.require(userId);
+        auditService.record(loggedIn.getId(), AuditAction.BRANCH_UPDATED, branch.getId(), ip);
 
         branchRepo.updateBranch(this.mapper.map(branch, SystemBranch.class));
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.BRANCH, branch.getId());
     }
 
     @Transactional
     @Override
     public void deleteBranch(long id, String ip, long userId){
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Delete branch record with ID %s", id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        ActingUserDto loggedIn = actingUser.require(userId);
+        auditService.record(loggedIn.getId(), AuditAction.BRANCH_DELETED, id, ip);
 
         branchRepo.isDeleted(id);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.BRANCH, id);
     }
 
     @Transactional
     @Override
     public void purgeBranch(long id, String ip, long userId){
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Permanently delete branch record with ID %s", id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        ActingUserDto loggedIn = actingUser.require(userId);
+        auditService.record(loggedIn.getId(), AuditAction.BRANCH_PURGED, id, ip);
 
         branchRepo.deleteById(id);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.BRANCH, id);
     }
 }
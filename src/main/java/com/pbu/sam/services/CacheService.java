@@ -0,0 +1,26 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.dtos.CacheStatsDto;
+import com.pbu.sam.utils.AuditAction;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface CacheService {
+
+    /**
+     * Get the size and hit counts of every cache
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @return one record per cache
+     **/
+    CompletableFuture<List<CacheStatsDto>> getStatistics(String ip, long userId);
+
+    /**
+     * Record a list read answered from the copy the client already holds
+     * @param action action performed by user
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     **/
+    void recordUnchanged(AuditAction action, String ip, long userId);
+}
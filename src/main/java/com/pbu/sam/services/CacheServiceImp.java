@@ -0,0 +1,93 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.common.BranchCache;
+import com.pbu.sam.common.NegativeLookupCache;
+import com.pbu.sam.configuration.EntityCacheProperties;
+import com.pbu.sam.dtos.ActingUserDto;
+import com.pbu.sam.dtos.CacheStatsDto;
+import com.pbu.sam.utils.AuditAction;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Service
+public class CacheServiceImp implements CacheService {
+    private final ActingUserContext actingUser;
+    private final AuditService auditService;
+    private final BranchCache branchCache;
+    private final NegativeLookupCache missingCache;
+    private final EntityCacheProperties entityCacheProperties;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ObjectProvider<CacheManager> entityCacheManager;
+
+    public CacheServiceImp(ActingUserContext actingUser, AuditService auditService, BranchCache branchCache, NegativeLookupCache missingCache,
+                           EntityCacheProperties entityCacheProperties, EntityManagerFactory entityManagerFactory, ObjectProvider<CacheManager> entityCacheManager) {
+        this.actingUser = actingUser;
+        this.auditService = auditService;
+        this.branchCache = branchCache;
+        this.missingCache = missingCache;
+        this.entityCacheProperties = entityCacheProperties;
+        this.entityManagerFactory = entityManagerFactory;
+        this.entityCacheManager = entityCacheManager;
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<List<CacheStatsDto>> getStatistics(String ip, long userId) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.CACHE_STATISTICS_RETRIEVED, ip);
+
+        List<CacheStatsDto> statistics = new ArrayList<>(branchCache.getStatistics());
+        statistics.addAll(missingCache.getStatistics());
+        statistics.addAll(getEntityCacheStatistics());
+        return CompletableFuture.completedFuture(statistics);
+    }
+
+    @Override
+    public void recordUnchanged(AuditAction action, String ip, long userId) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), action, ip);
+    }
+
+    /**Hit counts of each second-level cache region, Ehcache does not report evictions and expirations through Hibernate**/
+    private List<CacheStatsDto> getEntityCacheStatistics() {
+        List<CacheStatsDto> statistics = new ArrayList<>();
+        CacheManager cacheManager = entityCacheManager.getIfAvailable();
+        if(cacheManager == null){
+            return statistics;
+        }
+
+        Statistics hibernate = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityCacheProperties.getRegionSizes().forEach((region, maxSize) -> {
+            CacheRegionStatistics regionStatistics = hibernate.getCacheRegionStatistics(region);
+            Cache<Object, Object> cache = cacheManager.getCache(region);
+            if(regionStatistics == null || cache == null){
+                return;
+            }
+
+            //..regions are small, counting them is cheaper than keeping a count on every put
+            long size = 0;
+            for (Cache.Entry<Object, Object> ignored : cache) {
+                size++;
+            }
+            statistics.add(new CacheStatsDto(String.format("entities.%s", region), size, maxSize, regionStatistics.getHitCount(),
+                    regionStatistics.getMissCount(), -1, -1));
+        });
+        return statistics;
+    }
+}
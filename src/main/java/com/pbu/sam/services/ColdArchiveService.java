@@ -0,0 +1,48 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.dtos.ColdArchiveFileDto;
+import com.pbu.sam.dtos.LogPageDto;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface ColdArchiveService {
+
+    /**
+     * Write system logs of a time range to a cold archive file
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @param startDate earliest log time to include
+     * @param endDate log time to stop before
+     * @param fromSystemLogs read System_logs instead of Archive_log
+     * @param purge delete the exported Archive_log records once the file is on disk
+     * @return file written, null when the range holds no records
+     **/
+    CompletableFuture<ColdArchiveFileDto> export(String ip, long userId, LocalDateTime startDate, LocalDateTime endDate,
+                                                 boolean fromSystemLogs, boolean purge) throws IOException;
+
+    /**
+     * Get one page of system logs from cold archive files
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @param startDate earliest log time to include
+     * @param endDate latest log time to include
+     * @param afterTime log time cursor from the previous page, null for the first page
+     * @param afterId record id cursor from the previous page
+     * @param size page size, capped at {@code sam.audit.max-page-size}
+     * @param filterUserId only return logs of this user, 0 for all users
+     * @return page of system logs with the cursor to the next page
+     **/
+    CompletableFuture<LogPageDto> query(String ip, long userId, LocalDateTime startDate, LocalDateTime endDate,
+                                        LocalDateTime afterTime, long afterId, int size, long filterUserId) throws IOException;
+
+    /**
+     * Get cold archive files
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @return files oldest first
+     **/
+    CompletableFuture<List<ColdArchiveFileDto>> getFiles(String ip, long userId) throws IOException;
+}
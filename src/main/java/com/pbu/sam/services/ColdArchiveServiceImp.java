@@ -0,0 +1,273 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.common.ColdArchiveFile;
+import com.pbu.sam.configuration.ArchiveProperties;
+import com.pbu.sam.configuration.AuditProperties;
+import com.pbu.sam.dtos.ActingUserDto;
+import com.pbu.sam.dtos.ColdArchiveFileDto;
+import com.pbu.sam.dtos.LogDto;
+import com.pbu.sam.dtos.LogPageDto;
+import com.pbu.sam.exceptions.WendiException;
+import com.pbu.sam.utils.AuditAction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class Name : ColdArchiveServiceImp
+ * Created By : Nkambwe Mark
+ * Description: Class moves system logs into cold archive files and reads them back.
+ * Records are read in one repeatable read transaction so the optional purge deletes exactly the records written to
+ * the file, the file is moved into place before the purge commits and removed again if the commit fails.
+ * Rows are written in the order of the log time and the ID they are stored with, the order the page cursor follows.
+ * Files never hold overlapping ranges, so reading them in name order reads every row in cursor order. Exports run one at a
+ * time and check the range again right before the file is moved into place.
+ **/
+@Service
+@Slf4j
+public class ColdArchiveServiceImp implements ColdArchiveService {
+    private static final String FILE_SUFFIX = ".sac";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final String SELECT_ARCHIVE = "SELECT COALESCE(log_id, id), COALESCE(user_id, 0), action_performed, log_time, ip_address, archive_time, " +
+            "action_code, target_type, target_id, occurrences, COALESCE(last_log_time, log_time) FROM archive_log WHERE log_time >= ? AND log_time < ? ORDER BY log_time, COALESCE(log_id, id)";
+    private static final String SELECT_SYSTEM = "SELECT row_id, COALESCE(user_id, 0), action_performed, log_time, ip_address, log_time, " +
+            "action_code, target_type, target_id, occurrences, COALESCE(last_log_time, log_time) FROM system_logs WHERE log_time >= ? AND log_time < ? ORDER BY log_time, row_id";
+    private static final String PURGE_ARCHIVE = "DELETE FROM archive_log WHERE log_time >= ? AND log_time < ?";
+
+    private final ArchiveProperties properties;
+    private final AuditProperties auditProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    private final ActingUserContext actingUser;
+    private final AuditService auditService;
+    private final Object exportLock = new Object();
+
+    private record Range(LocalDateTime start, LocalDateTime end) {}
+
+    public ColdArchiveServiceImp(ArchiveProperties properties, AuditProperties auditProperties, JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager, ActingUserContext actingUser, AuditService auditService) {
+        this.properties = properties;
+        this.auditProperties = auditProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.actingUser = actingUser;
+        this.auditService = auditService;
+
+        //..export and purge see the same snapshot, records archived meanwhile are neither written nor deleted
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<ColdArchiveFileDto> export(String ip, long userId, LocalDateTime startDate, LocalDateTime endDate,
+                                                        boolean fromSystemLogs, boolean purge) throws IOException {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), fromSystemLogs ? AuditAction.COLD_ARCHIVE_SYSTEM_EXPORTED : AuditAction.COLD_ARCHIVE_EXPORTED,
+                AuditAction.period(startDate, endDate), ip);
+
+        Path directory = Paths.get(properties.getColdDir());
+        Files.createDirectories(directory);
+        Path file = directory.resolve(String.format("audit-%s-%s%s", startDate.format(FILE_TIME), endDate.format(FILE_TIME), FILE_SUFFIX));
+        Path temp = directory.resolve(file.getFileName() + ".tmp");
+
+        //..one export at a time, two exports of overlapping ranges would both pass the overlap check
+        long purged;
+        AtomicBoolean moved = new AtomicBoolean();
+        synchronized (exportLock) {
+            requireFree(file, startDate, endDate);
+            Files.deleteIfExists(temp);
+
+            try {
+                Long result = snapshotTemplate.execute(status -> {
+                    long rows = write(temp, fromSystemLogs ? SELECT_SYSTEM : SELECT_ARCHIVE, startDate, endDate);
+                    if(rows == 0){
+                        return -1L;
+                    }
+
+                    try {
+                        //..checked again right before the move, another instance may share the directory
+                        requireFree(file, startDate, endDate);
+                        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+                        moved.set(true);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return purge && !fromSystemLogs ? (long) jdbcTemplate.update(PURGE_ARCHIVE, Timestamp.valueOf(startDate), Timestamp.valueOf(endDate)) : 0L;
+                });
+                purged = result != null ? result : 0;
+            } catch (UncheckedIOException e) {
+                Files.deleteIfExists(temp);
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                //..purge did not commit, the records are still in the database
+                Files.deleteIfExists(temp);
+                if(moved.get()){
+                    Files.deleteIfExists(file);
+                }
+                throw e;
+            }
+            Files.deleteIfExists(temp);
+        }
+
+        if(purged < 0){
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ColdArchiveFileDto record = describe(file);
+        record.setPurged(purged);
+        log.info(String.format("Wrote %s system logs to cold archive '%s', %s bytes, %s purged", record.getRecords(), file.getFileName(), record.getSizeBytes(), purged));
+        return CompletableFuture.completedFuture(record);
+    }
+
+    /**Fail when the file exists or another file already holds part of the range**/
+    private void requireFree(Path file, LocalDateTime startDate, LocalDateTime endDate) throws IOException {
+        if(Files.exists(file)){
+            throw new WendiException(String.format("Cold archive file '%s' already exists", file.getFileName()));
+        }
+        for (Path existing : listFiles()) {
+            Range range = rangeOf(existing);
+            if(range != null && startDate.isBefore(range.end()) && range.start().isBefore(endDate)){
+                throw new WendiException(String.format("Cold archive file '%s' already holds part of the range", existing.getFileName()));
+            }
+        }
+    }
+
+    private long write(Path temp, String query, LocalDateTime startDate, LocalDateTime endDate) {
+        try (ColdArchiveFile.Writer writer = new ColdArchiveFile.Writer(temp, properties.getColdBlockRows())) {
+            jdbcTemplate.query(con -> {
+                PreparedStatement statement = con.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(auditProperties.getExportFetchSize());
+                statement.setTimestamp(1, Timestamp.valueOf(startDate));
+                statement.setTimestamp(2, Timestamp.valueOf(endDate));
+                return statement;
+            }, rs -> {
+                try {
+                    writer.write(new ColdArchiveFile.Row(rs.getLong(1), rs.getLong(2), rs.getShort(7), rs.getString(8), rs.getString(9),
+                            rs.getString(3), rs.getTimestamp(4).toLocalDateTime(), rs.getString(5), rs.getTimestamp(6).toLocalDateTime(),
+                            rs.getInt(10), rs.getTimestamp(11).toLocalDateTime()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish();
+            return writer.getRows();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<LogPageDto> query(String ip, long userId, LocalDateTime startDate, LocalDateTime endDate,
+                                               LocalDateTime afterTime, long afterId, int size, long filterUserId) throws IOException {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.COLD_ARCHIVE_LOGS_RETRIEVED, ip);
+
+        //..first page starts at the beginning of the range, later pages continue after the cursor
+        LocalDateTime cursorTime = afterTime == null || afterTime.isBefore(startDate) ? startDate : afterTime;
+        long cursorId = afterTime == null || afterTime.isBefore(startDate) ? -1 : afterId;
+        int pageSize = size > 0 ? Math.min(size, auditProperties.getMaxPageSize()) : auditProperties.getPageSize();
+
+        //..read one extra row to know whether another page follows
+        List<LogDto> records = new ArrayList<>();
+        for (Path file : listFiles()) {
+            ColdArchiveFile.Summary summary = ColdArchiveFile.summary(file);
+            if(summary.maxTime() == null || summary.maxTime().isBefore(cursorTime) || summary.minTime().isAfter(endDate)){
+                continue;
+            }
+
+            boolean more = ColdArchiveFile.scan(file, cursorTime, endDate, filterUserId, row -> {
+                if(row.logTime().isEqual(cursorTime) && row.id() <= cursorId){
+                    return true;
+                }
+                records.add(row.toDto());
+                return records.size() <= pageSize;
+            });
+            if(!more){
+                break;
+            }
+        }
+
+        boolean hasMore = records.size() > pageSize;
+        return CompletableFuture.completedFuture(new LogPageDto(hasMore ? records.subList(0, pageSize) : records, hasMore));
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<List<ColdArchiveFileDto>> getFiles(String ip, long userId) throws IOException {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.COLD_ARCHIVE_FILES_RETRIEVED, ip);
+
+        List<ColdArchiveFileDto> files = new ArrayList<>();
+        for (Path file : listFiles()) {
+            files.add(describe(file));
+        }
+        return CompletableFuture.completedFuture(files);
+    }
+
+    /**Cold archive files ordered by the start of the range they hold**/
+    private List<Path> listFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        Path directory = Paths.get(properties.getColdDir());
+        if(!Files.isDirectory(directory)){
+            return files;
+        }
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "audit-*" + FILE_SUFFIX)) {
+            entries.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /**Start and end of the range a file was exported for, read from its name, null when the name holds no range**/
+    private static Range rangeOf(Path file) {
+        String name = file.getFileName().toString();
+        String[] parts = name.substring(0, name.length() - FILE_SUFFIX.length()).split("-");
+        if(parts.length != 3){
+            return null;
+        }
+        try {
+            return new Range(LocalDateTime.parse(parts[1], FILE_TIME), LocalDateTime.parse(parts[2], FILE_TIME));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private ColdArchiveFileDto describe(Path file) throws IOException {
+        ColdArchiveFile.Summary summary = ColdArchiveFile.summary(file);
+        ColdArchiveFileDto record = new ColdArchiveFileDto();
+        record.setFileName(file.getFileName().toString());
+        record.setRecords(summary.rows());
+        record.setBlocks(summary.blocks().size());
+        record.setSizeBytes(Files.size(file));
+        record.setMinLogTime(summary.minTime());
+        record.setMaxLogTime(summary.maxTime());
+        return record;
+    }
+}
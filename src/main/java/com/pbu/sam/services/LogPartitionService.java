@@ -0,0 +1,21 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.dtos.PartitionStatusDto;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface LogPartitionService {
+
+    /**
+     * Partition System_logs by month when it is still a plain table, create upcoming partitions and expire old ones
+     **/
+    void maintain();
+
+    /**
+     * Get the outcome of partition maintenance
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @return last run times, failures and partition coverage
+     **/
+    CompletableFuture<PartitionStatusDto> getStatus(String ip, long userId);
+}
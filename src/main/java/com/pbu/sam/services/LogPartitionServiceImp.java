@@ -0,0 +1,286 @@
+package com.pbu.sam.services;
+
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.configuration.PartitionProperties;
+import com.pbu.sam.dtos.ActingUserDto;
+import com.pbu.sam.dtos.PartitionStatusDto;
+import com.pbu.sam.utils.AuditAction;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class Name : LogPartitionServiceImp
+ * Created By : Nkambwe Mark
+ * Description: Class keeps System_logs range partitioned by month on log_time.
+ * A plain System_logs table created by Hibernate is converted once: it is renamed and attached as the first
+ * partition holding every row up to the end of the current month, so existing records are not copied.
+ * Upcoming monthly partitions are created ahead of time and partitions past the retention period are detached or dropped.
+ * Rows the default partition caught for a month are moved into that month's partition when it is created.
+ * The outcome of the last run is kept for the partition status report.
+ **/
+@Service
+@Slf4j
+public class LogPartitionServiceImp implements LogPartitionService {
+    private static final String TABLE = "system_logs";
+    private static final String LEGACY_PARTITION = "system_logs_legacy";
+    private static final String DEFAULT_PARTITION = "system_logs_default";
+    private static final String SEQUENCE = "system_logs_row_id_seq";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern BOUNDS = Pattern.compile("FROM \\((?:'([^']+)'|MINVALUE)\\) TO \\('([^']+)'\\)");
+
+    private static final String SELECT_KIND = "SELECT c.relkind FROM pg_class c WHERE c.oid = to_regclass(?)";
+    private static final String SELECT_PARTITIONS = "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = ?::regclass";
+    private static final String SELECT_INDEXES = "SELECT i.relname, pg_get_indexdef(i.oid) FROM pg_index x JOIN pg_class i ON i.oid = x.indexrelid " +
+            "WHERE x.indrelid = ?::regclass AND NOT x.indisprimary";
+    private static final String SELECT_CONSTRAINTS = "SELECT conname, pg_get_constraintdef(oid) FROM pg_constraint WHERE conrelid = ?::regclass AND contype = ?";
+
+    private final PartitionProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ActingUserContext actingUser;
+    private final AuditService auditService;
+
+    //outcome of the last maintenance run
+    private volatile LocalDateTime lastRunStarted;
+    private volatile LocalDateTime lastRunFinished;
+    private volatile LocalDateTime lastSucceeded;
+    private volatile int failedRuns;
+    private volatile String lastError;
+
+    public LogPartitionServiceImp(PartitionProperties properties, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                  ActingUserContext actingUser, AuditService auditService) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.actingUser = actingUser;
+        this.auditService = auditService;
+    }
+
+    /**Monthly partition and its bounds, from is null for the partition starting at MINVALUE**/
+    private record Partition(String name, LocalDateTime from, LocalDateTime to) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStart() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${sam.partition.cron:0 30 0 * * *}")
+    public void scheduledMaintain() {
+        maintain();
+    }
+
+    @Override
+    public synchronized void maintain() {
+        if(!properties.isEnabled()){
+            return;
+        }
+
+        lastRunStarted = LocalDateTime.now();
+        List<String> errors = new ArrayList<>();
+        try {
+            if(!isPartitioned()){
+                transactionTemplate.executeWithoutResult(status -> convert());
+            }
+            createPartitions();
+            expirePartitions(errors);
+        } catch (Exception e) {
+            errors.add(ExceptionUtils.getRootCauseMessage(e));
+        }
+
+        lastRunFinished = LocalDateTime.now();
+        if(errors.isEmpty()){
+            lastSucceeded = lastRunFinished;
+            failedRuns = 0;
+            lastError = null;
+        } else {
+            failedRuns++;
+            lastError = String.join("; ", errors);
+            log.error(String.format("System log partition maintenance failed, %s runs in a row: %s", failedRuns, lastError));
+        }
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<PartitionStatusDto> getStatus(String ip, long userId) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.PARTITION_STATUS_RETRIEVED, ip);
+
+        PartitionStatusDto status = new PartitionStatusDto();
+        status.setEnabled(properties.isEnabled());
+        status.setLastRunStarted(lastRunStarted);
+        status.setLastRunFinished(lastRunFinished);
+        status.setLastSucceeded(lastSucceeded);
+        status.setFailedRuns(failedRuns);
+        status.setLastError(lastError);
+
+        status.setPartitioned(isPartitioned());
+        if(status.getPartitioned()){
+            status.setCoveredUntil(getPartitions().stream().map(Partition::to).max(LocalDateTime::compareTo).orElse(null));
+        }
+        if(hasDefaultPartition()){
+            Long rows = jdbcTemplate.queryForObject(String.format("SELECT COUNT(*) FROM %s", DEFAULT_PARTITION), Long.class);
+            status.setDefaultPartitionRows(rows != null ? rows : 0);
+        }
+        return CompletableFuture.completedFuture(status);
+    }
+
+    private boolean isPartitioned() {
+        List<String> kind = jdbcTemplate.queryForList(SELECT_KIND, String.class, TABLE);
+        return !kind.isEmpty() && "p".equals(kind.get(0));
+    }
+
+    private boolean hasDefaultPartition() {
+        return !jdbcTemplate.queryForList(SELECT_KIND, String.class, DEFAULT_PARTITION).isEmpty();
+    }
+
+    /**Swap the plain table for a partitioned one, the old table becomes the partition of all months so far**/
+    private void convert() {
+        jdbcTemplate.execute(String.format("LOCK TABLE %s IN ACCESS EXCLUSIVE MODE", TABLE));
+        LocalDateTime boundary = jdbcTemplate.queryForObject(String.format(
+                "SELECT date_trunc('month', GREATEST(MAX(log_time), LOCALTIMESTAMP)) + INTERVAL '1 month' FROM %s", TABLE), LocalDateTime.class);
+
+        //..remember indexes and foreign keys so the partitioned table gets the same ones under the same names
+        List<Map<String, Object>> indexes = jdbcTemplate.queryForList(SELECT_INDEXES, TABLE);
+        List<Map<String, Object>> foreignKeys = jdbcTemplate.queryForList(SELECT_CONSTRAINTS, TABLE, "f");
+        List<Map<String, Object>> primaryKeys = jdbcTemplate.queryForList(SELECT_CONSTRAINTS, TABLE, "p");
+
+        jdbcTemplate.execute(String.format("ALTER TABLE %s RENAME TO %s", TABLE, LEGACY_PARTITION));
+
+        //..partition key has to be part of every primary key, the legacy key is rebuilt on (row_id, log_time)
+        for (Map<String, Object> primaryKey : primaryKeys) {
+            jdbcTemplate.execute(String.format("ALTER TABLE %s DROP CONSTRAINT %s", LEGACY_PARTITION, primaryKey.get("conname")));
+        }
+        jdbcTemplate.execute(String.format("ALTER TABLE %s ADD CONSTRAINT %s_pkey PRIMARY KEY (row_id, log_time)", LEGACY_PARTITION, LEGACY_PARTITION));
+        for (Map<String, Object> index : indexes) {
+            jdbcTemplate.execute(String.format("ALTER INDEX %s RENAME TO %s_legacy", index.get("relname"), index.get("relname")));
+        }
+
+        //..identity columns can not be carried into a partition, row ids continue from a sequence owned by the new table
+        jdbcTemplate.execute(String.format("ALTER TABLE %s ALTER COLUMN row_id DROP IDENTITY IF EXISTS", LEGACY_PARTITION));
+        jdbcTemplate.execute(String.format("CREATE SEQUENCE IF NOT EXISTS %s", SEQUENCE));
+        jdbcTemplate.queryForObject(String.format("SELECT setval('%s', COALESCE((SELECT MAX(row_id) FROM %s), 0) + 1, false)", SEQUENCE, LEGACY_PARTITION), Long.class);
+
+        jdbcTemplate.execute(String.format("CREATE TABLE %s (LIKE %s INCLUDING DEFAULTS) PARTITION BY RANGE (log_time)", TABLE, LEGACY_PARTITION));
+        jdbcTemplate.execute(String.format("ALTER TABLE %s ALTER COLUMN row_id SET DEFAULT nextval('%s')", TABLE, SEQUENCE));
+        jdbcTemplate.execute(String.format("ALTER SEQUENCE %s OWNED BY %s.row_id", SEQUENCE, TABLE));
+
+        jdbcTemplate.execute(String.format("ALTER TABLE %s ADD CONSTRAINT %s_pkey PRIMARY KEY (row_id, log_time)", TABLE, TABLE));
+        for (Map<String, Object> foreignKey : foreignKeys) {
+            jdbcTemplate.execute(String.format("ALTER TABLE %s ADD CONSTRAINT %s %s", TABLE, foreignKey.get("conname"), foreignKey.get("pg_get_constraintdef")));
+        }
+
+        jdbcTemplate.execute(String.format("ALTER TABLE %s ATTACH PARTITION %s FOR VALUES FROM (MINVALUE) TO ('%s')",
+                TABLE, LEGACY_PARTITION, boundary.format(BOUND_FORMAT)));
+        for (Map<String, Object> index : indexes) {
+            //..index definitions still name the original table, matching legacy indexes are attached instead of rebuilt
+            jdbcTemplate.execute((String) index.get("pg_get_indexdef"));
+        }
+
+        //..rows outside every monthly partition land here instead of failing the audit insert
+        jdbcTemplate.execute(String.format("CREATE TABLE %s PARTITION OF %s DEFAULT", DEFAULT_PARTITION, TABLE));
+        log.info(String.format("Converted %s to monthly partitions, existing records kept in %s up to %s", TABLE, LEGACY_PARTITION, boundary));
+    }
+
+    private void createPartitions() {
+        List<Partition> partitions = getPartitions();
+        LocalDateTime covered = partitions.stream().map(Partition::to).max(LocalDateTime::compareTo).orElse(null);
+
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= properties.getPremakeMonths(); i++, month = month.plusMonths(1)) {
+            LocalDateTime from = month.atStartOfDay();
+            if(covered != null && from.isBefore(covered)){
+                continue;
+            }
+
+            String name = String.format("%s_p%s", TABLE, month.format(PARTITION_SUFFIX));
+            transactionTemplate.executeWithoutResult(status -> createPartition(name, from, from.plusMonths(1)));
+        }
+    }
+
+    /**Create a monthly partition, rows the default partition holds for the month are moved into it**/
+    private void createPartition(String name, LocalDateTime from, LocalDateTime to) {
+        String create = String.format("CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                name, TABLE, from.format(BOUND_FORMAT), to.format(BOUND_FORMAT));
+        boolean stranded = hasDefaultPartition() && Boolean.TRUE.equals(jdbcTemplate.queryForObject(String.format(
+                "SELECT EXISTS (SELECT 1 FROM %s WHERE log_time >= ? AND log_time < ?)", DEFAULT_PARTITION),
+                Boolean.class, Timestamp.valueOf(from), Timestamp.valueOf(to)));
+        if(!stranded){
+            jdbcTemplate.execute(create);
+            log.info(String.format("Created system log partition %s", name));
+            return;
+        }
+
+        //..a partition can not be added while the default partition holds rows of its range
+        jdbcTemplate.execute(String.format("ALTER TABLE %s DETACH PARTITION %s", TABLE, DEFAULT_PARTITION));
+        jdbcTemplate.execute(create);
+        int moved = jdbcTemplate.update(String.format("INSERT INTO %s SELECT * FROM %s WHERE log_time >= ? AND log_time < ?", TABLE, DEFAULT_PARTITION),
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        jdbcTemplate.update(String.format("DELETE FROM %s WHERE log_time >= ? AND log_time < ?", DEFAULT_PARTITION),
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        jdbcTemplate.execute(String.format("ALTER TABLE %s ATTACH PARTITION %s DEFAULT", TABLE, DEFAULT_PARTITION));
+        log.info(String.format("Created system log partition %s, moved %s records from %s", name, moved, DEFAULT_PARTITION));
+    }
+
+    private void expirePartitions(List<String> errors) {
+        if(properties.getRetentionMonths() <= 0){
+            return;
+        }
+
+        LocalDateTime expiry = LocalDate.now().withDayOfMonth(1).minusMonths(properties.getRetentionMonths()).atStartOfDay();
+        for (Partition partition : getPartitions()) {
+            if(partition.to().isAfter(expiry)){
+                continue;
+            }
+
+            //..each partition is released on its own so one failure does not hold back the rest
+            try {
+                if(properties.isDropExpired()){
+                    jdbcTemplate.execute(String.format("DROP TABLE %s", partition.name()));
+                    log.info(String.format("Dropped expired system log partition %s", partition.name()));
+                } else {
+                    jdbcTemplate.execute(String.format("ALTER TABLE %s DETACH PARTITION %s", TABLE, partition.name()));
+                    log.info(String.format("Detached expired system log partition %s", partition.name()));
+                }
+            } catch (Exception e) {
+                errors.add(String.format("%s: %s", partition.name(), ExceptionUtils.getRootCauseMessage(e)));
+            }
+        }
+    }
+
+    /**Range partitions of System_logs, the default partition is left out**/
+    private List<Partition> getPartitions() {
+        List<Partition> partitions = new ArrayList<>();
+        jdbcTemplate.query(SELECT_PARTITIONS, rs -> {
+            Matcher bounds = BOUNDS.matcher(rs.getString(2));
+            if(bounds.find()){
+                partitions.add(new Partition(
+                        rs.getString(1),
+                        bounds.group(1) != null ? Timestamp.valueOf(bounds.group(1)).toLocalDateTime() : null,
+                        Timestamp.valueOf(bounds.group(2)).toLocalDateTime()));
+            }
+        }, TABLE);
+        return partitions;
+    }
+}
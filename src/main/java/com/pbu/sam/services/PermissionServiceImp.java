@@ -1,17 +1,19 @@
 package com.pbu.sam.services;
 
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.common.InvalidationBus;
+import com.pbu.sam.dtos.ActingUserDto;
 import com.pbu.sam.dtos.PermissionDto;
 import com.pbu.sam.entities.*;
 import com.pbu.sam.exceptions.DbRecordNotFound;
-import com.pbu.sam.repositories.SystemLogRepository;
 import com.pbu.sam.repositories.SystemPermissionRepository;
-import com.pbu.sam.repositories.SystemUserRepository;
+import com.pbu.sam.utils.AuditAction;
+import com.pbu.sam.utils.CacheEntity;
 import jakarta.transaction.Transactional;
 import org.modelmapper.ModelMapper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -21,31 +23,26 @@ public class PermissionServiceImp implements PermissionService{
 
     private final List<PermissionDto> records = new ArrayList<>();
     private final ModelMapper mapper;
-    private final SystemUserRepository usersRepo;
-    private final SystemLogRepository logRepo;
+    private final ActingUserContext actingUser;
+    private final AuditService auditService;
     private final SystemPermissionRepository permissionRepo;
+    private final InvalidationBus invalidationBus;
 
-    public PermissionServiceImp(ModelMapper mapper, SystemUserRepository usersRepo, SystemLogRepository logRepo, SystemPermissionRepository permissionRepo) {
+    public PermissionServiceImp(ModelMapper mapper, ActingUserContext actingUser, AuditService auditService, SystemPermissionRepository permissionRepo,
+                                InvalidationBus invalidationBus) {
         this.mapper = mapper;
-        this.usersRepo = usersRepo;
-        this.logRepo = logRepo;
+        this.actingUser = actingUser;
+        this.auditService = auditService;
         this.permissionRepo = permissionRepo;
+        this.invalidationBus = invalidationBus;
     }
 
     @Async
     @Override
     public CompletableFuture<PermissionDto> findById(long id, String ip, long userId) {
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
         //create log record
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Retrieved system permission record with ID '%s'", id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.PERMISSION_RETRIEVED, id, ip);
 
         SystemPermission permission = permissionRepo.findById(id).orElse(null);
         if(permission == null){
@@ -57,22 +54,13 @@ public class PermissionServiceImp implements PermissionService{
 
     @Override
     public CompletableFuture<PermissionDto>  findByName(String name, String ip, long userId) {
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Retrieved system permission record with name '%s'", name));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         SystemPermission permission = permissionRepo.findByName(name).orElse(null);
         if(permission == null){
             throw new DbRecordNotFound("Permission", "Name", String.format("%s",name));
         }
+        auditService.record(loggedIn.getId(), AuditAction.PERMISSION_RETRIEVED_BY_NAME, permission.getId(), ip);
         PermissionDto record = this.mapper.map(permission, PermissionDto.class);
         return CompletableFuture.completedFuture(record);
     }
@@ -82,16 +70,8 @@ public class PermissionServiceImp implements PermissionService{
     @Override
     public CompletableFuture<List<PermissionDto>> getAll(String ip, long userId) {
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-        SystemLog log = new SystemLog();
-        log.setAction("Retrieving a list of system permissions");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        ActingUserDto loggedIn = actingUser.require(userId);
+        auditService.record(loggedIn.getId(), AuditAction.PERMISSIONS_RETRIEVED, ip);
 
         List<SystemPermission> permissions = permissionRepo.findAll();
         if(permissions.isEmpty()){
@@ -111,28 +91,18 @@ public class PermissionServiceImp implements PermissionService{
     @Override
     public void updatePermission(PermissionDto permission, String ip, long userId) {
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Updating system permission description for permission with Id %s" , permission.getId()));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.PERMISSION_UPDATED, permission.getId(), ip);
 
         SystemPermission record = this.permissionRepo.findById(permission.getId()).orElse(null);
         if(record == null){
-            log = new SystemLog();
-            log.setAction(String.format("Updating system permission with id '%s' failed" , permission.getId()));
-            log.setIpAddress(ip);
-            log.setLogTime(LocalDateTime.now());
-            log.setUser(loggedIn);
-            logRepo.save(log);
+            auditService.record(loggedIn.getId(), AuditAction.PERMISSION_UPDATE_FAILED, permission.getId(), ip);
         } else {
             this.permissionRepo.updatePermission(record);
+
+            //evict cached copies
+            invalidationBus.publish(CacheEntity.PERMISSION, record.getId());
         }
     }
 }
\ No newline at end of file
@@ -58,6 +58,18 @@ public interface PermissionSetService {
      **/
     void lockPermissionSet(long id, String ip, long userId) throws Exception;
 
+    /**
+     * Lock or unlock permission sets and the permissions they hold
+     * @param setIds IDs of permission sets to lock or unlock
+     * @param isLocked true to lock the sets, false to unlock them
+     * @param ip IP Address of user logged in
+     * @param userId User ID of user logged in
+     * @return number of permission sets changed
+     * remarks >> sets and their permissions are changed in one statement each whatever the number of sets.
+     * Unlocked permissions still held by another locked set stay locked
+     **/
+    int lockPermissionSets(List<Long> setIds, boolean isLocked, String ip, long userId) throws Exception;
+
     /**Create new system permission Set record
      * @param set System permission set to create
      * @param permissions Set of System permissions assigned to this set
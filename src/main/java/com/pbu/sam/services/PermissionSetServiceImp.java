@@ -1,18 +1,21 @@
 package com.pbu.sam.services;
 
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.common.InvalidationBus;
+import com.pbu.sam.common.NegativeLookupCache;
+import com.pbu.sam.dtos.ActingUserDto;
 import com.pbu.sam.dtos.PermissionSetDto;
 import com.pbu.sam.entities.*;
 import com.pbu.sam.exceptions.DbRecordNotFound;
-import com.pbu.sam.repositories.SystemLogRepository;
 import com.pbu.sam.repositories.SystemPermissionRepository;
 import com.pbu.sam.repositories.SystemPermissionSetRepository;
-import com.pbu.sam.repositories.SystemUserRepository;
+import com.pbu.sam.utils.AuditAction;
+import com.pbu.sam.utils.CacheEntity;
 import jakarta.transaction.Transactional;
 import org.modelmapper.ModelMapper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -22,17 +25,22 @@ import java.util.concurrent.CompletableFuture;
 public class PermissionSetServiceImp implements PermissionSetService{
     private final List<PermissionSetDto> records = new ArrayList<>();
     private final ModelMapper mapper;
-    private final SystemUserRepository usersRepo;
-    private final SystemLogRepository logRepo;
+    private final ActingUserContext actingUser;
+    private final AuditService auditService;
+    private final InvalidationBus invalidationBus;
     private final SystemPermissionRepository permissionRepo;
     private final SystemPermissionSetRepository setRepo;
+    private final NegativeLookupCache missingCache;
 
-    public PermissionSetServiceImp(ModelMapper mapper, SystemUserRepository usersRepo, SystemLogRepository logRepo, SystemPermissionRepository permissionRepo, SystemPermissionSetRepository setRepo) {
+    public PermissionSetServiceImp(ModelMapper mapper, ActingUserContext actingUser, AuditService auditService, SystemPermissionRepository permissionRepo, SystemPermissionSetRepository setRepo, InvalidationBus invalidationBus,
+                                   NegativeLookupCache missingCache) {
         this.mapper = mapper;
-        this.usersRepo = usersRepo;
-        this.logRepo = logRepo;
+        this.actingUser = actingUser;
+        this.auditService = auditService;
+        this.invalidationBus = invalidationBus;
         this.permissionRepo = permissionRepo;
         this.setRepo = setRepo;
+        this.missingCache = missingCache;
     }
 
     @Async
@@ -40,20 +48,12 @@ public class PermissionSetServiceImp implements PermissionSetService{
     public CompletableFuture<PermissionSetDto> findById(long setId, String ip, long userId) throws DbRecordNotFound {
 
         //..get system logged user
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         ///create action log
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Retrieved system permission set record with SetID '%s'", setId));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
-
-        SystemPermissionSet setRecord = setRepo.findById(setId).orElse(null);
+        auditService.record(loggedIn.getId(), AuditAction.SET_RETRIEVED, setId, ip);
+
+        SystemPermissionSet setRecord = missingCache.find(NegativeLookupCache.Lookup.SET_ID, setId, () -> setRepo.findById(setId).orElse(null));
         if(setRecord == null){
             throw new DbRecordNotFound("Permission Set", "Set Id", String.format("%s",setId));
         }
@@ -67,7 +67,7 @@ public class PermissionSetServiceImp implements PermissionSetService{
 
     @Override
     public CompletableFuture<PermissionSetDto> findByName(String setName, String ip, long userId) throws DbRecordNotFound {
-        SystemPermissionSet setRecord = setRepo.findBySetName(setName).orElse(null);
+        SystemPermissionSet setRecord = missingCache.find(NegativeLookupCache.Lookup.SET_NAME, setName, () -> setRepo.findBySetName(setName).orElse(null));
         if(setRecord == null){
             throw new DbRecordNotFound("Permission Set", "Set name", String.format("%s",setName));
         }
@@ -76,18 +76,10 @@ public class PermissionSetServiceImp implements PermissionSetService{
         PermissionSetDto record = this.mapper.map(setRecord, PermissionSetDto.class);
 
         //..get system logged user
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //create action log
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Retrieved system permission Set record with name '%s'", setName));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.SET_RETRIEVED_BY_NAME, setRecord.getId(), ip);
 
         //return record
         return CompletableFuture.completedFuture(record);
@@ -96,18 +88,10 @@ public class PermissionSetServiceImp implements PermissionSetService{
     @Override
     public CompletableFuture<List<PermissionSetDto>> getAll(String ip, Long userId) {
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //create log record
-        SystemLog log = new SystemLog();
-        log.setAction("Retrieving a list of system permission sets");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.SETS_RETRIEVED, ip);
 
         List<SystemPermissionSet> sets = setRepo.findAllWithSystemPermissions();
         if(sets.isEmpty()){
@@ -139,39 +123,47 @@ public class PermissionSetServiceImp implements PermissionSetService{
     @Transactional
     @Override
     public void lockPermissionSet(long id, String ip, long userId) throws DbRecordNotFound {
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //create action log
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Locking permission set with ID '%s'",id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
-
-        //lock record
-        setRepo.isLocked(id);
+        auditService.record(loggedIn.getId(), AuditAction.SET_LOCKED, id, ip);
+
+        //lock set and its permissions
+        setRepo.updateIsLockedByIdIn(List.of(id), true);
+        permissionRepo.lockBySetIdIn(List.of(id));
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.PERMISSION_SET, id);
     }
 
     @Transactional
     @Override
-    public CompletableFuture<PermissionSetDto> create(PermissionSetDto permission, List<Long> permissions, String ip, long userId) throws Exception {
-        //..get system user
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
+    public int lockPermissionSets(List<Long> setIds, boolean isLocked, String ip, long userId) throws DbRecordNotFound {
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        //create action log
+        for (Long setId : setIds) {
+            auditService.record(loggedIn.getId(), isLocked ? AuditAction.SET_LOCKED : AuditAction.SET_UNLOCKED, setId, ip);
         }
 
-        //log action
-        SystemLog log = new SystemLog();
-        log.setAction("Adding new permission set");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        //..sets are changed before their permissions so unlocking sees which sets are still locked
+        int changed = setRepo.updateIsLockedByIdIn(setIds, isLocked);
+        if(isLocked){
+            permissionRepo.lockBySetIdIn(setIds);
+        } else {
+            permissionRepo.unlockBySetIdIn(setIds);
+        }
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.PERMISSION_SET, setIds.size() == 1 ? setIds.get(0) : null);
+        return changed;
+    }
+
+    @Transactional
+    @Override
+    public CompletableFuture<PermissionSetDto> create(PermissionSetDto permission, List<Long> permissions, String ip, long userId) throws Exception {
+        //..get system user
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //map record
         SystemPermissionSet record = this.mapper.map(permission, SystemPermissionSet.class);
@@ -180,12 +172,6 @@ public class PermissionSetServiceImp implements PermissionSetService{
         if(permissions != null && !permissions.isEmpty()){
             Set<SystemPermission> setPermission = this.permissionRepo.findAllByIdIn(permissions);
             if(!setPermission.isEmpty()){
-                //lock permissions if set is locked
-                if(permission.getIsLocked()){
-                    for (SystemPermission p: setPermission){
-                        p.setLocked(true);
-                    }
-                }
                 record.setPermissions(setPermission);
             }
         }
@@ -193,6 +179,17 @@ public class PermissionSetServiceImp implements PermissionSetService{
         //..save record
         setRepo.save(record);
 
+        //lock permissions if set is locked
+        if(permission.getIsLocked() && record.getPermissions() != null && !record.getPermissions().isEmpty()){
+            permissionRepo.lockBySetIdIn(List.of(record.getId()));
+        }
+
+        //log action
+        auditService.record(loggedIn.getId(), AuditAction.SET_CREATED, record.getId(), ip);
+
+        //..ends remembered misses for the new set
+        invalidationBus.publish(CacheEntity.PERMISSION_SET, record.getId());
+
         //set role id
         permission.setId(record.getId());
         return CompletableFuture.completedFuture(permission);
@@ -203,18 +200,10 @@ public class PermissionSetServiceImp implements PermissionSetService{
     @Override
     public void addPermissionToSet(List<Long> permissionIds, long setId, boolean isLocked, String ip, long userId) throws DbRecordNotFound {
         //..get system user
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //log action
-        SystemLog log = new SystemLog();
-        log.setAction("Assign permissions to permission set");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.SET_GRANTING, setId, ip);
 
         //Get permission set
         SystemPermissionSet permissionSet = this.setRepo.findById(setId).orElse(null);
@@ -224,33 +213,28 @@ public class PermissionSetServiceImp implements PermissionSetService{
 
         Set<SystemPermission> permissions = this.permissionRepo.findAllByIdIn(permissionIds);
         if(permissions.isEmpty()){
-            log = new SystemLog();
-            log.setAction("No permissions found with in the provided list IDs");
-            log.setIpAddress(ip);
-            log.setLogTime(LocalDateTime.now());
-            log.setUser(loggedIn);
-            logRepo.save(log);
+            auditService.record(loggedIn.getId(), AuditAction.SET_GRANT_NOT_FOUND, setId, ip);
             throw new DbRecordNotFound("Permission Set", "ID", String.format("%s",setId));
         }
 
-        log.setAction(String.format("Permission Set >>> %s", permissionSet));
 
         // Save the updated PermissionSet
         permissionSet.getPermissions().addAll(permissions);
 
+        //save changes
+        setRepo.save(permissionSet);
+
         //lock set and its permissions
         if(isLocked){
-            permissionSet.setLocked(true);
-            for(SystemPermission p : permissionSet.getPermissions()){
-                p.setLocked(true);
-            }
+            setRepo.updateIsLockedByIdIn(List.of(setId), true);
+            permissionRepo.lockBySetIdIn(List.of(setId));
         }
 
-        //save changes
-        setRepo.save(permissionSet);
-
         //log status
-        log.setAction("Permission Set updated");
+        auditService.record(loggedIn.getId(), AuditAction.SET_GRANTED, setId, ip);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.PERMISSION_SET, setId);
     }
 
     @Async
@@ -258,18 +242,10 @@ public class PermissionSetServiceImp implements PermissionSetService{
     @Override
     public void removePermissionFromSet(List<Long> permissionIds, long setId, String ip, long userId) throws DbRecordNotFound {
         //..get system user
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //log action
-        SystemLog log = new SystemLog();
-        log.setAction("Remove permissions from permission set");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.SET_DENYING, setId, ip);
 
         //Get permission set
         SystemPermissionSet permissionSet = this.setRepo.findById(setId).orElse(null);
@@ -279,84 +255,61 @@ public class PermissionSetServiceImp implements PermissionSetService{
 
         Set<SystemPermission> permissions = this.permissionRepo.findAllByIdIn(permissionIds);
         if(permissions.isEmpty()){
-            log = new SystemLog();
-            log.setAction("No permissions found with in the provided list");
-            log.setIpAddress(ip);
-            log.setLogTime(LocalDateTime.now());
-            log.setUser(loggedIn);
-            logRepo.save(log);
+            auditService.record(loggedIn.getId(), AuditAction.SET_DENY_NOT_FOUND, setId, ip);
             throw new DbRecordNotFound("Permission Set", "ID", String.format("%s",setId));
         }
 
-        log.setAction(String.format("Permission Set >>> %s", permissionSet.toString()));
 
         //delete permissions
         permissionSet.getPermissions().removeAll(permissions);
+        setRepo.save(permissionSet);
 
         // unlock these permissions
-        for (SystemPermission p:permissions) {
-            p.setLocked(false);
-        }
-        setRepo.save(permissionSet);
+        permissionRepo.unlockByIdIn(permissions.stream().map(SystemPermission::getId).toList());
 
         //log status
-        log.setAction("Permission Set updated");
+        auditService.record(loggedIn.getId(), AuditAction.SET_DENIED, setId, ip);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.PERMISSION_SET, setId);
     }
 
     @Transactional
     @Override
     public void delete(long id, String ip, long userId) {
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //create log record
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Marking permission set with ID '%s' as deleted",id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.SET_DELETED, id, ip);
 
         //delete record
         setRepo.isDeleted(id);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.PERMISSION_SET, id);
     }
 
     @Transactional
     @Override
     public void purgeSet(long id, String ip, long userId) {
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //create log record
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Purge permission Set with ID '%s'",id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.SET_PURGED, id, ip);
         setRepo.deleteById(id);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.PERMISSION_SET, id);
     }
 
     @Transactional
     @Override
     public void updateSet(PermissionSetDto set, String ip, Long loggedUserId) throws DbRecordNotFound  {
         //...create logged in user record
-        SystemUser loggedIn = usersRepo.findById(loggedUserId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", loggedUserId));
-        }
+        ActingUserDto loggedIn = actingUser.require(loggedUserId);
 
         //create log record
-        SystemLog log = new SystemLog();
-        log.setAction("Updating system role");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.SET_UPDATED, set.getId(), ip);
 
 
         //...map record
@@ -366,6 +319,9 @@ public class PermissionSetServiceImp implements PermissionSetService{
 
         //..update record
         setRepo.updatePermissionSet(set);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.PERMISSION_SET, set.getId());
     }
 
 }
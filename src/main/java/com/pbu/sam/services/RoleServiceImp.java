@@ -1,44 +1,60 @@
 package com.pbu.sam.services;
 
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.common.InvalidationBus;
+import com.pbu.sam.common.NegativeLookupCache;
+import com.pbu.sam.dtos.ActingUserDto;
 import com.pbu.sam.dtos.PermissionSetDto;
 import com.pbu.sam.dtos.RoleDto;
 import com.pbu.sam.entities.*;
 import com.pbu.sam.exceptions.DbRecordNotFound;
-import com.pbu.sam.repositories.SystemLogRepository;
 import com.pbu.sam.repositories.SystemPermissionSetRepository;
 import com.pbu.sam.repositories.SystemRoleRepository;
-import com.pbu.sam.repositories.SystemUserRepository;
+import com.pbu.sam.utils.AuditAction;
+import com.pbu.sam.utils.CacheEntity;
 import jakarta.transaction.Transactional;
 import org.modelmapper.ModelMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.sql.PreparedStatement;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
 
 @Service
 public class RoleServiceImp implements RoleService{
+    //..requested sets that exist, and whether the role already holds each of them
+    private static final String SELECT_ASSIGNMENTS = "SELECT s.id, rp.role_id IS NOT NULL FROM permission_set s " +
+            "LEFT JOIN role_permission rp ON rp.permission_id = s.id AND rp.role_id = ? WHERE s.id = ANY (?)";
+    private static final String INSERT_GRANT = "INSERT INTO role_permission (role_id, permission_id) VALUES (?, ?) ON CONFLICT DO NOTHING";
+    private static final String DELETE_GRANT = "DELETE FROM role_permission WHERE role_id = ? AND permission_id = ?";
+
     private final List<RoleDto> records = new ArrayList<>();
     private final ModelMapper mapper;
     private final SystemRoleRepository rolesRepo;
-    private final SystemUserRepository usersRepo;
+    private final ActingUserContext actingUser;
     private final SystemPermissionSetRepository setRepo;
-    private final SystemLogRepository logRepo;
+    private final AuditService auditService;
+    private final InvalidationBus invalidationBus;
+    private final JdbcTemplate jdbcTemplate;
+    private final NegativeLookupCache missingCache;
 
-    public RoleServiceImp(ModelMapper mapper, SystemRoleRepository rolesRepo, SystemUserRepository usersRepo, SystemPermissionSetRepository setRepo, SystemLogRepository logRepo) {
+    public RoleServiceImp(ModelMapper mapper, SystemRoleRepository rolesRepo, ActingUserContext actingUser, SystemPermissionSetRepository setRepo, AuditService auditService,
+                          InvalidationBus invalidationBus, JdbcTemplate jdbcTemplate, NegativeLookupCache missingCache) {
         this.mapper = mapper;
         this.rolesRepo = rolesRepo;
-        this.usersRepo = usersRepo;
+        this.actingUser = actingUser;
         this.setRepo = setRepo;
-        this.logRepo = logRepo;
+        this.auditService = auditService;
+        this.invalidationBus = invalidationBus;
+        this.jdbcTemplate = jdbcTemplate;
+        this.missingCache = missingCache;
     }
 
     @Override
     public RoleDto findById(long id) {
-        SystemRole role = rolesRepo.findById(id).orElse(null);
+        SystemRole role = missingCache.find(NegativeLookupCache.Lookup.ROLE_ID, id, () -> rolesRepo.findById(id).orElse(null));
         if(role != null){
             return this.mapper.map(role, RoleDto.class);
         }
@@ -49,18 +65,13 @@ public class RoleServiceImp implements RoleService{
     @Transactional
     @Override
     public CompletableFuture<RoleDto> findByIdAsync(long id, String ip, long userId) {
-        SystemRole role = rolesRepo.findById(id).orElse(null);
+        SystemRole role = missingCache.find(NegativeLookupCache.Lookup.ROLE_ID, id, () -> rolesRepo.findById(id).orElse(null));
         if(role != null){
             RoleDto record = this.mapper.map(role, RoleDto.class);
             //..create log
-            SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
+            ActingUserDto loggedIn = actingUser.find(userId);
             if(loggedIn != null){
-                SystemLog log = new SystemLog();
-                log.setAction(String.format("Retrieved system role record with ID '%s'", id));
-                log.setIpAddress(ip);
-                log.setLogTime(LocalDateTime.now());
-                log.setUser(loggedIn);
-                logRepo.save(log);
+                auditService.record(loggedIn.getId(), AuditAction.ROLE_RETRIEVED, id, ip);
             }
             return CompletableFuture.completedFuture(record);
         }
@@ -71,22 +82,14 @@ public class RoleServiceImp implements RoleService{
     @Transactional
     @Override
     public CompletableFuture<RoleDto> findByName(String name, String ip, long userId) {
-        SystemRole role = rolesRepo.findByName(name).orElse(null);
+        SystemRole role = missingCache.find(NegativeLookupCache.Lookup.ROLE_NAME, name, () -> rolesRepo.findByName(name).orElse(null));
         if(role != null){
             RoleDto record = this.mapper.map(role, RoleDto.class);
 
             //..create log
-            SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-            if(loggedIn == null){
-                throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-            }
+            ActingUserDto loggedIn = actingUser.require(userId);
 
-            SystemLog log = new SystemLog();
-            log.setAction(String.format("Retrieved system role record with name '%s'", name));
-            log.setIpAddress(ip);
-            log.setLogTime(LocalDateTime.now());
-            log.setUser(loggedIn);
-            logRepo.save(log);
+            auditService.record(loggedIn.getId(), AuditAction.ROLE_RETRIEVED_BY_NAME, role.getId(), ip);
             return CompletableFuture.completedFuture(record);
         }
         return null;
@@ -107,17 +110,9 @@ public class RoleServiceImp implements RoleService{
         }
 
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
-        SystemLog log = new SystemLog();
-        log.setAction("Retrieving a list of system roles");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.ROLES_RETRIEVED, ip);
 
         return CompletableFuture.completedFuture(records);
     }
@@ -143,21 +138,15 @@ public class RoleServiceImp implements RoleService{
     public CompletableFuture<RoleDto>  create(RoleDto role, String ip, long userId) throws InterruptedException {
 
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-
-        SystemLog log = new SystemLog();
-        log.setAction("Create new system role");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //map record
         SystemRole record = this.mapper.map(role, SystemRole.class);
         rolesRepo.save(record);
+        auditService.record(loggedIn.getId(), AuditAction.ROLE_CREATED, record.getId(), ip);
+
+        //..ends remembered misses for the new role
+        invalidationBus.publish(CacheEntity.ROLE, record.getId());
 
         //set role id
         role.setId(record.getId());
@@ -173,15 +162,13 @@ public class RoleServiceImp implements RoleService{
         rolesRepo.updateRoleRecord(record);
 
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
+        ActingUserDto loggedIn = actingUser.find(userId);
         if(loggedIn != null){
-            SystemLog log = new SystemLog();
-            log.setAction("Updating system role");
-            log.setIpAddress(ip);
-            log.setLogTime(LocalDateTime.now());
-            log.setUser(loggedIn);
-            logRepo.save(log);
+            auditService.record(loggedIn.getId(), AuditAction.ROLE_UPDATED, role.getId(), ip);
         }
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.ROLE, role.getId());
     }
 
     @Transactional
@@ -189,22 +176,14 @@ public class RoleServiceImp implements RoleService{
     public CompletableFuture<List<PermissionSetDto>> getRolePermissions(long id, String ip, long userId) {
 
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         SystemRole role = rolesRepo.findById(id).orElse(null);
         if(role == null){
             throw new DbRecordNotFound("Role", "RoleId", String.format("%s", id));
         }
         //create log record
-        SystemLog log = new SystemLog();
-        log.setAction("Retrieving a list of system permission sets");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.ROLE_PERMISSIONS_RETRIEVED, id, ip);
 
         Set<SystemPermissionSet> sets = role.getPermissions();
         List<PermissionSetDto> permissions = new ArrayList<>();
@@ -223,33 +202,29 @@ public class RoleServiceImp implements RoleService{
     @Transactional
     @Override
     public void purgeRole(long id, String ip, long userId) {
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
+        ActingUserDto loggedIn = actingUser.find(userId);
         if(loggedIn != null){
-            SystemLog log = new SystemLog();
-            log.setAction(String.format("Purge role with ID '%s'",id));
-            log.setIpAddress(ip);
-            log.setLogTime(LocalDateTime.now());
-            log.setUser(loggedIn);
-            logRepo.save(log);
+            auditService.record(loggedIn.getId(), AuditAction.ROLE_PURGED, id, ip);
         }
         rolesRepo.deleteById(id);
 
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.ROLE, id);
+
     }
 
     @Transactional
     @Override
     public void delete(long id, String ip, long userId) {
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
+        ActingUserDto loggedIn = actingUser.find(userId);
         if(loggedIn != null){
-            SystemLog log = new SystemLog();
-            log.setAction(String.format("Marking role with ID '%s' as deleted",id));
-            log.setIpAddress(ip);
-            log.setLogTime(LocalDateTime.now());
-            log.setUser(loggedIn);
-            logRepo.save(log);
+            auditService.record(loggedIn.getId(), AuditAction.ROLE_DELETED, id, ip);
         }
 
         rolesRepo.isDeleted(id);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.ROLE, id);
     }
 
     @Async
@@ -257,44 +232,36 @@ public class RoleServiceImp implements RoleService{
     @Override
     public void grantPermissions(Long roleId, List<Long> setIds, String ip, long userId) {
         //..get system user
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //log action
-        SystemLog log = new SystemLog();
-        log.setAction("Assign permissions to system role");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
-
-        //Get role
-        SystemRole role = this.rolesRepo.findById(roleId).orElse(null);
-        if(role == null){
+        auditService.record(loggedIn.getId(), AuditAction.ROLE_GRANTING, roleId, ip);
+
+        //..check role without loading its permission sets
+        if(!this.rolesRepo.existsById(roleId)){
             throw new DbRecordNotFound("Role", "RoleId", String.format("%s", roleId));
         }
 
-        Set<SystemPermissionSet> permissions = this.setRepo.findAllByIdIn(setIds);
-        if(permissions.isEmpty()){
-            log = new SystemLog();
-            log.setAction("No permission sets found with in the provided list of IDs");
-            log.setIpAddress(ip);
-            log.setLogTime(LocalDateTime.now());
-            log.setUser(loggedIn);
-            logRepo.save(log);
+        Map<Long, Boolean> assignments = readAssignments(roleId, setIds);
+        if(assignments.isEmpty()){
+            auditService.record(loggedIn.getId(), AuditAction.ROLE_GRANT_NOT_FOUND, roleId, ip);
             throw new DbRecordNotFound("Role", "RoleId", String.format("%s",roleId));
         }
 
-        log.setAction(String.format("Assign Permissions to role >>> %s", role));
-
-        // Save the updated role
-        role.getPermissions().addAll(permissions);
-        rolesRepo.save(role);
+        //..insert only the sets the role does not hold yet
+        List<Long> grants = new ArrayList<>();
+        assignments.forEach((setId, assigned) -> {
+            if(!assigned){
+                grants.add(setId);
+            }
+        });
+        writeAssignments(INSERT_GRANT, roleId, grants);
 
         //log status
-        log.setAction("Permission assigned to role successfully");
+        auditService.record(loggedIn.getId(), AuditAction.ROLE_GRANTED, roleId, ip);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.ROLE, roleId);
     }
 
     @Async
@@ -302,43 +269,70 @@ public class RoleServiceImp implements RoleService{
     @Override
     public void denyPermissions(Long roleId, List<Long> setIds, String ip, long userId) {
         //..get system user
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedIn = actingUser.require(userId);
 
         //log action
-        SystemLog log = new SystemLog();
-        log.setAction("Remove permissions from system role");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
-
-        //Get role record
-        SystemRole role = this.rolesRepo.findById(roleId).orElse(null);
-        if(role == null){
+        auditService.record(loggedIn.getId(), AuditAction.ROLE_DENYING, roleId, ip);
+
+        //..check role without loading its permission sets
+        if(!this.rolesRepo.existsById(roleId)){
             throw new DbRecordNotFound("Role", "RoleId", String.format("%s", roleId));
         }
 
-        Set<SystemPermissionSet> permissions = this.setRepo.findAllByIdIn(setIds);
-        if(permissions.isEmpty()){
-            log = new SystemLog();
-            log.setAction("No permissions found with in the provided list");
-            log.setIpAddress(ip);
-            log.setLogTime(LocalDateTime.now());
-            log.setUser(loggedIn);
-            logRepo.save(log);
+        Map<Long, Boolean> assignments = readAssignments(roleId, setIds);
+        if(assignments.isEmpty()){
+            auditService.record(loggedIn.getId(), AuditAction.ROLE_DENY_NOT_FOUND, roleId, ip);
             throw new DbRecordNotFound("Permission set", "ID", String.format("%s",setIds));
         }
 
-        log.setAction(String.format("Remove permissions from role >>> %s", role));
-
-        //delete permissions
-        role.getPermissions().removeAll(permissions);
-        rolesRepo.save(role);
+        //..delete only the sets the role holds
+        List<Long> denials = new ArrayList<>();
+        assignments.forEach((setId, assigned) -> {
+            if(assigned){
+                denials.add(setId);
+            }
+        });
+        writeAssignments(DELETE_GRANT, roleId, denials);
 
         //log status
-        log.setAction("Role permissions updated succesfully");
+        auditService.record(loggedIn.getId(), AuditAction.ROLE_DENIED, roleId, ip);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.ROLE, roleId);
+    }
+
+    /**
+     * Read which requested permission sets exist and which of them a role already holds
+     * @param roleId role ID
+     * @param setIds requested permission set IDs
+     * @return existing set IDs mapped to true when the role holds the set
+     **/
+    private Map<Long, Boolean> readAssignments(long roleId, List<Long> setIds) {
+        Map<Long, Boolean> assignments = new HashMap<>();
+        if(setIds == null || setIds.isEmpty()){
+            return assignments;
+        }
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement(SELECT_ASSIGNMENTS);
+            statement.setLong(1, roleId);
+            statement.setArray(2, con.createArrayOf("bigint", setIds.stream().filter(Objects::nonNull).toArray()));
+            return statement;
+        }, rs -> {
+            assignments.put(rs.getLong(1), rs.getBoolean(2));
+        });
+        return assignments;
+    }
+
+    /**Insert or delete role_permission rows of a role in one batch**/
+    private void writeAssignments(String statement, long roleId, List<Long> setIds) {
+        if(setIds.isEmpty()){
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(statement, setIds, setIds.size(), (ps, setId) -> {
+            ps.setLong(1, roleId);
+            ps.setLong(2, setId);
+        });
     }
 }
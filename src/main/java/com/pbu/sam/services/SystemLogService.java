@@ -1,13 +1,107 @@
 package com.pbu.sam.services;
 
+import com.pbu.sam.dtos.AuditPolicyDto;
 import com.pbu.sam.dtos.LogDto;
+import com.pbu.sam.dtos.LogPageDto;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public interface SystemLogService {
     void create(LogDto log);
-    CompletableFuture<List<LogDto>> getLogs(String ip, long userId);
-    CompletableFuture<List<LogDto>> getLogs(String ip, long userId, LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Get one page of system logs
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @param afterTime log time cursor from the previous page, null for the first page
+     * @param afterId row id cursor from the previous page
+     * @param size page size, capped at {@code sam.audit.max-page-size}
+     * @param filterUserId only return logs of this user, 0 for all users
+     * @param action action catalog name, or start of a free text action, empty for all actions
+     * @return page of system logs with the cursor to the next page
+     **/
+    CompletableFuture<LogPageDto> getLogs(String ip, long userId, LocalDateTime afterTime, long afterId, int size, long filterUserId, String action);
+
+    /**
+     * Get one page of system logs recorded between two dates
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @param startDate earliest log time to include
+     * @param endDate latest log time to include
+     * @param afterTime log time cursor from the previous page, null for the first page
+     * @param afterId row id cursor from the previous page
+     * @param size page size, capped at {@code sam.audit.max-page-size}
+     * @param filterUserId only return logs of this user, 0 for all users
+     * @param action action catalog name, or start of a free text action, empty for all actions
+     * @return page of system logs with the cursor to the next page
+     **/
+    CompletableFuture<LogPageDto> getLogs(String ip, long userId, LocalDateTime startDate, LocalDateTime endDate,
+                                          LocalDateTime afterTime, long afterId, int size, long filterUserId, String action);
+
+    /**
+     * Get one page of the audit trail of one user
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @param filterUserId user whose actions are returned
+     * @param startDate earliest log time to include, null for no lower bound
+     * @param endDate latest log time to include, null for no upper bound
+     * @param afterTime log time cursor from the previous page, null for the first page
+     * @param afterId row id cursor from the previous page
+     * @param size page size, capped at {@code sam.audit.max-page-size}
+     * @param action action catalog name, or start of a free text action, empty for all actions
+     * @return page of system logs with the cursor to the next page
+     **/
+    CompletableFuture<LogPageDto> getUserTrail(String ip, long userId, long filterUserId, LocalDateTime startDate, LocalDateTime endDate,
+                                               LocalDateTime afterTime, long afterId, int size, String action);
+
+    /**
+     * Get one page of system logs of actions performed on one record
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @param targetType type of record, one of the action catalog target types
+     * @param targetId ID of the record
+     * @param startDate earliest log time to include, null for no lower bound
+     * @param endDate latest log time to include, null for no upper bound
+     * @param afterTime log time cursor from the previous page, null for the first page
+     * @param afterId row id cursor from the previous page
+     * @param size page size, capped at {@code sam.audit.max-page-size}
+     * @param action action catalog name, empty for all actions
+     * @return page of system logs with the cursor to the next page
+     **/
+    CompletableFuture<LogPageDto> getTargetLogs(String ip, long userId, String targetType, String targetId, LocalDateTime startDate,
+                                                LocalDateTime endDate, LocalDateTime afterTime, long afterId, int size, String action);
+
+    /**
+     * Get the audit policy deciding which reads are recorded
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @return policy in force
+     **/
+    CompletableFuture<AuditPolicyDto> getAuditPolicy(String ip, long userId);
+
+    /**
+     * Replace the audit policy while the application runs, settings in application.properties apply again on restart
+     * @param policy new policy, already validated
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @return policy in force
+     **/
+    AuditPolicyDto updateAuditPolicy(AuditPolicyDto policy, String ip, long userId);
+
+    /**
+     * Stream system logs recorded between two dates without holding them in memory
+     * @param ip logged in user IP Address
+     * @param userId logged in user ID
+     * @param startDate earliest log time to include
+     * @param endDate latest log time to include
+     * @param filterUserId only export logs of this user, 0 for all users
+     * @param action action catalog name, or start of a free text action, empty for all actions
+     * @param format {@code ndjson} or {@code csv}
+     * @param out stream the export is written to, caller wraps it for compression
+     **/
+    void exportLogs(String ip, long userId, LocalDateTime startDate, LocalDateTime endDate, long filterUserId,
+                    String action, String format, OutputStream out) throws IOException;
 }
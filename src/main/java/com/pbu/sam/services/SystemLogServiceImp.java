@@ -1,98 +1,338 @@
 package com.pbu.sam.services;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.common.AuditPolicy;
+import com.pbu.sam.configuration.AuditProperties;
+import com.pbu.sam.dtos.ActingUserDto;
+import com.pbu.sam.dtos.AuditPolicyDto;
 import com.pbu.sam.dtos.LogDto;
-import com.pbu.sam.entities.SystemLog;
-import com.pbu.sam.entities.SystemUser;
+import com.pbu.sam.dtos.LogPageDto;
 import com.pbu.sam.exceptions.DbRecordNotFound;
 import com.pbu.sam.repositories.SystemLogRepository;
 import com.pbu.sam.repositories.SystemUserRepository;
-import org.modelmapper.ModelMapper;
+import com.pbu.sam.utils.AuditAction;
+import com.pbu.sam.utils.Literals;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
 @Service
 public class SystemLogServiceImp implements SystemLogService {
-    private final ModelMapper mapper;
-    private final List<LogDto> records = new ArrayList<>();
+    //..bounds used when the caller does not limit the date range
+    private static final LocalDateTime MIN_LOG_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_LOG_TIME = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final String EXPORT_QUERY = "SELECT sl.row_id, sl.user_id, u.username, sl.action_code, sl.target_type, sl.target_id, " +
+            "sl.action_performed, sl.log_time, sl.ip_address, sl.occurrences, COALESCE(sl.last_log_time, sl.log_time) " +
+            "FROM system_logs sl LEFT JOIN system_users u ON u.row_id = sl.user_id " +
+            "WHERE sl.log_time >= ? AND sl.log_time <= ? AND (? = 0 OR sl.user_id = ?) " +
+            "AND (? < 0 OR sl.action_code = ?) AND (? = '' OR sl.action_performed LIKE ? ESCAPE '\\') " +
+            "ORDER BY sl.log_time, sl.row_id";
+    private static final String CSV_HEADER = "id,userId,username,action,logTime,ipAddress,actionCode,targetType,targetId,occurrences,lastLogTime";
+    private static final JsonFactory JSON = new JsonFactory().setRootValueSeparator("\n");
+
     private final SystemLogRepository logRepo;
     private final SystemUserRepository usersRepo;
+    private final ActingUserContext actingUser;
+    private final AuditService auditService;
+    private final AuditProperties properties;
+    private final AuditPolicy policy;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTemplate;
 
-    public SystemLogServiceImp(ModelMapper mapper, SystemLogRepository logRepo, SystemUserRepository usersRepo) {
-        this.mapper = mapper;
+    public SystemLogServiceImp(SystemLogRepository logRepo, SystemUserRepository usersRepo, ActingUserContext actingUser, AuditService auditService, AuditProperties properties,
+                               AuditPolicy policy, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
         this.logRepo = logRepo;
         this.usersRepo = usersRepo;
+        this.actingUser = actingUser;
+        this.auditService = auditService;
+        this.properties = properties;
+        this.policy = policy;
+        this.jdbcTemplate = jdbcTemplate;
+
+        //..PostgreSQL only streams with a fetch size inside a transaction, otherwise the whole result is read into memory
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
     }
 
-    @Async
     @Override
     public void create(LogDto log) {
-        SystemLog record = this.mapper.map(log, SystemLog.class);
-        logRepo.save(record);
+        auditService.record(log);
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<LogPageDto> getLogs(String ip, long userId, LocalDateTime afterTime, long afterId, int size, long filterUserId, String action) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.LOGS_RETRIEVED, ip);
+
+        return CompletableFuture.completedFuture(getPage(MIN_LOG_TIME, MAX_LOG_TIME, afterTime, afterId, size, filterUserId, action));
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<LogPageDto> getLogs(String ip, long userId, LocalDateTime startDate, LocalDateTime endDate,
+                                                 LocalDateTime afterTime, long afterId, int size, long filterUserId, String action) {
+
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.LOGS_RETRIEVED_BETWEEN, AuditAction.period(startDate, endDate), ip);
+
+        return CompletableFuture.completedFuture(getPage(startDate, endDate, afterTime, afterId, size, filterUserId, action));
     }
 
     @Async
     @Override
-    public CompletableFuture<List<LogDto>> getLogs(String ip, long userId) {
+    public CompletableFuture<LogPageDto> getUserTrail(String ip, long userId, long filterUserId, LocalDateTime startDate, LocalDateTime endDate,
+                                                      LocalDateTime afterTime, long afterId, int size, String action) {
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        String username = usersRepo.getUsername(filterUserId).orElse(null);
+        if(username == null){
+            throw new DbRecordNotFound("User", "UserId", String.format("%s", filterUserId));
         }
 
-        SystemLog log = new SystemLog();
-        log.setAction("Retrieving a list of system logs");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        auditService.record(loggedIn.getId(), AuditAction.USER_TRAIL_RETRIEVED, filterUserId, ip);
 
-        List<SystemLog> logs = logRepo.findAll();
-        if(logs.isEmpty()){
-            return CompletableFuture.completedFuture(records);
+        LocalDateTime from = startDate != null ? startDate : MIN_LOG_TIME;
+        LocalDateTime to = endDate != null ? endDate : MAX_LOG_TIME;
+        if(afterTime == null || afterTime.isBefore(from)){
+            afterTime = from;
+            afterId = -1;
         }
 
-        for (SystemLog record : logs) {
-            LogDto mappedLog = this.mapper.map(record, LogDto.class);
-            records.add(mappedLog);
+        int pageSize = size > 0 ? Math.min(size, properties.getMaxPageSize()) : properties.getPageSize();
+
+        //..read one extra row to know whether another page follows
+        ActionFilter filter = ActionFilter.of(action);
+        List<LogDto> records = logRepo.getUserPage(filterUserId, afterTime, afterId, to, filter.code(), filter.pattern(),
+                PageRequest.of(0, pageSize + 1));
+        boolean hasMore = records.size() > pageSize;
+        if(hasMore){
+            records = records.subList(0, pageSize);
         }
 
-        return CompletableFuture.completedFuture(records);
+        //..every record belongs to the same user, username is read once instead of joined per row
+        for (LogDto record : records) {
+            record.setUsername(username);
+        }
+        return CompletableFuture.completedFuture(new LogPageDto(records, hasMore));
     }
 
     @Async
     @Override
-    public CompletableFuture<List<LogDto>> getLogs(String ip, long userId, LocalDateTime startDate, LocalDateTime endDate) {
+    public CompletableFuture<LogPageDto> getTargetLogs(String ip, long userId, String targetType, String targetId, LocalDateTime startDate,
+                                                       LocalDateTime endDate, LocalDateTime afterTime, long afterId, int size, String action) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.TARGET_LOGS_RETRIEVED, ip);
+
+        LocalDateTime from = startDate != null ? startDate : MIN_LOG_TIME;
+        LocalDateTime to = endDate != null ? endDate : MAX_LOG_TIME;
+        if(afterTime == null || afterTime.isBefore(from)){
+            afterTime = from;
+            afterId = -1;
+        }
+
+        int pageSize = size > 0 ? Math.min(size, properties.getMaxPageSize()) : properties.getPageSize();
+
+        //..read one extra row to know whether another page follows
+        List<LogDto> records = logRepo.getTargetPage(targetType, targetId, afterTime, afterId, to,
+                ActionFilter.of(action).code(), PageRequest.of(0, pageSize + 1));
+        boolean hasMore = records.size() > pageSize;
+        if(hasMore){
+            records = records.subList(0, pageSize);
+        }
+        return CompletableFuture.completedFuture(new LogPageDto(records, hasMore));
+    }
+
+    private LogPageDto getPage(LocalDateTime startDate, LocalDateTime endDate, LocalDateTime afterTime, long afterId,
+                               int size, long filterUserId, String action) {
+        //..first page starts at the beginning of the range, later pages continue after the cursor
+        if(afterTime == null || afterTime.isBefore(startDate)){
+            afterTime = startDate;
+            afterId = -1;
+        }
+
+        int pageSize = size > 0 ? Math.min(size, properties.getMaxPageSize()) : properties.getPageSize();
 
+        //..read one extra row to know whether another page follows
+        ActionFilter filter = ActionFilter.of(action);
+        List<LogDto> records = logRepo.getLogPage(afterTime, afterId, endDate, filterUserId,
+                filter.code(), filter.pattern(), PageRequest.of(0, pageSize + 1));
+        boolean hasMore = records.size() > pageSize;
+        if(hasMore){
+            records = records.subList(0, pageSize);
+        }
+        return new LogPageDto(records, hasMore);
+    }
+
+    @Async
+    @Override
+    public CompletableFuture<AuditPolicyDto> getAuditPolicy(String ip, long userId) {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.AUDIT_POLICY_RETRIEVED, ip);
+
+        return CompletableFuture.completedFuture(policy.getPolicy());
+    }
+
+    @Override
+    public AuditPolicyDto updateAuditPolicy(AuditPolicyDto update, String ip, long userId) {
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.AUDIT_POLICY_UPDATED, ip);
+
+        policy.replace(update);
+        return policy.getPolicy();
+    }
+
+    @Override
+    public void exportLogs(String ip, long userId, LocalDateTime startDate, LocalDateTime endDate, long filterUserId,
+                           String action, String format, OutputStream out) throws IOException {
+        //..create log
+        ActingUserDto loggedIn = actingUser.require(userId);
+
+        auditService.record(loggedIn.getId(), AuditAction.LOGS_EXPORTED, AuditAction.period(startDate, endDate), ip);
+        ActionFilter filter = ActionFilter.of(action);
+
+        boolean csv = Literals.EXPORT_CSV.equalsIgnoreCase(format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        JsonGenerator json = csv ? null : JSON.createGenerator(writer);
+        if(csv){
+            writer.write(CSV_HEADER);
+            writer.write('\n');
         }
 
-        SystemLog log = new SystemLog();
-        log.setAction("Retrieving a list of system logs between");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        try {
+            readOnlyTemplate.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+                //..forward-only cursor, rows are fetched in chunks as they are written out
+                PreparedStatement statement = con.prepareStatement(EXPORT_QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(properties.getExportFetchSize());
+                statement.setTimestamp(1, Timestamp.valueOf(startDate));
+                statement.setTimestamp(2, Timestamp.valueOf(endDate));
+                statement.setLong(3, filterUserId);
+                statement.setLong(4, filterUserId);
+                statement.setInt(5, filter.code());
+                statement.setInt(6, filter.code());
+                statement.setString(7, filter.pattern());
+                statement.setString(8, filter.pattern());
+                return statement;
+            }, rs -> {
+                try {
+                    if(csv){
+                        writeCsv(writer, rs);
+                    } else {
+                        writeJson(json, rs);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            //..client went away, cursor and transaction are already closed
+            throw e.getCause();
+        }
 
-        List<SystemLog> logs = logRepo.getLogs(startDate, endDate);
-        if(logs.isEmpty()){
-            return CompletableFuture.completedFuture(records);
+        if(json != null){
+            json.writeRaw('\n');
+            json.flush();
         }
+        writer.flush();
+    }
+
+    private static void writeJson(JsonGenerator json, ResultSet rs) throws IOException, SQLException {
+        json.writeStartObject();
+        json.writeNumberField("id", rs.getLong(1));
+        json.writeNumberField("userId", rs.getLong(2));
+        json.writeStringField("username", rs.getString(3));
+        json.writeStringField("action", AuditAction.render(rs.getShort(4), rs.getString(6), rs.getString(7)));
+        json.writeStringField("logTime", rs.getTimestamp(8).toLocalDateTime().toString());
+        json.writeStringField("ipAddress", rs.getString(9));
+        json.writeNumberField("actionCode", rs.getShort(4));
+        json.writeStringField("targetType", rs.getString(5));
+        json.writeStringField("targetId", rs.getString(6));
+        json.writeNumberField("occurrences", rs.getInt(10));
+        json.writeStringField("lastLogTime", rs.getTimestamp(11).toLocalDateTime().toString());
+        json.writeEndObject();
+    }
 
-        for (SystemLog record : logs) {
-            LogDto mappedLog = this.mapper.map(record, LogDto.class);
-            records.add(mappedLog);
+    private static void writeCsv(Writer writer, ResultSet rs) throws IOException, SQLException {
+        writer.write(Long.toString(rs.getLong(1)));
+        writer.write(',');
+        writer.write(Long.toString(rs.getLong(2)));
+        writer.write(',');
+        writer.write(csvValue(rs.getString(3)));
+        writer.write(',');
+        writer.write(csvValue(AuditAction.render(rs.getShort(4), rs.getString(6), rs.getString(7))));
+        writer.write(',');
+        writer.write(rs.getTimestamp(8).toLocalDateTime().toString());
+        writer.write(',');
+        writer.write(csvValue(rs.getString(9)));
+        writer.write(',');
+        writer.write(Short.toString(rs.getShort(4)));
+        writer.write(',');
+        writer.write(csvValue(rs.getString(5)));
+        writer.write(',');
+        writer.write(csvValue(rs.getString(6)));
+        writer.write(',');
+        writer.write(Integer.toString(rs.getInt(10)));
+        writer.write(',');
+        writer.write(rs.getTimestamp(11).toLocalDateTime().toString());
+        writer.write('\n');
+    }
+
+    /**
+     * Action filter of log queries, an action catalog name matches on code, anything else is a prefix of free text actions
+     * @param code catalog code to match, -1 for any action
+     * @param text free text prefix to match, empty for any action
+     **/
+    private record ActionFilter(int code, String text) {
+        static ActionFilter of(String action) {
+            if(action == null || action.isEmpty()){
+                return new ActionFilter(-1, "");
+            }
+            AuditAction catalog = AuditAction.fromName(action);
+            return catalog != null ? new ActionFilter(catalog.getCode(), "") : new ActionFilter(AuditAction.CUSTOM.getCode(), action);
         }
 
-        return CompletableFuture.completedFuture(records);
+        /**LIKE pattern of the prefix, wildcards typed by the caller match themselves, empty for any action**/
+        String pattern() {
+            if(text.isEmpty()){
+                return "";
+            }
+            return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        }
     }
 
-}
+    private static String csvValue(String value) {
+        if(value == null){
+            return "";
+        }
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0){
+            return value;
+        }
+        return String.format("\"%s\"", value.replace("\"", "\"\""));
+    }
 
+}
@@ -1,18 +1,22 @@
 package com.pbu.sam.services;
 
+import com.pbu.sam.common.ActingUserContext;
+import com.pbu.sam.common.InvalidationBus;
+import com.pbu.sam.common.NegativeLookupCache;
+import com.pbu.sam.common.UserKeyFilter;
+import com.pbu.sam.dtos.ActingUserDto;
 import com.pbu.sam.dtos.UserDto;
-import com.pbu.sam.entities.SystemLog;
 import com.pbu.sam.entities.SystemUser;
 import com.pbu.sam.exceptions.DbRecordNotFound;
-import com.pbu.sam.repositories.SystemLogRepository;
 import com.pbu.sam.repositories.SystemUserRepository;
+import com.pbu.sam.utils.AuditAction;
+import com.pbu.sam.utils.CacheEntity;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -24,31 +28,35 @@ public class SystemUserServiceImp implements SystemUserService {
     private final List<UserDto> records = new ArrayList<>();
     private final ModelMapper mapper;
     private final SystemUserRepository usersRepo;
-    private final SystemLogRepository logRepo;
-
-    public SystemUserServiceImp(ModelMapper mapper, SystemUserRepository usersRepo, SystemLogRepository logRepo) {
+    private final ActingUserContext actingUser;
+    private final AuditService auditService;
+    private final InvalidationBus invalidationBus;
+    private final UserKeyFilter keyFilter;
+    private final NegativeLookupCache missingCache;
+
+    public SystemUserServiceImp(ModelMapper mapper, SystemUserRepository usersRepo, ActingUserContext actingUser, AuditService auditService,
+                                InvalidationBus invalidationBus, UserKeyFilter keyFilter, NegativeLookupCache missingCache) {
         this.mapper = mapper;
         this.usersRepo = usersRepo;
-        this.logRepo = logRepo;
+        this.actingUser = actingUser;
+        this.auditService = auditService;
+        this.invalidationBus = invalidationBus;
+        this.keyFilter = keyFilter;
+        this.missingCache = missingCache;
     }
 
     @Async
     @Transactional
     @Override
     public CompletableFuture<UserDto> findById(long id, String ip, long userId) {
-        SystemUser user = usersRepo.findById(id).orElse(null);
+        SystemUser user = missingCache.find(NegativeLookupCache.Lookup.USER_ID, id, () -> usersRepo.findById(id).orElse(null));
         if(user != null){
             UserDto record = this.mapper.map(user, UserDto.class);
 
             //..create log
-            SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
+            ActingUserDto loggedIn = actingUser.find(userId);
             if(loggedIn != null){
-                SystemLog log = new SystemLog();
-                log.setAction(String.format("Retrieved user with Id '%s'", id));
-                log.setIpAddress(ip);
-                log.setLogTime(LocalDateTime.now());
-                log.setUser(loggedIn);
-                logRepo.save(log);
+                auditService.record(loggedIn.getId(), AuditAction.USER_RETRIEVED, id, ip);
             }
             return CompletableFuture.completedFuture(record);
         }
@@ -59,19 +67,14 @@ public class SystemUserServiceImp implements SystemUserService {
     @Transactional
     @Override
     public CompletableFuture<UserDto> findByUsername(String username, String ip, long userId) {
-        SystemUser user = usersRepo.findByUsernameIgnoreCase(username);
+        SystemUser user = missingCache.find(NegativeLookupCache.Lookup.USERNAME, username, () -> usersRepo.findByUsernameIgnoreCase(username));
         if(user != null){
             UserDto record = this.mapper.map(user, UserDto.class);
 
             //..create log
-            SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
+            ActingUserDto loggedIn = actingUser.find(userId);
             if(loggedIn != null){
-                SystemLog log = new SystemLog();
-                log.setAction(String.format("Retrieved user with username '%s'", username));
-                log.setIpAddress(ip);
-                log.setLogTime(LocalDateTime.now());
-                log.setUser(loggedIn);
-                logRepo.save(log);
+                auditService.record(loggedIn.getId(), AuditAction.USER_RETRIEVED_BY_USERNAME, user.getId(), ip);
             }
 
             return CompletableFuture.completedFuture(record);
@@ -83,18 +86,13 @@ public class SystemUserServiceImp implements SystemUserService {
     @Transactional
     @Override
     public CompletableFuture<UserDto> findByPfNo(String pfNo, String ip, long userId) {
-        SystemUser user = usersRepo.findByPfNoIgnoreCase(pfNo);
+        SystemUser user = missingCache.find(NegativeLookupCache.Lookup.USER_PF_NO, pfNo, () -> usersRepo.findByPfNoIgnoreCase(pfNo));
         if(user != null){
             UserDto record = this.mapper.map(user, UserDto.class);
             //..create log
-            SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
+            ActingUserDto loggedIn = actingUser.find(userId);
             if(loggedIn != null){
-                SystemLog log = new SystemLog();
-                log.setAction(String.format("Retrieved user with PF number '%s'", pfNo));
-                log.setIpAddress(ip);
-                log.setLogTime(LocalDateTime.now());
-                log.setUser(loggedIn);
-                logRepo.save(log);
+                auditService.record(loggedIn.getId(), AuditAction.USER_RETRIEVED_BY_PF_NUMBER, user.getId(), ip);
             }
             return CompletableFuture.completedFuture(record);
         }
@@ -107,16 +105,8 @@ public class SystemUserServiceImp implements SystemUserService {
     public CompletableFuture<List<UserDto>> getAll(String ip, long userId) {
 
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-        SystemLog log = new SystemLog();
-        log.setAction("Retrieved list of users");
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        ActingUserDto loggedIn = actingUser.require(userId);
+        auditService.record(loggedIn.getId(), AuditAction.USERS_RETRIEVED, ip);
 
         List<SystemUser> users = usersRepo.findAll();
         if(!users.isEmpty()){
@@ -132,18 +122,13 @@ public class SystemUserServiceImp implements SystemUserService {
     @Override
     public void softDeleted(long id, String ip, long userId) {
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
-        if(loggedIn == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Delete user with ID %s", id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedIn);
-        logRepo.save(log);
+        ActingUserDto loggedIn = actingUser.require(userId);
+        auditService.record(loggedIn.getId(), AuditAction.USER_DELETED, id, ip);
 
         usersRepo.updateIsDeletedById(id);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.USER, id);
     }
 
     @Override
@@ -159,98 +144,64 @@ public class SystemUserServiceImp implements SystemUserService {
     @Transactional
     @Override
     public void updateRecord(UserDto user, String ip, long userId) throws DbRecordNotFound  {
-        SystemUser loggedUser = usersRepo.findById(userId).orElse(null);
         //..create log
-        if(loggedUser == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedUser = actingUser.require(userId);
 
         usersRepo.updateUserRecord(this.mapper.map(user, SystemUser.class));
 
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Updating user record for '%s'",  user.getUsername()));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedUser);
-        logRepo.save(log);
+        auditService.record(loggedUser.getId(), AuditAction.USER_UPDATED, user.getId(), ip);
+
+        //..PF number may have changed
+        invalidationBus.publish(CacheEntity.USER, user.getId());
     }
 
     @Transactional
     @Override
     public void verifiedUser(boolean verify, String modifiedBy, String modifiedOn, long id, String ip, long userId) {
-        SystemUser loggedUser = usersRepo.findById(userId).orElse(null);
         //..create log
-        if(loggedUser == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedUser = actingUser.require(userId);
 
         usersRepo.updateIsVerifiedById(verify,modifiedBy,modifiedOn, id);
 
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Verifying user record for user ID '%s'", id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedUser);
-        logRepo.save(log);
+        auditService.record(loggedUser.getId(), AuditAction.USER_VERIFIED, id, ip);
     }
 
     @Transactional
     @Override
     public void activeUser(boolean active, String modifiedBy, String modifiedOn, long id, String ip, long userId) {
-        SystemUser loggedUser = usersRepo.findById(userId).orElse(null);
         //..create log
-        if(loggedUser == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedUser = actingUser.require(userId);
 
         usersRepo.updateIsActiveById(active, modifiedBy, modifiedOn, id);
 
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Changing user active status to '%s' for user record with user ID '%s'", active, id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedUser);
-        logRepo.save(log);
+        auditService.record(loggedUser.getId(), active ? AuditAction.USER_ACTIVATED : AuditAction.USER_DEACTIVATED, id, ip);
+
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.USER, id);
     }
 
     @Transactional
     @Override
     public void updateLoginStatus(boolean loggedIn, long id, String ip, long userId) {
 
-        SystemUser loggedUser = usersRepo.findById(userId).orElse(null);
-        if(loggedUser == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedUser = actingUser.require(userId);
         //retrieve record
         usersRepo.updateIsLoggedInById(loggedIn, id);
 
         //create log record
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Changing user logged status to '%s' for user record with user ID '%s'", loggedIn, id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedUser);
-        logRepo.save(log);
+        auditService.record(loggedUser.getId(), loggedIn ? AuditAction.USER_LOGGED_IN : AuditAction.USER_LOGGED_OUT, id, ip);
     }
 
     @Transactional
     @Override
     public void updatePassword(String password, long id, String ip, long userId) {
-        SystemUser loggedUser = usersRepo.findById(userId).orElse(null);
-        if(loggedUser == null){
-            throw new DbRecordNotFound("User", "UserId", String.format("%s", userId));
-        }
+        ActingUserDto loggedUser = actingUser.require(userId);
 
         //retrieve record
         usersRepo.updatePasswordById(password, id);
 
         //create log record
-        SystemLog log = new SystemLog();
-        log.setAction(String.format("Update user password for user record with user ID '%s'", id));
-        log.setIpAddress(ip);
-        log.setLogTime(LocalDateTime.now());
-        log.setUser(loggedUser);
-        logRepo.save(log);
+        auditService.record(loggedUser.getId(), AuditAction.USER_PASSWORD_UPDATED, id, ip);
     }
 
     @Override
@@ -260,22 +211,23 @@ public class SystemUserServiceImp implements SystemUserService {
 
     @Override
     public boolean pfNoTaken(String pfNo) {
-        return usersRepo.existsByPfNoIgnoreCase(pfNo);
+        //..keys the filter has never seen are certainly free
+        return keyFilter.mightHavePfNo(pfNo) && usersRepo.existsByPfNoIgnoreCase(pfNo);
     }
 
     @Override
     public boolean pfNoDuplicated(String pfNo, long id) {
-        return usersRepo.existsByPfNoAndIdNot(pfNo, id);
+        return keyFilter.mightHavePfNo(pfNo) && usersRepo.existsByPfNoAndIdNot(pfNo, id);
     }
 
     @Override
     public boolean usernameTaken(String username) {
-        return usersRepo.existsByUsernameIgnoreCase(username);
+        return keyFilter.mightHaveUsername(username) && usersRepo.existsByUsernameIgnoreCase(username);
     }
 
     @Override
     public boolean usernameDuplicated(String username, long id) {
-        return usersRepo.existsByUsernameAndIdNot(username, id);
+        return keyFilter.mightHaveUsername(username) && usersRepo.existsByUsernameAndIdNot(username, id);
     }
 
     @Transactional
@@ -286,17 +238,17 @@ public class SystemUserServiceImp implements SystemUserService {
 
         //save record
         usersRepo.save(record);
+        keyFilter.add(record.getUsername(), record.getPfNo());
+
         //..create log
-        SystemUser loggedIn = usersRepo.findById(userId).orElse(null);
+        ActingUserDto loggedIn = actingUser.find(userId);
         if(loggedIn != null){
-            SystemLog log = new SystemLog();
-            log.setAction(String.format("Adding system user '%s'",user.getUsername()));
-            log.setIpAddress(ip);
-            log.setLogTime(LocalDateTime.now());
-            log.setUser(loggedIn);
-            logRepo.save(log);
+            auditService.record(loggedIn.getId(), AuditAction.USER_CREATED, record.getId(), ip);
         }
 
+        //evict cached copies
+        invalidationBus.publish(CacheEntity.USER, record.getId());
+
         //set user id
         user.setId(record.getId());
         return CompletableFuture.completedFuture(user);
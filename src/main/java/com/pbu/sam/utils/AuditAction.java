@@ -0,0 +1,207 @@
+package com.pbu.sam.utils;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class Name : AuditAction
+ * Created By : Nkambwe Mark
+ * Description: Enum holds the catalog of actions recorded in System_logs.
+ * A log row stores the action code with the type and ID of the record acted on, the sentence shown to users
+ * is rendered from the action template when logs are read. Codes are stored in the database, never change or reuse one.
+ **/
+public enum AuditAction {
+    //action text kept as written in action_performed, used for records created outside the catalog
+    CUSTOM(0, Category.SYSTEM_LOGS, Kind.WRITE, null, "%s"),
+
+    //region users
+    USER_RETRIEVED(101, Category.USERS, Kind.READ, Literals.TARGET_USER, "Retrieved user with Id '%s'"),
+    USER_RETRIEVED_BY_USERNAME(102, Category.USERS, Kind.READ, Literals.TARGET_USER, "Retrieved user with Id '%s' by username"),
+    USER_RETRIEVED_BY_PF_NUMBER(103, Category.USERS, Kind.READ, Literals.TARGET_USER, "Retrieved user with Id '%s' by PF number"),
+    USERS_RETRIEVED(104, Category.USERS, Kind.READ, null, "Retrieved list of users"),
+    USER_CREATED(105, Category.USERS, Kind.WRITE, Literals.TARGET_USER, "Adding system user with ID '%s'"),
+    USER_UPDATED(106, Category.USERS, Kind.WRITE, Literals.TARGET_USER, "Updating user record for user ID '%s'"),
+    USER_DELETED(107, Category.USERS, Kind.WRITE, Literals.TARGET_USER, "Delete user with ID %s"),
+    USER_VERIFIED(108, Category.USERS, Kind.WRITE, Literals.TARGET_USER, "Verifying user record for user ID '%s'"),
+    USER_ACTIVATED(109, Category.USERS, Kind.WRITE, Literals.TARGET_USER, "Changing user active status to 'true' for user record with user ID '%s'"),
+    USER_DEACTIVATED(110, Category.USERS, Kind.WRITE, Literals.TARGET_USER, "Changing user active status to 'false' for user record with user ID '%s'"),
+    USER_LOGGED_IN(111, Category.USERS, Kind.WRITE, Literals.TARGET_USER, "Changing user logged status to 'true' for user record with user ID '%s'"),
+    USER_LOGGED_OUT(112, Category.USERS, Kind.WRITE, Literals.TARGET_USER, "Changing user logged status to 'false' for user record with user ID '%s'"),
+    USER_PASSWORD_UPDATED(113, Category.USERS, Kind.WRITE, Literals.TARGET_USER, "Update user password for user record with user ID '%s'"),
+    USER_TRAIL_RETRIEVED(114, Category.USERS, Kind.READ, Literals.TARGET_USER, "Retrieved audit trail of user with ID '%s'"),
+    //endregion
+
+    //region roles
+    ROLE_RETRIEVED(201, Category.ROLES, Kind.READ, Literals.TARGET_ROLE, "Retrieved system role record with ID '%s'"),
+    ROLE_RETRIEVED_BY_NAME(202, Category.ROLES, Kind.READ, Literals.TARGET_ROLE, "Retrieved system role record with ID '%s' by name"),
+    ROLES_RETRIEVED(203, Category.ROLES, Kind.READ, null, "Retrieving a list of system roles"),
+    ROLE_CREATED(204, Category.ROLES, Kind.WRITE, Literals.TARGET_ROLE, "Create new system role with ID '%s'"),
+    ROLE_UPDATED(205, Category.ROLES, Kind.WRITE, Literals.TARGET_ROLE, "Updating system role with ID '%s'"),
+    ROLE_PERMISSIONS_RETRIEVED(206, Category.ROLES, Kind.READ, Literals.TARGET_ROLE, "Retrieving a list of system permission sets for role with ID '%s'"),
+    ROLE_PURGED(207, Category.ROLES, Kind.WRITE, Literals.TARGET_ROLE, "Purge role with ID '%s'"),
+    ROLE_DELETED(208, Category.ROLES, Kind.WRITE, Literals.TARGET_ROLE, "Marking role with ID '%s' as deleted"),
+    ROLE_GRANTING(209, Category.ROLES, Kind.WRITE, Literals.TARGET_ROLE, "Assign permissions to system role with ID '%s'"),
+    ROLE_GRANT_NOT_FOUND(210, Category.ROLES, Kind.WRITE, Literals.TARGET_ROLE, "No permission sets found with in the provided list of IDs for role with ID '%s'"),
+    ROLE_GRANTED(211, Category.ROLES, Kind.WRITE, Literals.TARGET_ROLE, "Permission assigned to role with ID '%s' successfully"),
+    ROLE_DENYING(212, Category.ROLES, Kind.WRITE, Literals.TARGET_ROLE, "Remove permissions from system role with ID '%s'"),
+    ROLE_DENY_NOT_FOUND(213, Category.ROLES, Kind.WRITE, Literals.TARGET_ROLE, "No permissions found with in the provided list for role with ID '%s'"),
+    ROLE_DENIED(214, Category.ROLES, Kind.WRITE, Literals.TARGET_ROLE, "Role permissions updated succesfully for role with ID '%s'"),
+    //endregion
+
+    //region branches
+    BRANCH_RETRIEVED_BY_SOLID(301, Category.BRANCHES, Kind.READ, Literals.TARGET_BRANCH, "Retrieve branch record with solId %s"),
+    BRANCHES_RETRIEVED(302, Category.BRANCHES, Kind.READ, null, "Retrieved list of branches"),
+    BRANCH_ACTIVATED(303, Category.BRANCHES, Kind.WRITE, Literals.TARGET_BRANCH, "Activate branch record with ID %s"),
+    BRANCH_CREATED(304, Category.BRANCHES, Kind.WRITE, Literals.TARGET_BRANCH, "Add new branch record with ID %s"),
+    BRANCH_UPDATED(305, Category.BRANCHES, Kind.WRITE, Literals.TARGET_BRANCH, "Update branch record with ID %s"),
+    BRANCH_DELETED(306, Category.BRANCHES, Kind.WRITE, Literals.TARGET_BRANCH, "Delete branch record with ID %s"),
+    BRANCH_PURGED(307, Category.BRANCHES, Kind.WRITE, Literals.TARGET_BRANCH, "Permanently delete branch record with ID %s"),
+    //endregion
+
+    //region permissions
+    PERMISSION_RETRIEVED(401, Category.PERMISSIONS, Kind.READ, Literals.TARGET_PERMISSION, "Retrieved system permission record with ID '%s'"),
+    PERMISSION_RETRIEVED_BY_NAME(402, Category.PERMISSIONS, Kind.READ, Literals.TARGET_PERMISSION, "Retrieved system permission record with ID '%s' by name"),
+    PERMISSIONS_RETRIEVED(403, Category.PERMISSIONS, Kind.READ, null, "Retrieving a list of system permissions"),
+    PERMISSION_UPDATED(404, Category.PERMISSIONS, Kind.WRITE, Literals.TARGET_PERMISSION, "Updating system permission description for permission with Id %s"),
+    PERMISSION_UPDATE_FAILED(405, Category.PERMISSIONS, Kind.WRITE, Literals.TARGET_PERMISSION, "Updating system permission with id '%s' failed"),
+    PERMISSION_CHECKED(406, Category.PERMISSIONS, Kind.READ, Literals.TARGET_USER, "Checked a permission of user with ID '%s'"),
+    EFFECTIVE_PERMISSIONS_RETRIEVED(407, Category.PERMISSIONS, Kind.READ, Literals.TARGET_USER, "Retrieved effective permissions of user with ID '%s'"),
+    PERMISSIONS_CHECKED(408, Category.PERMISSIONS, Kind.READ, null, "Checked permissions of several users"),
+    //endregion
+
+    //region permission sets
+    SET_RETRIEVED(501, Category.PERMISSION_SETS, Kind.READ, Literals.TARGET_PERMISSION_SET, "Retrieved system permission set record with SetID '%s'"),
+    SET_RETRIEVED_BY_NAME(502, Category.PERMISSION_SETS, Kind.READ, Literals.TARGET_PERMISSION_SET, "Retrieved system permission set record with SetID '%s' by name"),
+    SETS_RETRIEVED(503, Category.PERMISSION_SETS, Kind.READ, null, "Retrieving a list of system permission sets"),
+    SET_LOCKED(504, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "Locking permission set with ID '%s'"),
+    SET_CREATED(505, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "Adding new permission set with ID '%s'"),
+    SET_GRANTING(506, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "Assign permissions to permission set with ID '%s'"),
+    SET_GRANT_NOT_FOUND(507, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "No permissions found with in the provided list IDs for permission set with ID '%s'"),
+    SET_GRANTED(508, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "Permission Set with ID '%s' updated"),
+    SET_DENYING(509, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "Remove permissions from permission set with ID '%s'"),
+    SET_DENY_NOT_FOUND(510, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "No permissions found with in the provided list for permission set with ID '%s'"),
+    SET_DENIED(511, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "Permission Set with ID '%s' updated"),
+    SET_DELETED(512, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "Marking permission set with ID '%s' as deleted"),
+    SET_PURGED(513, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "Purge permission Set with ID '%s'"),
+    SET_UPDATED(514, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "Updating permission set with ID '%s'"),
+    SET_UNLOCKED(515, Category.PERMISSION_SETS, Kind.WRITE, Literals.TARGET_PERMISSION_SET, "Unlocking permission set with ID '%s'"),
+    //endregion
+
+    //region system logs
+    LOGS_RETRIEVED(601, Category.SYSTEM_LOGS, Kind.READ, null, "Retrieving a list of system logs"),
+    LOGS_RETRIEVED_BETWEEN(602, Category.SYSTEM_LOGS, Kind.READ, Literals.TARGET_PERIOD, "Retrieving a list of system logs between %s"),
+    LOGS_EXPORTED(603, Category.SYSTEM_LOGS, Kind.READ, Literals.TARGET_PERIOD, "Exporting system logs between %s"),
+    ARCHIVE_STATUS_RETRIEVED(604, Category.SYSTEM_LOGS, Kind.READ, null, "Retrieved system log archive status"),
+    COLD_ARCHIVE_SYSTEM_EXPORTED(605, Category.SYSTEM_LOGS, Kind.WRITE, Literals.TARGET_PERIOD, "Exporting system logs between %s to cold archive"),
+    COLD_ARCHIVE_EXPORTED(606, Category.SYSTEM_LOGS, Kind.WRITE, Literals.TARGET_PERIOD, "Exporting archived logs between %s to cold archive"),
+    COLD_ARCHIVE_LOGS_RETRIEVED(607, Category.SYSTEM_LOGS, Kind.READ, null, "Retrieving a list of system logs from cold archive"),
+    COLD_ARCHIVE_FILES_RETRIEVED(608, Category.SYSTEM_LOGS, Kind.READ, null, "Retrieving a list of cold archive files"),
+    ACTIVITY_RETRIEVED(609, Category.SYSTEM_LOGS, Kind.READ, Literals.TARGET_ROLLUP, "Retrieving %s activity"),
+    ACTIVITY_TOTALS_RETRIEVED(610, Category.SYSTEM_LOGS, Kind.READ, Literals.TARGET_ROLLUP, "Retrieving %s activity totals"),
+    ACTIVITY_REBUILT(611, Category.SYSTEM_LOGS, Kind.WRITE, null, "Rebuilding audit activity rollups"),
+    TARGET_LOGS_RETRIEVED(612, Category.SYSTEM_LOGS, Kind.READ, null, "Retrieving a list of system logs by target record"),
+    AUDIT_POLICY_RETRIEVED(613, Category.SYSTEM_LOGS, Kind.READ, null, "Retrieved audit policy"),
+    AUDIT_POLICY_UPDATED(614, Category.SYSTEM_LOGS, Kind.WRITE, null, "Updated audit policy"),
+    CACHE_STATISTICS_RETRIEVED(615, Category.SYSTEM_LOGS, Kind.READ, null, "Retrieved cache statistics"),
+    PARTITION_STATUS_RETRIEVED(616, Category.SYSTEM_LOGS, Kind.READ, null, "Retrieved system log partition status");
+    //endregion
+
+    private static final Map<Short, AuditAction> CODES = new HashMap<>();
+    static {
+        for (AuditAction action : values()) {
+            CODES.put(action.code, action);
+        }
+    }
+
+    /**Area of the system an action belongs to, audit policy rules can be set per category**/
+    public enum Category { USERS, ROLES, BRANCHES, PERMISSIONS, PERMISSION_SETS, SYSTEM_LOGS }
+
+    /**Reads may be thinned out by the audit policy, writes are always recorded**/
+    public enum Kind { READ, WRITE }
+
+    private final short code;
+    private final Category category;
+    private final Kind kind;
+    private final String targetType;
+    private final String template;
+
+    AuditAction(int code, Category category, Kind kind, String targetType, String template) {
+        this.code = (short) code;
+        this.category = category;
+        this.kind = kind;
+        this.targetType = targetType;
+        this.template = template;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**Type of record the action is performed on, null when the action has no target**/
+    public String getTargetType() {
+        return targetType;
+    }
+
+    /**
+     * Render the sentence shown to users
+     * @param targetId ID of the record the action was performed on
+     * @return action sentence
+     **/
+    public String render(String targetId) {
+        return targetType != null ? String.format(template, targetId) : template;
+    }
+
+    /**
+     * Find action by its stored code
+     * @param code action code
+     * @return catalog action, null for unknown codes
+     **/
+    public static AuditAction fromCode(short code) {
+        return CODES.get(code);
+    }
+
+    /**
+     * Find action by its name
+     * @param name action name, case is ignored
+     * @return catalog action, null when name is not in the catalog
+     **/
+    public static AuditAction fromName(String name) {
+        for (AuditAction action : values()) {
+            if(action.name().equalsIgnoreCase(name)){
+                return action;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Target ID of actions performed on a period of records
+     * @param startDate start of the period
+     * @param endDate end of the period
+     * @return period in ISO 8601 interval form
+     **/
+    public static String period(LocalDateTime startDate, LocalDateTime endDate) {
+        return String.format("%s/%s", startDate, endDate);
+    }
+
+    /**
+     * Render a stored system log action
+     * @param code stored action code
+     * @param targetId stored target ID
+     * @param text stored action text, only set for custom actions
+     * @return action sentence
+     **/
+    public static String render(short code, String targetId, String text) {
+        AuditAction action = fromCode(code);
+        return action == null || action == CUSTOM ? text : action.render(targetId);
+    }
+}
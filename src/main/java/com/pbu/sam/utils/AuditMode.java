@@ -0,0 +1,20 @@
+package com.pbu.sam.utils;
+
+/**
+ * Class Name : AuditMode
+ * Created By : Nkambwe Mark
+ * Description: Enum holds the ways the audit policy records read actions
+ **/
+public enum AuditMode {
+    //record every read
+    ALL,
+
+    //record a random share of reads
+    SAMPLE,
+
+    //record the first read of a user per action and target in each time window
+    FIRST_PER_WINDOW,
+
+    //record no reads
+    NONE
+}
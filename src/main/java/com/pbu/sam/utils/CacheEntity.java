@@ -0,0 +1,23 @@
+package com.pbu.sam.utils;
+
+/**
+ * Class Name : CacheEntity
+ * Created By : Nkambwe Mark
+ * Description: Enum holds the types of reference data whose cached copies are evicted through the invalidation bus
+ **/
+public enum CacheEntity {
+    //system branches
+    BRANCH,
+
+    //system roles and the permission sets granted to them
+    ROLE,
+
+    //permission sets and the permissions they hold
+    PERMISSION_SET,
+
+    //system permissions
+    PERMISSION,
+
+    //system users
+    USER
+}
@@ -12,4 +12,27 @@ public class Literals {
     public static final String ALGORITHM = "AES";
     public static final String LOG_FILEPATH = "C:/PBU/Logs/";
     public static final String LOG_FILENAME = "Sam_Logs";
+    public static final String AUDIT_JOURNAL_PATH = "C:/PBU/Journal/";
+    public static final String COLD_ARCHIVE_PATH = "C:/PBU/Archive/";
+    public static final String ROLLUP_USER = "USER";
+    public static final String ROLLUP_ACTION = "ACTION";
+    public static final String ROLLUP_IP = "IP";
+    public static final String ROLLUP_HOUR = "HOUR";
+    public static final String ROLLUP_DAY = "DAY";
+    public static final String EXPORT_NDJSON = "ndjson";
+    public static final String EXPORT_CSV = "csv";
+    public static final String TARGET_USER = "USER";
+    public static final String TARGET_ROLE = "ROLE";
+    public static final String TARGET_BRANCH = "BRANCH";
+    public static final String TARGET_PERMISSION = "PERMISSION";
+    public static final String TARGET_PERMISSION_SET = "PERMISSION_SET";
+    public static final String TARGET_PERIOD = "PERIOD";
+    public static final String TARGET_ROLLUP = "ROLLUP";
+    public static final String CACHE_ROLES = "roles";
+    public static final String CACHE_ROLE_PERMISSION_SETS = "role-permission-sets";
+    public static final String CACHE_PERMISSIONS = "permissions";
+    public static final String CACHE_PERMISSION_SETS = "permission-sets";
+    public static final String CACHE_SET_PERMISSIONS = "set-permissions";
+    public static final String CACHE_QUERY_RESULTS = "default-query-results-region";
+    public static final String CACHE_UPDATE_TIMESTAMPS = "default-update-timestamps-region";
 }
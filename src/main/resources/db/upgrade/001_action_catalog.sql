@@ -0,0 +1,4 @@
+-- Action catalog records keep the action as a code with its target and leave action_performed empty.
+-- Databases created before the catalog hold action_performed as NOT NULL, run once against them before upgrading.
+ALTER TABLE system_logs ALTER COLUMN action_performed DROP NOT NULL;
+ALTER TABLE archive_log ALTER COLUMN action_performed DROP NOT NULL;
@@ -0,0 +1,157 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.configuration.AuditProperties;
+import com.pbu.sam.dtos.LogDto;
+import com.pbu.sam.utils.AuditAction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditJournalTests {
+    private static final LocalDateTime LOG_TIME = LocalDateTime.of(2024, 3, 1, 9, 30, 15, 987_654_321);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAreRecoveredAfterRestart() throws IOException {
+        AuditJournal journal = open(16 * 1024);
+        assertEquals(1, journal.append(record(1)));
+        assertEquals(2, journal.append(custom(2)));
+        assertEquals(3, journal.append(record(3)));
+
+        //..a new journal over the same directory is the next run after a crash
+        AuditJournal restarted = open(16 * 1024);
+        List<AuditJournal.Entry> entries = restarted.recover(0);
+
+        assertEquals(List.of(1L, 2L, 3L), entries.stream().map(AuditJournal.Entry::sequence).toList());
+        assertRecord(record(1), entries.get(0).log());
+        assertRecord(custom(2), entries.get(1).log());
+        assertEquals(journal.getCheckpointName(), restarted.getCheckpointName());
+
+        //..committed records are not replayed and sequences carry on
+        assertEquals(List.of(3L), restarted.recover(2).stream().map(AuditJournal.Entry::sequence).toList());
+        assertEquals(4, restarted.append(record(4)));
+    }
+
+    @Test
+    void activeSegmentIsOnlyReadOnceSealed() throws IOException {
+        AuditJournal journal = open(16 * 1024);
+        journal.append(record(1));
+        journal.append(record(2));
+
+        assertTrue(journal.recover(0).isEmpty());
+        assertEquals(2, journal.seal());
+        assertEquals(2, journal.recover(0).size());
+
+        //..sealing an empty segment does not start another
+        long segments = segmentCount();
+        assertEquals(2, journal.seal());
+        assertEquals(segments, segmentCount());
+    }
+
+    @Test
+    void discardedRecordsAreNotRecovered() throws IOException {
+        AuditJournal journal = open(16 * 1024);
+        long rolledBack = journal.append(record(1));
+        long committed = journal.append(record(2));
+        journal.discard(rolledBack);
+
+        //..the discard takes a sequence of its own
+        assertEquals(3, journal.lastSequence());
+        journal.seal();
+
+        List<AuditJournal.Entry> entries = journal.recover(0);
+        assertEquals(1, entries.size());
+        assertEquals(committed, entries.get(0).sequence());
+
+        AuditJournal restarted = open(16 * 1024);
+        assertEquals(List.of(committed), restarted.recover(0).stream().map(AuditJournal.Entry::sequence).toList());
+        assertEquals(4, restarted.append(record(4)));
+    }
+
+    @Test
+    void fullSegmentsRollOverAndAreReleasedOnceCommitted() throws IOException {
+        AuditJournal journal = open(512);
+        for (int i = 1; i <= 40; i++) {
+            assertEquals(i, journal.append(record(i)));
+        }
+        journal.seal();
+        assertTrue(segmentCount() > 4, "records should span several segments");
+
+        List<AuditJournal.Entry> entries = journal.recover(0);
+        assertEquals(40, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(i + 1, entries.get(i).sequence());
+            assertRecord(record(i + 1), entries.get(i).log());
+        }
+
+        //..only segments holding nothing past the checkpoint go
+        long before = segmentCount();
+        journal.release(20);
+        assertTrue(segmentCount() < before);
+        assertEquals(20, journal.recover(20).size());
+        assertEquals(21, journal.recover(20).get(0).sequence());
+
+        journal.release(40);
+        assertEquals(1, segmentCount());
+        assertTrue(journal.recover(0).isEmpty());
+    }
+
+    @Test
+    void disabledJournalIssuesNoSequences() throws IOException {
+        AuditProperties properties = new AuditProperties();
+        properties.setJournalEnabled(false);
+        properties.setJournalDir(directory.toString());
+        AuditJournal journal = new AuditJournal(properties);
+        journal.open();
+
+        assertEquals(0, journal.append(record(1)));
+        assertEquals(0, journal.lastSequence());
+        assertTrue(journal.recover(0).isEmpty());
+        assertEquals(0, segmentCount());
+    }
+
+    private AuditJournal open(int segmentSize) throws IOException {
+        AuditProperties properties = new AuditProperties();
+        properties.setJournalDir(directory.toString());
+        properties.setJournalSegmentSize(segmentSize);
+        AuditJournal journal = new AuditJournal(properties);
+        journal.open();
+        return journal;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".seg")).count();
+        }
+    }
+
+    private static LogDto record(long userId) {
+        return new LogDto(userId, AuditAction.USER_RETRIEVED, userId + 100, LOG_TIME.plusSeconds(userId), "10.0.0.1");
+    }
+
+    private static LogDto custom(long userId) {
+        LogDto record = new LogDto(userId, "Custom action " + userId, LOG_TIME.plusSeconds(userId), null);
+        record.setActionCode(AuditAction.CUSTOM.getCode());
+        return record;
+    }
+
+    private static void assertRecord(LogDto expected, LogDto actual) {
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getActionCode(), actual.getActionCode());
+        assertEquals(expected.getTargetType(), actual.getTargetType());
+        assertEquals(expected.getTargetId(), actual.getTargetId());
+        assertEquals(expected.getAction(), actual.getAction());
+        assertEquals(expected.getLogTime(), actual.getLogTime());
+        assertEquals(expected.getIpAddress() != null ? expected.getIpAddress() : "", actual.getIpAddress());
+    }
+}
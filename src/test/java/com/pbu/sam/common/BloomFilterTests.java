@@ -0,0 +1,98 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.configuration.UserKeyFilterProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BloomFilterTests {
+    private static final int KEYS = 10_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Test
+    void addedKeysAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(KEYS, FALSE_POSITIVE_RATE);
+        IntStream.range(0, KEYS).parallel().forEach(i -> filter.add("USER" + i));
+
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(filter.mightContain("USER" + i), "USER" + i);
+        }
+    }
+
+    @Test
+    void falsePositivesStayNearTheSizedRate() {
+        BloomFilter filter = new BloomFilter(KEYS, FALSE_POSITIVE_RATE);
+        for (int i = 0; i < KEYS; i++) {
+            filter.add("USER" + i);
+        }
+
+        int probes = 100_000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if(filter.mightContain("ABSENT" + i)){
+                falsePositives++;
+            }
+        }
+
+        //..double the sized rate leaves room for hashing noise, a broken filter answers far above it
+        assertTrue(falsePositives < probes * FALSE_POSITIVE_RATE * 2, String.format("%s false positives", falsePositives));
+    }
+
+    @Test
+    void userKeysAreComparedIgnoringCase() throws Exception {
+        JdbcTemplate jdbcTemplate = usersTable("Admin", "pf001", null);
+        UserKeyFilter filter = new UserKeyFilter(new UserKeyFilterProperties(), jdbcTemplate, new LocalInvalidationBus());
+
+        //..every key is checked against the table until the first build
+        assertTrue(filter.mightHaveUsername("nobody"));
+
+        filter.rebuild();
+
+        assertTrue(filter.mightHaveUsername("ADMIN"));
+        assertTrue(filter.mightHaveUsername("admin"));
+        assertTrue(filter.mightHavePfNo("PF001"));
+    }
+
+    @Test
+    void keysAddedDuringRebuildAreKept() throws Exception {
+        UserKeyFilter[] filter = new UserKeyFilter[1];
+        JdbcTemplate jdbcTemplate = usersTable("admin", "PF001", () -> filter[0].add("new.user", "PF002"));
+        filter[0] = new UserKeyFilter(new UserKeyFilterProperties(), jdbcTemplate, new LocalInvalidationBus());
+
+        //..first build has no filters in force, the key only reaches the one being built
+        filter[0].rebuild();
+        assertTrue(filter[0].mightHaveUsername("NEW.USER"));
+        assertTrue(filter[0].mightHavePfNo("pf002"));
+
+        //..later builds start empty, a key added meanwhile must survive the swap
+        filter[0].rebuild();
+        assertTrue(filter[0].mightHaveUsername("NEW.USER"));
+        assertTrue(filter[0].mightHavePfNo("pf002"));
+        assertTrue(filter[0].mightHaveUsername("ADMIN"));
+    }
+
+    //..System_Users holding one user, duringScan runs while the rows are read
+    private static JdbcTemplate usersTable(String username, String pfNo, Runnable duringScan) throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getString(1)).thenReturn(username);
+        when(row.getString(2)).thenReturn(pfNo);
+
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(1L);
+        doAnswer(invocation -> {
+            if(duringScan != null){
+                duringScan.run();
+            }
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        return jdbcTemplate;
+    }
+}
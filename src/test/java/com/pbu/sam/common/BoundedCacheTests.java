@@ -0,0 +1,105 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.dtos.CacheStatsDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTests {
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void heldValuesAreNotLoadedAgain() {
+        BoundedCache<Long, String> cache = new BoundedCache<>("test", 10, HOUR);
+
+        assertEquals("value-1", cache.get(1L, this::load));
+        assertEquals("value-1", cache.get(1L, this::load));
+
+        CacheStatsDto stats = cache.getStatistics();
+        assertEquals(1, loads.get());
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+    }
+
+    @Test
+    void leastRecentlyUsedValueIsEvictedFirst() {
+        BoundedCache<Long, String> cache = new BoundedCache<>("test", 2, HOUR);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        //..reading 1 makes 2 the eldest
+        cache.get(1L, this::load);
+        cache.get(3L, this::load);
+
+        CacheStatsDto stats = cache.getStatistics();
+        assertEquals(2, stats.getSize());
+        assertEquals(1, stats.getEvictions());
+
+        loads.set(0);
+        cache.get(1L, this::load);
+        cache.get(3L, this::load);
+        assertEquals(0, loads.get());
+        cache.get(2L, this::load);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void expiredValuesAreLoadedAgain() throws InterruptedException {
+        BoundedCache<Long, String> cache = new BoundedCache<>("test", 10, 50);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        Thread.sleep(100);
+
+        cache.get(1L, this::load);
+        assertEquals(3, loads.get());
+
+        //..the expired value of 2 is dropped when statistics are taken
+        CacheStatsDto stats = cache.getStatistics();
+        assertEquals(1, stats.getSize());
+        assertEquals(2, stats.getExpirations());
+    }
+
+    @Test
+    void valueLoadedDuringInvalidationIsNotKept() {
+        BoundedCache<Long, String> cache = new BoundedCache<>("test", 10, HOUR);
+
+        String loaded = cache.get(1L, key -> {
+            cache.invalidate(key);
+            return load(key);
+        });
+
+        assertEquals("value-1", loaded);
+        assertEquals(0, cache.getStatistics().getSize());
+    }
+
+    @Test
+    void nullValuesAreNotKept() {
+        BoundedCache<Long, String> cache = new BoundedCache<>("test", 10, HOUR);
+
+        assertNull(cache.get(1L, key -> null));
+        assertEquals(0, cache.getStatistics().getSize());
+    }
+
+    @Test
+    void invalidateIfDropsMatchingValues() {
+        BoundedCache<Long, String> cache = new BoundedCache<>("test", 10, HOUR);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        cache.invalidateIf(value -> value.endsWith("1"));
+
+        assertEquals(1, cache.getStatistics().getSize());
+        cache.invalidateAll();
+        assertEquals(0, cache.getStatistics().getSize());
+    }
+
+    private String load(Long key) {
+        loads.incrementAndGet();
+        return "value-" + key;
+    }
+}
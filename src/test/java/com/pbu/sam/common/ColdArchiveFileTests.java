@@ -0,0 +1,184 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.dtos.LogDto;
+import com.pbu.sam.utils.AuditAction;
+import com.pbu.sam.utils.Literals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColdArchiveFileTests {
+    private static final int BLOCK_ROWS = 10;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 8, 0, 0, 123_456_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rowsReadBackAsWritten() throws IOException {
+        List<ColdArchiveFile.Row> rows = rows(25);
+        Path file = write(rows);
+
+        assertEquals(rows, readAll(file, 0));
+
+        ColdArchiveFile.Summary summary = ColdArchiveFile.summary(file);
+        assertEquals(3, summary.blocks().size());
+        assertEquals(25, summary.rows());
+        assertEquals(rows.get(0).logTime(), summary.minTime());
+        assertEquals(rows.get(24).logTime(), summary.maxTime());
+    }
+
+    @Test
+    void catalogActionsAreRenderedOnRead() throws IOException {
+        Path file = write(rows(25));
+        List<ColdArchiveFile.Row> read = readAll(file, 0);
+
+        LogDto catalog = read.get(1).toDto();
+        assertEquals(AuditAction.USER_RETRIEVED.getCode(), catalog.getActionCode());
+        assertEquals(Literals.TARGET_USER, catalog.getTargetType());
+        assertEquals(AuditAction.USER_RETRIEVED.render("1"), catalog.getAction());
+
+        LogDto custom = read.get(0).toDto();
+        assertNull(custom.getTargetType());
+        assertEquals("Custom action 0", custom.getAction());
+
+        LogDto merged = read.get(5).toDto();
+        assertEquals(4, merged.getOccurrences());
+        assertEquals(read.get(5).logTime().plusMinutes(3), merged.getLastLogTime());
+    }
+
+    @Test
+    void emptyFileHasNoRange() throws IOException {
+        Path file = write(List.of());
+
+        ColdArchiveFile.Summary summary = ColdArchiveFile.summary(file);
+        assertEquals(0, summary.rows());
+        assertNull(summary.minTime());
+        assertTrue(readAll(file, 0).isEmpty());
+    }
+
+    @Test
+    void blocksOutsideTheRangeAreNotRead() throws IOException {
+        List<ColdArchiveFile.Row> rows = rows(25);
+        Path file = write(rows);
+        corrupt(file, ColdArchiveFile.summary(file).blocks().get(0));
+
+        //..third block only, the broken first block is skipped by its time range
+        List<ColdArchiveFile.Row> read = new ArrayList<>();
+        ColdArchiveFile.scan(file, rows.get(21).logTime(), rows.get(23).logTime(), 0, read::add);
+        assertEquals(rows.subList(21, 24), read);
+
+        //..user 2 only writes the second block, the first is skipped by its user range
+        List<ColdArchiveFile.Row> users = readAll(file, 2);
+        assertEquals(rows.subList(BLOCK_ROWS, BLOCK_ROWS * 2), users);
+
+        IOException error = assertThrows(IOException.class, () -> readAll(file, 0));
+        assertTrue(error.getMessage().contains("checksum"));
+    }
+
+    @Test
+    void cursorPagesReadEveryRowOnce() throws IOException {
+        List<ColdArchiveFile.Row> rows = rows(25);
+        Path file = write(rows);
+
+        //..pages continue after the last (log time, id) read, the way the cold archive query pages
+        List<ColdArchiveFile.Row> paged = new ArrayList<>();
+        LocalDateTime cursorTime = rows.get(0).logTime();
+        long cursorId = -1;
+        int pages = 0;
+        while (true) {
+            List<ColdArchiveFile.Row> page = page(file, cursorTime, cursorId, 4);
+            if(page.isEmpty()){
+                break;
+            }
+            paged.addAll(page);
+            cursorTime = page.get(page.size() - 1).logTime();
+            cursorId = page.get(page.size() - 1).id();
+            pages++;
+        }
+
+        assertEquals(rows, paged);
+        assertEquals(7, pages);
+    }
+
+    @Test
+    void scanStopsWhenAsked() throws IOException {
+        Path file = write(rows(25));
+
+        List<ColdArchiveFile.Row> read = new ArrayList<>();
+        boolean finished = ColdArchiveFile.scan(file, START, START.plusDays(1), 0, row -> {
+            read.add(row);
+            return read.size() < 12;
+        });
+
+        assertFalse(finished);
+        assertEquals(12, read.size());
+    }
+
+    //..rows of three blocks, each block written by its own user, rows 8 to 11 share a log time across the block boundary
+    private static List<ColdArchiveFile.Row> rows(int count) {
+        List<ColdArchiveFile.Row> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LocalDateTime logTime = START.plusSeconds(i >= 8 && i <= 11 ? 8 : i);
+            long userId = 1 + i / BLOCK_ROWS;
+            int occurrences = i % 5 == 0 && i > 0 ? 4 : 1;
+            LocalDateTime lastLogTime = occurrences > 1 ? logTime.plusMinutes(3) : logTime;
+            if(i % 2 == 0){
+                rows.add(new ColdArchiveFile.Row(1000 + i, userId, AuditAction.CUSTOM.getCode(), null, null, "Custom action " + i,
+                        logTime, "10.0.0." + (i % 3), logTime.plusDays(90), occurrences, lastLogTime));
+            } else {
+                rows.add(new ColdArchiveFile.Row(1000 + i, userId, AuditAction.USER_RETRIEVED.getCode(), Literals.TARGET_USER,
+                        String.valueOf(userId), null, logTime, "10.0.0." + (i % 3), logTime.plusDays(90), occurrences, lastLogTime));
+            }
+        }
+        return rows;
+    }
+
+    private Path write(List<ColdArchiveFile.Row> rows) throws IOException {
+        Path file = directory.resolve("logs.sam");
+        try (ColdArchiveFile.Writer writer = new ColdArchiveFile.Writer(file, BLOCK_ROWS)) {
+            for (ColdArchiveFile.Row row : rows) {
+                writer.write(row);
+            }
+            writer.finish();
+        }
+        return file;
+    }
+
+    private static List<ColdArchiveFile.Row> readAll(Path file, long userId) throws IOException {
+        List<ColdArchiveFile.Row> rows = new ArrayList<>();
+        ColdArchiveFile.scan(file, START.minusDays(1), START.plusDays(1), userId, rows::add);
+        return rows;
+    }
+
+    private static List<ColdArchiveFile.Row> page(Path file, LocalDateTime cursorTime, long cursorId, int size) throws IOException {
+        List<ColdArchiveFile.Row> page = new ArrayList<>();
+        ColdArchiveFile.scan(file, cursorTime, START.plusDays(1), 0, row -> {
+            if(row.logTime().isEqual(cursorTime) && row.id() <= cursorId){
+                return true;
+            }
+            page.add(row);
+            return page.size() < size;
+        });
+        return page;
+    }
+
+    private static void corrupt(Path file, ColdArchiveFile.Block block) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.allocate(1);
+            channel.read(data, block.offset() + block.length() / 2);
+            data.put(0, (byte) ~data.get(0));
+            channel.write(data.rewind(), block.offset() + block.length() / 2);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.configuration.CacheProperties;
+import com.pbu.sam.utils.CacheEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NegativeLookupCacheTests {
+    private final AtomicInteger queries = new AtomicInteger();
+    private LocalInvalidationBus invalidationBus;
+    private NegativeLookupCache cache;
+
+    @BeforeEach
+    void setUp() {
+        invalidationBus = new LocalInvalidationBus();
+        cache = new NegativeLookupCache(new CacheProperties(), invalidationBus);
+    }
+
+    @Test
+    void caseInsensitiveMissIsSharedAcrossCases() {
+        assertNull(cache.find(NegativeLookupCache.Lookup.USERNAME, "john.doe", this::missing));
+        assertNull(cache.find(NegativeLookupCache.Lookup.USERNAME, "JOHN.DOE", this::missing));
+        assertNull(cache.find(NegativeLookupCache.Lookup.USER_PF_NO, "pf001", this::missing));
+        assertNull(cache.find(NegativeLookupCache.Lookup.USER_PF_NO, "Pf001", this::missing));
+
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void caseSensitiveMissIsKeptPerCase() {
+        assertNull(cache.find(NegativeLookupCache.Lookup.ROLE_NAME, "teller", this::missing));
+        assertNull(cache.find(NegativeLookupCache.Lookup.ROLE_NAME, "TELLER", this::missing));
+        assertNull(cache.find(NegativeLookupCache.Lookup.ROLE_NAME, "teller", this::missing));
+
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void lookupsDoNotShareMisses() {
+        assertNull(cache.find(NegativeLookupCache.Lookup.USER_ID, 5L, this::missing));
+        assertNull(cache.find(NegativeLookupCache.Lookup.ROLE_ID, 5L, this::missing));
+        assertNull(cache.find(NegativeLookupCache.Lookup.SET_ID, 5L, this::missing));
+
+        assertEquals(3, queries.get());
+    }
+
+    @Test
+    void foundRecordsAreNotCached() {
+        assertEquals("admin", cache.find(NegativeLookupCache.Lookup.USERNAME, "admin", () -> found("admin")));
+        assertEquals("admin", cache.find(NegativeLookupCache.Lookup.USERNAME, "ADMIN", () -> found("admin")));
+
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void changeDropsMissesOfItsTypeOnly() {
+        cache.find(NegativeLookupCache.Lookup.USERNAME, "john.doe", this::missing);
+        cache.find(NegativeLookupCache.Lookup.ROLE_NAME, "teller", this::missing);
+
+        //..a created user has no earlier ID, every user miss goes
+        invalidationBus.publish(CacheEntity.USER, 42L);
+
+        assertEquals("john.doe", cache.find(NegativeLookupCache.Lookup.USERNAME, "JOHN.DOE", () -> found("john.doe")));
+        assertNull(cache.find(NegativeLookupCache.Lookup.ROLE_NAME, "teller", this::missing));
+        assertEquals(3, queries.get());
+    }
+
+    private String missing() {
+        queries.incrementAndGet();
+        return null;
+    }
+
+    private String found(String record) {
+        queries.incrementAndGet();
+        return record;
+    }
+}
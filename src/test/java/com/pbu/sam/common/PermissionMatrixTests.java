@@ -0,0 +1,85 @@
+package com.pbu.sam.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PermissionMatrixTests {
+    private static final long ADMIN_ROLE = 1;
+    private static final long CLERK_ROLE = 2;
+
+    private final PermissionMatrix matrix = new PermissionMatrix.Builder()
+            .permission(10, "VIEW_USERS")
+            .permission(11, "EDIT_USERS")
+            .permission(12, "VIEW_LOGS")
+            //..same name in another case shares the index of VIEW_USERS
+            .permission(13, "view_users")
+            .grant(ADMIN_ROLE, 10)
+            .grant(ADMIN_ROLE, 11)
+            .grant(ADMIN_ROLE, 12)
+            .grant(CLERK_ROLE, 13)
+            //..unknown permission is ignored
+            .grant(CLERK_ROLE, 99)
+            .user(100, ADMIN_ROLE)
+            .user(200, CLERK_ROLE)
+            .build();
+
+    @Test
+    void permissionsWithTheSameNameShareOneIndex() {
+        assertEquals(3, matrix.getPermissionCount());
+        assertEquals(matrix.indexOf("VIEW_USERS"), matrix.indexOf("view_users"));
+        assertEquals(List.of("VIEW_USERS"), matrix.effectivePermissions(200));
+    }
+
+    @Test
+    void lookupsIgnoreCaseAndSurroundingSpace() {
+        assertTrue(matrix.hasPermission(100, "edit_users"));
+        assertTrue(matrix.hasPermission(100, "  View_Logs "));
+        assertFalse(matrix.hasPermission(200, "EDIT_USERS"));
+        assertFalse(matrix.hasPermission(100, "DELETE_USERS"));
+        assertFalse(matrix.hasPermission(100, null));
+    }
+
+    @Test
+    void usersWithoutARoleHoldNothing() {
+        assertFalse(matrix.hasPermission(300, "VIEW_USERS"));
+        assertEquals(List.of(), matrix.effectivePermissions(300));
+        assertEquals(0, matrix.roleOf(300));
+        assertEquals(CLERK_ROLE, matrix.roleOf(200));
+    }
+
+    @Test
+    void decideSetsOneBitPerUserAndPermission() {
+        List<Long> users = Arrays.asList(100L, 200L, null, 300L);
+        List<String> permissions = List.of("VIEW_USERS", "edit_users", "UNKNOWN");
+
+        BitSet decisions = matrix.decide(users, permissions);
+
+        //..bit u * permissions + p, row by row
+        BitSet expected = new BitSet();
+        expected.set(0 * 3 + 0);
+        expected.set(0 * 3 + 1);
+        expected.set(1 * 3 + 0);
+        assertEquals(expected, decisions);
+
+        for (int u = 0; u < users.size(); u++) {
+            for (int p = 0; p < permissions.size(); p++) {
+                boolean holds = users.get(u) != null && matrix.hasPermission(users.get(u), permissions.get(p));
+                assertEquals(holds, decisions.get(u * permissions.size() + p), String.format("user %s permission %s", u, p));
+            }
+        }
+    }
+
+    @Test
+    void emptyMatrixGrantsNothing() {
+        PermissionMatrix empty = PermissionMatrix.empty();
+
+        assertFalse(empty.hasPermission(100, "VIEW_USERS"));
+        assertTrue(empty.decide(List.of(100L), List.of("VIEW_USERS")).isEmpty());
+        assertEquals(0, empty.getRoleCount());
+    }
+}
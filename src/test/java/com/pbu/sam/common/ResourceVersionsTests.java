@@ -0,0 +1,71 @@
+package com.pbu.sam.common;
+
+import com.pbu.sam.utils.CacheEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceVersionsTests {
+    private final LocalInvalidationBus invalidationBus = new LocalInvalidationBus();
+    private final ResourceVersions versions = new ResourceVersions(invalidationBus);
+
+    @Test
+    void matchingStrongTagIsNotModified() {
+        String etag = versions.etag("roles", CacheEntity.ROLE);
+
+        assertTrue(versions.notModified(etag, ifNoneMatch(etag)));
+    }
+
+    @Test
+    void weakTagMatchesStrongTag() {
+        String etag = versions.etag("roles", CacheEntity.ROLE);
+
+        assertTrue(versions.notModified(etag, ifNoneMatch("W/" + etag)));
+    }
+
+    @Test
+    void anyTagInListMatches() {
+        String etag = versions.etag("roles", CacheEntity.ROLE);
+
+        assertTrue(versions.notModified(etag, ifNoneMatch("\"other\",  W/" + etag + " ,\"another\"")));
+        assertFalse(versions.notModified(etag, ifNoneMatch("\"other\", W/\"another\"")));
+    }
+
+    @Test
+    void wildcardMatchesAnyTag() {
+        assertTrue(versions.notModified(versions.etag("roles", CacheEntity.ROLE), ifNoneMatch("*")));
+    }
+
+    @Test
+    void missingHeaderIsModified() {
+        assertFalse(versions.notModified(versions.etag("roles", CacheEntity.ROLE), new MockHttpServletRequest()));
+    }
+
+    @Test
+    void changeToAListedTypeMovesTheTag() {
+        String before = versions.etag("users", CacheEntity.USER, CacheEntity.ROLE);
+
+        invalidationBus.publish(CacheEntity.BRANCH, 1L);
+        assertEquals(before, versions.etag("users", CacheEntity.USER, CacheEntity.ROLE));
+
+        invalidationBus.publish(CacheEntity.ROLE, 1L);
+        String after = versions.etag("users", CacheEntity.USER, CacheEntity.ROLE);
+        assertNotEquals(before, after);
+        assertFalse(versions.notModified(after, ifNoneMatch(before)));
+    }
+
+    @Test
+    void tagsFromAnotherRunNeverMatch() {
+        ResourceVersions restarted = new ResourceVersions(new LocalInvalidationBus());
+
+        assertNotEquals(versions.etag("roles", CacheEntity.ROLE), restarted.etag("roles", CacheEntity.ROLE));
+    }
+
+    private static MockHttpServletRequest ifNoneMatch(String header) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, header);
+        return request;
+    }
+}
@@ -0,0 +1,57 @@
+package com.pbu.sam.repositories;
+
+import com.pbu.sam.entities.SystemUser;
+import com.pbu.sam.utils.AuditAction;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class SystemUserRepositoryTests {
+    private static final int LOG_COUNT = 100_000;
+
+    @Autowired
+    private SystemUserRepository usersRepo;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void findByIdDoesNotLoadLogs() {
+        SystemUser user = new SystemUser();
+        user.setUsername("lazy.logs.test");
+        user.setFirstname("Lazy");
+        user.setLastname("Logs");
+        user.setGender("MALE");
+        user.setPfNo("LZ0001");
+        user.setPassword("password");
+        long userId = usersRepo.saveAndFlush(user).getId();
+
+        //..rows are rolled back with the test transaction
+        int rows = jdbcTemplate.update("INSERT INTO system_logs (action_code, target_type, target_id, log_time, ip_address, user_id) " +
+                        "SELECT ?, ?, ?, now() - make_interval(secs => n), '127.0.0.1', ? FROM generate_series(1, ?) n",
+                AuditAction.USER_RETRIEVED.getCode(), AuditAction.USER_RETRIEVED.getTargetType(), String.valueOf(userId), userId, LOG_COUNT);
+        assertEquals(LOG_COUNT, rows);
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        SystemUser found = usersRepo.findById(userId).orElseThrow();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+        assertFalse(Hibernate.isInitialized(found.getLogs()));
+    }
+}